@@ -9,6 +9,7 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.Arrays;
@@ -17,6 +18,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
 
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Column;
@@ -60,6 +64,12 @@ class AccessibleProperty {
     // setter and do convert if necessary:
     final PropertySetter convertSetter;
 
+    // read column value by typed ResultSet getter and set to bean:
+    final ColumnReader columnReader;
+
+    // bind db-ready value by typed PreparedStatement setter:
+    final ColumnBinder columnBinder;
+
     final boolean nullable;
     final boolean unique;
 
@@ -90,6 +100,10 @@ class AccessibleProperty {
         return isVersion;
     }
 
+    boolean isShardKey() {
+        return this.accessible.isAnnotationPresent(ShardKey.class);
+    }
+
     boolean isInsertable() {
         if (isIdentityId()) {
             return false;
@@ -106,49 +120,325 @@ class AccessibleProperty {
         return col == null || col.updatable();
     }
 
-    static PropertySetter createPropertySetter(Field f) {
-        if (f.getType() == Long.class || f.getType() == long.class) {
+    static PropertySetter createPropertySetter(Class<?> type, PropertySetter setter) {
+        if (type == Long.class || type == long.class) {
             return (obj, value) -> {
                 if (value instanceof BigInteger) {
                     value = ((BigInteger) value).longValue();
                 }
-                f.set(obj, value);
+                setter.set(obj, value);
             };
         }
-        return (obj, value) -> {
-            f.set(obj, value);
+        return setter;
+    }
+
+    @SuppressWarnings("unchecked")
+    static ColumnReader createColumnReader(Class<?> propertyType, AttributeConverter<Object, Object> converter, PropertySetter convertSetter,
+            Object primitiveSetter) {
+        if (converter == null && primitiveSetter != null) {
+            // set primitive value without boxing:
+            if (propertyType == long.class) {
+                final ObjLongConsumer<Object> setter = (ObjLongConsumer<Object>) primitiveSetter;
+                return (rs, column, bean) -> {
+                    setter.accept(bean, rs.getLong(column));
+                };
+            }
+            if (propertyType == int.class) {
+                final ObjIntConsumer<Object> setter = (ObjIntConsumer<Object>) primitiveSetter;
+                return (rs, column, bean) -> {
+                    setter.accept(bean, rs.getInt(column));
+                };
+            }
+            if (propertyType == double.class) {
+                final ObjDoubleConsumer<Object> setter = (ObjDoubleConsumer<Object>) primitiveSetter;
+                return (rs, column, bean) -> {
+                    setter.accept(bean, rs.getDouble(column));
+                };
+            }
+        }
+        final ColumnValueGetter getter = createColumnValueGetter(propertyType);
+        return (rs, column, bean) -> {
+            convertSetter.set(bean, getter.get(rs, column));
         };
     }
 
-    static PropertySetter createPropertySetter(Method setter) {
-        if (setter.getParameterTypes()[0] == Long.class || setter.getParameterTypes()[0] == long.class) {
-            return (obj, value) -> {
-                if (value instanceof BigInteger) {
-                    value = ((BigInteger) value).longValue();
+    // get column value as db type, or null if column is SQL NULL and type is not
+    // primitive:
+    static ColumnValueGetter createColumnValueGetter(Class<?> type) {
+        if (type == long.class) {
+            return (rs, column) -> {
+                return rs.getLong(column);
+            };
+        }
+        if (type == Long.class) {
+            return (rs, column) -> {
+                long value = rs.getLong(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == int.class) {
+            return (rs, column) -> {
+                return rs.getInt(column);
+            };
+        }
+        if (type == Integer.class) {
+            return (rs, column) -> {
+                int value = rs.getInt(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == short.class) {
+            return (rs, column) -> {
+                return rs.getShort(column);
+            };
+        }
+        if (type == Short.class) {
+            return (rs, column) -> {
+                short value = rs.getShort(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == byte.class) {
+            return (rs, column) -> {
+                return rs.getByte(column);
+            };
+        }
+        if (type == Byte.class) {
+            return (rs, column) -> {
+                byte value = rs.getByte(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == double.class) {
+            return (rs, column) -> {
+                return rs.getDouble(column);
+            };
+        }
+        if (type == Double.class) {
+            return (rs, column) -> {
+                double value = rs.getDouble(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == float.class) {
+            return (rs, column) -> {
+                return rs.getFloat(column);
+            };
+        }
+        if (type == Float.class) {
+            return (rs, column) -> {
+                float value = rs.getFloat(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == boolean.class) {
+            return (rs, column) -> {
+                return rs.getBoolean(column);
+            };
+        }
+        if (type == Boolean.class) {
+            return (rs, column) -> {
+                boolean value = rs.getBoolean(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == String.class) {
+            return (rs, column) -> {
+                return rs.getString(column);
+            };
+        }
+        if (type == BigDecimal.class) {
+            return (rs, column) -> {
+                return rs.getBigDecimal(column);
+            };
+        }
+        if (type == java.sql.Date.class) {
+            return (rs, column) -> {
+                return rs.getDate(column);
+            };
+        }
+        if (type == java.sql.Timestamp.class || type == java.util.Date.class) {
+            return (rs, column) -> {
+                return rs.getTimestamp(column);
+            };
+        }
+        if (type == LocalDate.class || type == LocalTime.class) {
+            return (rs, column) -> {
+                return rs.getObject(column, type);
+            };
+        }
+        if (type == java.sql.Blob.class) {
+            return (rs, column) -> {
+                return rs.getBlob(column);
+            };
+        }
+        if (type == java.sql.Clob.class) {
+            return (rs, column) -> {
+                return rs.getClob(column);
+            };
+        }
+        return (rs, column) -> {
+            return rs.getObject(column);
+        };
+    }
+
+    // bind value of db type, or setNull() with the matched SQL type if value is
+    // null:
+    static ColumnBinder createColumnBinder(Class<?> type) {
+        if (type == long.class || type == Long.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.BIGINT);
+                } else {
+                    ps.setLong(index, ((Number) value).longValue());
+                }
+            };
+        }
+        if (type == int.class || type == Integer.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.INTEGER);
+                } else {
+                    ps.setInt(index, ((Number) value).intValue());
+                }
+            };
+        }
+        if (type == short.class || type == Short.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.SMALLINT);
+                } else {
+                    ps.setShort(index, ((Number) value).shortValue());
+                }
+            };
+        }
+        if (type == byte.class || type == Byte.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.TINYINT);
+                } else {
+                    ps.setByte(index, ((Number) value).byteValue());
+                }
+            };
+        }
+        if (type == double.class || type == Double.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.DOUBLE);
+                } else {
+                    ps.setDouble(index, ((Number) value).doubleValue());
+                }
+            };
+        }
+        if (type == float.class || type == Float.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.REAL);
+                } else {
+                    ps.setFloat(index, ((Number) value).floatValue());
+                }
+            };
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.BIT);
+                } else {
+                    ps.setBoolean(index, (Boolean) value);
+                }
+            };
+        }
+        if (type == String.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.VARCHAR);
+                } else {
+                    ps.setString(index, (String) value);
+                }
+            };
+        }
+        if (type == BigDecimal.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.DECIMAL);
+                } else {
+                    ps.setBigDecimal(index, (BigDecimal) value);
+                }
+            };
+        }
+        if (type == java.sql.Date.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.DATE);
+                } else {
+                    ps.setDate(index, (java.sql.Date) value);
+                }
+            };
+        }
+        if (type == java.sql.Timestamp.class || type == java.util.Date.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.TIMESTAMP);
+                } else if (value instanceof java.sql.Timestamp) {
+                    ps.setTimestamp(index, (java.sql.Timestamp) value);
+                } else {
+                    ps.setTimestamp(index, new java.sql.Timestamp(((java.util.Date) value).getTime()));
+                }
+            };
+        }
+        if (type == LocalDate.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.DATE);
+                } else {
+                    ps.setObject(index, value, Types.DATE);
+                }
+            };
+        }
+        if (type == LocalTime.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.TIME);
+                } else {
+                    ps.setObject(index, value, Types.TIME);
+                }
+            };
+        }
+        if (type == java.sql.Blob.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.BLOB);
+                } else {
+                    ps.setBlob(index, (java.sql.Blob) value);
+                }
+            };
+        }
+        if (type == java.sql.Clob.class) {
+            return (ps, index, value) -> {
+                if (value == null) {
+                    ps.setNull(index, Types.CLOB);
+                } else {
+                    ps.setClob(index, (java.sql.Clob) value);
                 }
-                setter.invoke(obj, value);
             };
         }
-        return (obj, value) -> {
-            setter.invoke(obj, value);
+        return (ps, index, value) -> {
+            ps.setObject(index, value);
         };
     }
 
     public AccessibleProperty(Field f) {
-        this(f.getType(), f.getName(), f, (obj) -> {
-            return f.get(obj);
-        }, createPropertySetter(f));
+        this(f.getType(), f.getName(), f, Accessors.accessor(f));
     }
 
     public AccessibleProperty(String name, Method getter, Method setter) {
-        this(getter.getReturnType(), name, getter, (obj) -> {
-            return getter.invoke(obj);
-        }, createPropertySetter(setter));
+        this(getter.getReturnType(), name, getter, Accessors.accessor(getter, setter));
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    private AccessibleProperty(final Class<?> type, final String propertyName, final AccessibleObject accessible, final PropertyGetter getter,
-            final PropertySetter setter) {
+    private AccessibleProperty(final Class<?> type, final String propertyName, final AccessibleObject accessible, final Accessors.PropertyAccessor pa) {
+        final PropertyGetter getter = pa.getter;
+        final PropertySetter setter = createPropertySetter(type, pa.setter);
         accessible.setAccessible(true);
         this.accessible = accessible;
         // check:
@@ -187,6 +477,8 @@ class AccessibleProperty {
             }
             setter.set(bean, value);
         };
+        this.columnReader = createColumnReader(this.propertyType, this.converter, this.convertSetter, pa.primitiveSetter);
+        this.columnBinder = createColumnBinder(this.propertyType);
     }
 
     private boolean isNullable() {
@@ -0,0 +1,373 @@
+package com.itranswarp.warpdb;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+/**
+ * Build accessors of entity properties once per Mapper:
+ *
+ * <ul>
+ * <li>fields and getter / setter methods are accessed by a generated hidden
+ * class (direct getfield / putfield or invokevirtual) defined as nestmate of
+ * the declaring class;</li>
+ * <li>no-arg constructors are bound by LambdaMetafactory.</li>
+ * </ul>
+ *
+ * Core reflection is used as fallback when the member cannot be looked up,
+ * e.g. the entity class is in a module not opened to warpdb.
+ *
+ * @author liaoxuefeng
+ */
+final class Accessors {
+
+    static final Logger logger = LoggerFactory.getLogger(Accessors.class);
+
+    /**
+     * Create accessor of field.
+     */
+    static PropertyAccessor accessor(Field f) {
+        try {
+            Object generated = defineAccessor(f.getDeclaringClass(), f.getType(), f, null, null);
+            return new PropertyAccessor((PropertyGetter) generated, (PropertySetter) generated,
+                    isPrimitiveSetterSupported(f.getType()) ? generated : null);
+        } catch (Throwable e) {
+            logger.debug("Cannot generate accessor for field {}, fallback to reflection.", f);
+            return new PropertyAccessor(reflectGetter(f), reflectSetter(f), null);
+        }
+    }
+
+    /**
+     * Create accessor of getter and setter methods.
+     */
+    static PropertyAccessor accessor(Method getter, Method setter) {
+        try {
+            if (getter.getDeclaringClass() != setter.getDeclaringClass() || getter.getReturnType() != setter.getParameterTypes()[0]) {
+                throw new IllegalArgumentException("Getter and setter are not declared in same class with same type.");
+            }
+            Object generated = defineAccessor(getter.getDeclaringClass(), getter.getReturnType(), null, getter, setter);
+            return new PropertyAccessor((PropertyGetter) generated, (PropertySetter) generated,
+                    isPrimitiveSetterSupported(getter.getReturnType()) ? generated : null);
+        } catch (Throwable e) {
+            logger.debug("Cannot generate accessor for methods {} and {}, fallback to reflection.", getter, setter);
+            return new PropertyAccessor(reflectGetter(getter), reflectSetter(setter), null);
+        }
+    }
+
+    static <T> Supplier<T> constructor(Class<T> clazz) {
+        try {
+            return lambdaConstructor(clazz);
+        } catch (Throwable e) {
+            logger.debug("Cannot create lambda constructor for class {}, fallback to reflection.", clazz.getName());
+            return reflectConstructor(clazz);
+        }
+    }
+
+    // generated accessors /////////////////////////////////////////////////////
+
+    static PropertyGetter generatedGetter(Field f) throws Throwable {
+        return (PropertyGetter) defineAccessor(f.getDeclaringClass(), f.getType(), f, null, null);
+    }
+
+    static PropertySetter generatedSetter(Field f) throws Throwable {
+        return (PropertySetter) defineAccessor(f.getDeclaringClass(), f.getType(), f, null, null);
+    }
+
+    static PropertyGetter generatedGetter(Method getter, Method setter) throws Throwable {
+        return (PropertyGetter) defineAccessor(getter.getDeclaringClass(), getter.getReturnType(), null, getter, setter);
+    }
+
+    static PropertySetter generatedSetter(Method getter, Method setter) throws Throwable {
+        return (PropertySetter) defineAccessor(getter.getDeclaringClass(), getter.getReturnType(), null, getter, setter);
+    }
+
+    /**
+     * Define a hidden class implements PropertyGetter and PropertySetter for the
+     * field, or for the getter and setter methods. Each property has its own
+     * class so the call site of each accessor stays monomorphic.
+     */
+    static Object defineAccessor(Class<?> owner, Class<?> type, Field f, Method getter, Method setter) throws Throwable {
+        MethodHandles.Lookup lookup = lookup(owner);
+        lookup.accessClass(PropertyGetter.class);
+        if (!type.isPrimitive()) {
+            // make sure checkcast to property type is allowed:
+            lookup.accessClass(type);
+        }
+        byte[] bytecode = generateAccessor(owner, type, f, getter, setter);
+        MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytecode, true, MethodHandles.Lookup.ClassOption.NESTMATE);
+        return hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+    }
+
+    static byte[] generateAccessor(Class<?> ownerClass, Class<?> type, Field f, Method getter, Method setter) {
+        final String owner = Type.getInternalName(ownerClass);
+        final String desc = Type.getDescriptor(type);
+        final String name = f != null ? f.getName() : getter.getName();
+        final String className = owner + "$$Accessor$" + name;
+        final String primitiveSetter = isPrimitiveSetterSupported(type) ? Type.getInternalName(primitiveSetterType(type)) : null;
+        final String getterInterface = Type.getInternalName(PropertyGetter.class);
+        final String setterInterface = Type.getInternalName(PropertySetter.class);
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null, "java/lang/Object",
+                primitiveSetter == null ? new String[] { getterInterface, setterInterface }
+                        : new String[] { getterInterface, setterInterface, primitiveSetter });
+        // constructor:
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        // Object get(Object bean) { return ((Owner) bean).field; }
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "get", "(Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        if (f != null) {
+            mv.visitFieldInsn(Opcodes.GETFIELD, owner, f.getName(), desc);
+        } else {
+            mv.visitMethodInsn(invokeOpcode(ownerClass), owner, getter.getName(), Type.getMethodDescriptor(getter), ownerClass.isInterface());
+        }
+        if (type.isPrimitive()) {
+            Type wrapper = Type.getType(wrap(type));
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, wrapper.getInternalName(), "valueOf", "(" + desc + ")" + wrapper.getDescriptor(), false);
+        }
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        // void set(Object bean, Object value) { ((Owner) bean).field = (Type) value; }
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "set", "(Ljava/lang/Object;Ljava/lang/Object;)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        if (type.isPrimitive()) {
+            // unbox with widening only, as Field.set() does:
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, className, "unbox", "(Ljava/lang/Object;)" + desc, false);
+        } else {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(type));
+        }
+        putValue(mv, ownerClass, f, setter);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        if (primitiveSetter != null) {
+            // void accept(Object bean, long|int|double value) { ((Owner) bean).field = value; }
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "accept", "(Ljava/lang/Object;" + desc + ")V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+            mv.visitVarInsn(Type.getType(type).getOpcode(Opcodes.ILOAD), 2);
+            putValue(mv, ownerClass, f, setter);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        if (type.isPrimitive()) {
+            generateUnbox(cw, type, ownerClass.getName() + "." + name);
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    static int invokeOpcode(Class<?> owner) {
+        return owner.isInterface() ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL;
+    }
+
+    static void putValue(MethodVisitor mv, Class<?> ownerClass, Field f, Method setter) {
+        String owner = Type.getInternalName(ownerClass);
+        if (f != null) {
+            mv.visitFieldInsn(Opcodes.PUTFIELD, owner, f.getName(), Type.getDescriptor(f.getType()));
+        } else {
+            mv.visitMethodInsn(invokeOpcode(ownerClass), owner, setter.getName(), Type.getMethodDescriptor(setter), ownerClass.isInterface());
+            // discard return value of fluent setter:
+            Class<?> rt = setter.getReturnType();
+            if (rt == long.class || rt == double.class) {
+                mv.visitInsn(Opcodes.POP2);
+            } else if (rt != void.class) {
+                mv.visitInsn(Opcodes.POP);
+            }
+        }
+    }
+
+    /**
+     * Generate static unbox(Object) which accepts the wrapper of the primitive
+     * type and wrappers that can be widened to it, otherwise throws
+     * IllegalArgumentException as Field.set() does.
+     */
+    static void generateUnbox(ClassWriter cw, Class<?> type, String property) {
+        final String desc = Type.getDescriptor(type);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, "unbox", "(Ljava/lang/Object;)" + desc, null, null);
+        mv.visitCode();
+        for (Class<?> source : widenFrom(type)) {
+            String wrapper = Type.getInternalName(wrap(source));
+            Label next = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitTypeInsn(Opcodes.INSTANCEOF, wrapper);
+            mv.visitJumpInsn(Opcodes.IFEQ, next);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, wrapper);
+            if (source == char.class) {
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, "charValue", "()C", false);
+                if (type == long.class) {
+                    mv.visitInsn(Opcodes.I2L);
+                } else if (type == float.class) {
+                    mv.visitInsn(Opcodes.I2F);
+                } else if (type == double.class) {
+                    mv.visitInsn(Opcodes.I2D);
+                }
+            } else {
+                // exact for widening conversions:
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, type.getName() + "Value", "()" + desc, false);
+            }
+            mv.visitInsn(Type.getType(type).getOpcode(Opcodes.IRETURN));
+            mv.visitLabel(next);
+        }
+        mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitLdcInsn("Can not set " + type.getName() + " property " + property + " to null or non-" + type.getName() + " value.");
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V", false);
+        mv.visitInsn(Opcodes.ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // primitive types which can be widened to the type, see JLS 5.1.2:
+    static Class<?>[] widenFrom(Class<?> type) {
+        if (type == long.class) {
+            return new Class<?>[] { long.class, int.class, short.class, byte.class, char.class };
+        }
+        if (type == int.class) {
+            return new Class<?>[] { int.class, short.class, byte.class, char.class };
+        }
+        if (type == short.class) {
+            return new Class<?>[] { short.class, byte.class };
+        }
+        if (type == double.class) {
+            return new Class<?>[] { double.class, float.class, long.class, int.class, short.class, byte.class, char.class };
+        }
+        if (type == float.class) {
+            return new Class<?>[] { float.class, long.class, int.class, short.class, byte.class, char.class };
+        }
+        return new Class<?>[] { type };
+    }
+
+    // LambdaMetafactory based accessors ///////////////////////////////////////
+
+    @SuppressWarnings("unchecked")
+    static <T> Supplier<T> lambdaConstructor(Class<T> clazz) throws Throwable {
+        MethodHandles.Lookup lookup = lookup(clazz);
+        MethodHandle impl = lookup.findConstructor(clazz, MethodType.methodType(void.class));
+        CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class), MethodType.methodType(Object.class), impl,
+                MethodType.methodType(clazz));
+        return (Supplier<T>) site.getTarget().invoke();
+    }
+
+    // reflection based accessors //////////////////////////////////////////////
+
+    static PropertyGetter reflectGetter(Field f) {
+        f.setAccessible(true);
+        return (bean) -> {
+            return f.get(bean);
+        };
+    }
+
+    static PropertySetter reflectSetter(Field f) {
+        f.setAccessible(true);
+        return (bean, value) -> {
+            f.set(bean, value);
+        };
+    }
+
+    static PropertyGetter reflectGetter(Method getter) {
+        getter.setAccessible(true);
+        return (bean) -> {
+            return getter.invoke(bean);
+        };
+    }
+
+    static PropertySetter reflectSetter(Method setter) {
+        setter.setAccessible(true);
+        return (bean, value) -> {
+            setter.invoke(bean, value);
+        };
+    }
+
+    static <T> Supplier<T> reflectConstructor(Class<T> clazz) {
+        try {
+            Constructor<T> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return () -> {
+                try {
+                    return constructor.newInstance();
+                } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static boolean isPrimitiveSetterSupported(Class<?> type) {
+        return type == long.class || type == int.class || type == double.class;
+    }
+
+    static Class<?> primitiveSetterType(Class<?> type) {
+        if (type == long.class) {
+            return ObjLongConsumer.class;
+        }
+        if (type == int.class) {
+            return ObjIntConsumer.class;
+        }
+        if (type == double.class) {
+            return ObjDoubleConsumer.class;
+        }
+        throw new IllegalArgumentException("Unsupported primitive setter type: " + type.getName());
+    }
+
+    static MethodHandles.Lookup lookup(Class<?> clazz) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+    }
+
+    static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    /**
+     * Accessor of a property.
+     */
+    static final class PropertyAccessor {
+
+        final PropertyGetter getter;
+        final PropertySetter setter;
+
+        // ObjLongConsumer / ObjIntConsumer / ObjDoubleConsumer to set primitive
+        // long / int / double without boxing, or null if not supported:
+        final Object primitiveSetter;
+
+        PropertyAccessor(PropertyGetter getter, PropertySetter setter, Object primitiveSetter) {
+            this.getter = getter;
+            this.setter = setter;
+            this.primitiveSetter = primitiveSetter;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.itranswarp.warpdb;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Async facade of WarpDb which runs each operation on an executor and returns
+ * CompletableFuture. A semaphore limits the number of operations submitted to
+ * executor so that tasks do not stampede on connection acquisition, and extra
+ * operations wait in a queue without holding a thread. Rows of publishers are
+ * also pulled with a permit.
+ *
+ * NOTE operations run outside the caller's transaction, but with the
+ * read-your-writes window, withPrimary() scope and shard of the caller thread.
+ * Writes by insert(), update(), remove() and updateSql() also keep reads of
+ * caller thread on primary until completed.
+ *
+ * @author liaoxuefeng
+ */
+public final class AsyncWarpDb {
+
+    static final Logger logger = LoggerFactory.getLogger(AsyncWarpDb.class);
+
+    static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    final WarpDb warpdb;
+    final Executor executor;
+    final Semaphore semaphore;
+    // operations waiting for permit:
+    final Queue<Task<?>> pending = new ConcurrentLinkedQueue<>();
+
+    AsyncWarpDb(WarpDb warpdb, Executor executor, int maxConcurrency) {
+        this.warpdb = warpdb;
+        this.executor = executor;
+        this.semaphore = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Run any operation of WarpDb asynchronously. The operation is queued and
+     * submitted to executor only after a permit is acquired, so the executor never
+     * has more than max concurrency operations in flight.
+     *
+     * @param <R>       Result type.
+     * @param operation Operation to run.
+     * @return CompletableFuture of result.
+     */
+    public <R> CompletableFuture<R> supply(Supplier<R> operation) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        this.pending.add(new Task<>(future, this.warpdb.withCallerRouting(operation)));
+        drain();
+        return future;
+    }
+
+    // run command with a permit but without routing of caller, used to pull rows
+    // of publishers:
+    void execute(Runnable command) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.whenComplete((r, e) -> {
+            if (e != null) {
+                logger.warn("Async task failed.", e);
+            }
+        });
+        this.pending.add(new Task<>(future, () -> {
+            command.run();
+            return null;
+        }));
+        drain();
+    }
+
+    // submit pending tasks while permits are available, called after a task is
+    // queued or a permit is released:
+    void drain() {
+        while (!this.pending.isEmpty() && this.semaphore.tryAcquire()) {
+            Task<?> task = this.pending.poll();
+            if (task == null) {
+                this.semaphore.release();
+                continue;
+            }
+            try {
+                this.executor.execute(() -> runTasks(task));
+            } catch (RejectedExecutionException e) {
+                this.semaphore.release();
+                task.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    // run task and then pending tasks on current thread with the acquired permit,
+    // so no more threads than permits are needed:
+    void runTasks(Task<?> first) {
+        Task<?> task = first;
+        while (task != null) {
+            task.run();
+            task = this.pending.poll();
+        }
+        this.semaphore.release();
+        // task queued after last poll:
+        drain();
+    }
+
+    /**
+     * Run any operation of WarpDb without result asynchronously.
+     *
+     * @param operation Operation to run.
+     * @return CompletableFuture of completion.
+     */
+    public CompletableFuture<Void> run(Runnable operation) {
+        return supply(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    // reads of caller thread go to primary until the write completes and within
+    // read-your-writes window after that:
+    <R> CompletableFuture<R> write(Supplier<R> operation) {
+        Runnable completed = this.warpdb.markAsyncWrite();
+        return supply(operation).whenComplete((r, e) -> completed.run());
+    }
+
+    public <T> CompletableFuture<T> get(Class<T> clazz, Object id) {
+        return supply(() -> this.warpdb.get(clazz, id));
+    }
+
+    public <T> CompletableFuture<T> fetch(Class<T> clazz, Object id) {
+        return supply(() -> this.warpdb.fetch(clazz, id));
+    }
+
+    public <T> CompletableFuture<List<T>> fetchAll(Class<T> clazz, List<?> ids) {
+        return supply(() -> this.warpdb.fetchAll(clazz, ids));
+    }
+
+    public <T> CompletableFuture<List<T>> list(String sql, Object... args) {
+        return supply(() -> this.warpdb.list(sql, args));
+    }
+
+    public <T> CompletableFuture<List<T>> list(Class<T> clazz, String sql, Object... args) {
+        return supply(() -> this.warpdb.list(clazz, sql, args));
+    }
+
+    public <T> CompletableFuture<T> unique(String sql, Object... args) {
+        return supply(() -> this.warpdb.unique(sql, args));
+    }
+
+    public <T> CompletableFuture<T> fetch(String sql, Object... args) {
+        return supply(() -> this.warpdb.fetch(sql, args));
+    }
+
+    public <T> CompletableFuture<Void> insert(T bean) {
+        return write(() -> {
+            this.warpdb.insert(bean);
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<Void> insert(List<T> beans) {
+        return write(() -> {
+            this.warpdb.insert(beans);
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<Void> update(T bean) {
+        return write(() -> {
+            this.warpdb.update(bean);
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<Void> update(List<T> beans) {
+        return write(() -> {
+            this.warpdb.update(beans);
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<Void> remove(T bean) {
+        return write(() -> {
+            this.warpdb.remove(bean);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Integer> updateSql(String sql, Object... args) {
+        return write(() -> this.warpdb.updateSql(sql, args));
+    }
+
+    /**
+     * Create default executor: virtual thread per task if supported by JVM,
+     * otherwise cached daemon threads.
+     */
+    static Executor defaultExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            ThreadFactory factory = (r) -> {
+                Thread t = new Thread(r, "warpdb-async-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    /**
+     * Detect max pool size of common connection pools (HikariCP, DBCP2, Tomcat
+     * JDBC), or return default value.
+     */
+    static int detectPoolSize(DataSource dataSource) {
+        if (dataSource != null) {
+            for (String name : new String[] { "getMaximumPoolSize", "getMaxTotal", "getMaxActive" }) {
+                try {
+                    Method m = dataSource.getClass().getMethod(name);
+                    Object value = m.invoke(dataSource);
+                    if (value instanceof Integer && (Integer) value > 0) {
+                        return (Integer) value;
+                    }
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    // try next:
+                }
+            }
+            logger.info("Cannot detect pool size of {}, use default max concurrency: {}", dataSource.getClass().getName(), DEFAULT_MAX_CONCURRENCY);
+        }
+        return DEFAULT_MAX_CONCURRENCY;
+    }
+
+    /**
+     * Operation waiting for permit.
+     */
+    static final class Task<R> {
+
+        final CompletableFuture<R> future;
+        final Supplier<R> operation;
+
+        Task(CompletableFuture<R> future, Supplier<R> operation) {
+            this.future = future;
+            this.operation = operation;
+        }
+
+        void run() {
+            // skip if cancelled while waiting:
+            if (this.future.isDone()) {
+                return;
+            }
+            try {
+                this.future.complete(this.operation.get());
+            } catch (Throwable t) {
+                // same as CompletableFuture.supplyAsync():
+                this.future.completeExceptionally(t instanceof CompletionException ? t : new CompletionException(t));
+            }
+        }
+    }
+}
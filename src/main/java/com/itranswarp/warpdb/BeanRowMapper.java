@@ -0,0 +1,181 @@
+package com.itranswarp.warpdb;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import jakarta.persistence.PersistenceException;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Map rows to entity beans. The column-index to property plan is resolved once
+ * per ResultSet and cached by the shape (column names) of the result.
+ *
+ * @author liaoxuefeng
+ *
+ * @param <T> Entity type.
+ */
+final class BeanRowMapper<T> implements RowMapper<T>, ResultSetExtractor<List<T>> {
+
+    // columnName -> property:
+    final Map<String, AccessibleProperty> mapping;
+
+    // column names signature -> plan:
+    final Map<String, ColumnPlan> plans = new ConcurrentHashMap<>();
+
+    // plan of last ResultSet mapped by mapRow(ResultSet, int):
+    volatile LastPlan lastPlan = null;
+
+    final Supplier<T> constructor;
+
+    // snapshot loaded values if dirty tracking is enabled, otherwise null:
+    volatile DirtyTracker dirtyTracker = null;
+
+    BeanRowMapper(Class<T> clazz, List<AccessibleProperty> properties) {
+        Map<String, AccessibleProperty> mapping = new HashMap<>();
+        for (AccessibleProperty p : properties) {
+            mapping.put(p.columnName.toLowerCase(), p);
+        }
+        this.mapping = mapping;
+        this.constructor = Accessors.constructor(clazz);
+    }
+
+    /**
+     * Map all rows of the ResultSet using a single resolved plan.
+     */
+    @Override
+    public List<T> extractData(ResultSet rs) throws SQLException, DataAccessException {
+        ColumnPlan plan = resolvePlan(rs);
+        List<T> list = new ArrayList<>();
+        while (rs.next()) {
+            list.add(mapRow(rs, plan));
+        }
+        return list;
+    }
+
+    /**
+     * Map one row. The plan is resolved on the first row of a ResultSet and
+     * reused for next rows of the same ResultSet, which is referenced weakly so
+     * it is not kept after the query.
+     */
+    @Override
+    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        LastPlan last = this.lastPlan;
+        if (last == null || last.resultSet.get() != rs) {
+            last = new LastPlan(rs, resolvePlan(rs));
+            this.lastPlan = last;
+        }
+        return mapRow(rs, last.plan);
+    }
+
+    /**
+     * Create a row mapper bound to a single ResultSet: the plan is resolved on the
+     * first row, and the listener is invoked for each mapped bean.
+     */
+    RowMapper<T> cursorRowMapper(Listener listener) {
+        return new RowMapper<T>() {
+            ColumnPlan plan = null;
+
+            @Override
+            public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+                if (this.plan == null) {
+                    this.plan = resolvePlan(rs);
+                }
+                T bean = BeanRowMapper.this.mapRow(rs, this.plan);
+                try {
+                    listener.invoke(bean);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new PersistenceException(e);
+                }
+                return bean;
+            }
+        };
+    }
+
+    T mapRow(ResultSet rs, ColumnPlan plan) throws SQLException {
+        T bean = this.constructor.get();
+        final int[] columns = plan.columns;
+        final AccessibleProperty[] properties = plan.properties;
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                properties[i].columnReader.read(rs, columns[i], bean);
+            }
+            DirtyTracker tracker = this.dirtyTracker;
+            if (tracker != null) {
+                tracker.snapshot(bean);
+            }
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+        return bean;
+    }
+
+    ColumnPlan resolvePlan(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int count = meta.getColumnCount();
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = meta.getColumnName(i + 1).toLowerCase();
+        }
+        String key = String.join(",", names);
+        ColumnPlan plan = this.plans.get(key);
+        if (plan == null) {
+            plan = this.plans.computeIfAbsent(key, (k) -> {
+                return createPlan(names);
+            });
+        }
+        return plan;
+    }
+
+    ColumnPlan createPlan(String[] names) {
+        List<Integer> columns = new ArrayList<>(names.length);
+        List<AccessibleProperty> properties = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            AccessibleProperty prop = this.mapping.get(names[i]);
+            if (prop != null) {
+                columns.add(i + 1);
+                properties.add(prop);
+            }
+        }
+        return new ColumnPlan(columns.stream().mapToInt(Integer::intValue).toArray(), properties.toArray(AccessibleProperty[]::new));
+    }
+
+    /**
+     * Resolved column indexes (1-based) and the properties they are mapped to.
+     */
+    static final class ColumnPlan {
+
+        final int[] columns;
+        final AccessibleProperty[] properties;
+
+        ColumnPlan(int[] columns, AccessibleProperty[] properties) {
+            this.columns = columns;
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * Plan resolved for a ResultSet.
+     */
+    static final class LastPlan {
+
+        final WeakReference<ResultSet> resultSet;
+        final ColumnPlan plan;
+
+        LastPlan(ResultSet resultSet, ColumnPlan plan) {
+            this.resultSet = new WeakReference<>(resultSet);
+            this.plan = plan;
+        }
+    }
+}
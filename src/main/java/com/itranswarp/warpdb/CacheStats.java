@@ -0,0 +1,58 @@
+package com.itranswarp.warpdb;
+
+/**
+ * Snapshot of cache statistics.
+ *
+ * @author liaoxuefeng
+ */
+public final class CacheStats {
+
+    /**
+     * Number of lookups found in cache.
+     */
+    public final long hits;
+
+    /**
+     * Number of lookups not found in cache.
+     */
+    public final long misses;
+
+    /**
+     * Number of entries evicted because cache is full.
+     */
+    public final long evictions;
+
+    /**
+     * Current number of entries.
+     */
+    public final int size;
+
+    /**
+     * Max number of entries.
+     */
+    public final int maxSize;
+
+    public CacheStats(long hits, long misses, long evictions, int size, int maxSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get hit rate, or 1.0 if no lookup.
+     *
+     * @return Hit rate between 0.0 and 1.0.
+     */
+    public double hitRate() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 1.0 : (double) this.hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{hits: %s, misses: %s, evictions: %s, size: %s, maxSize: %s}", this.hits, this.misses, this.evictions, this.size,
+                this.maxSize);
+    }
+}
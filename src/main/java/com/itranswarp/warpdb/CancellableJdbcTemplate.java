@@ -0,0 +1,36 @@
+package com.itranswarp.warpdb;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * JdbcTemplate with same settings of a replica, which registers each statement
+ * to the hedged read attempt of current thread so that the statement can be
+ * cancelled by another thread.
+ *
+ * @author liaoxuefeng
+ */
+final class CancellableJdbcTemplate extends JdbcTemplate {
+
+    static final ThreadLocal<HedgedReader.Attempt> CURRENT = new ThreadLocal<>();
+
+    CancellableJdbcTemplate(JdbcTemplate template) {
+        super(template.getDataSource(), true);
+        setExceptionTranslator(template.getExceptionTranslator());
+        setFetchSize(template.getFetchSize());
+        setMaxRows(template.getMaxRows());
+        setQueryTimeout(template.getQueryTimeout());
+        setIgnoreWarnings(template.isIgnoreWarnings());
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        HedgedReader.Attempt attempt = CURRENT.get();
+        if (attempt != null) {
+            attempt.register(stmt);
+        }
+    }
+}
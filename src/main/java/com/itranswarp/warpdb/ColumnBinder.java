@@ -0,0 +1,11 @@
+package com.itranswarp.warpdb;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+@FunctionalInterface
+interface ColumnBinder {
+
+    void bind(PreparedStatement ps, int index, Object value) throws SQLException;
+
+}
@@ -0,0 +1,12 @@
+package com.itranswarp.warpdb;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@FunctionalInterface
+interface ColumnReader {
+
+    void read(ResultSet rs, int column, Object bean) throws SQLException, IllegalAccessException, InvocationTargetException;
+
+}
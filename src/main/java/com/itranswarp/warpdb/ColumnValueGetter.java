@@ -0,0 +1,11 @@
+package com.itranswarp.warpdb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@FunctionalInterface
+interface ColumnValueGetter {
+
+    Object get(ResultSet rs, int column) throws SQLException;
+
+}
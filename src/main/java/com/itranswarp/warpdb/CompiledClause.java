@@ -0,0 +1,88 @@
+package com.itranswarp.warpdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jakarta.persistence.AttributeConverter;
+
+/**
+ * Where clause compiled with property names replaced by column names, and the
+ * property of each placeholder.
+ * 
+ * @author liaoxuefeng
+ */
+final class CompiledClause {
+
+    static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("and", "or", "like", "is", "not"));
+
+    static final Pattern p = Pattern.compile("[a-z\\_][a-z0-9\\_]*");
+
+    final String clause;
+    // property of each placeholder:
+    final AccessibleProperty[] properties;
+    final AttributeConverter<Object, Object>[] converters;
+
+    @SuppressWarnings("unchecked")
+    CompiledClause(String clause, AccessibleProperty[] properties) {
+        this.clause = clause;
+        this.properties = properties;
+        this.converters = Arrays.stream(properties).map(p -> p.converter).toArray(AttributeConverter[]::new);
+    }
+
+    static CompiledClause compile(Mapper<?> mapper, String clause) {
+        return mapper.clauseCache.computeIfAbsent(clause, (key) -> {
+            return doCompile(mapper, key);
+        });
+    }
+
+    static CompiledClause doCompile(Mapper<?> mapper, String clause) {
+        Map<String, AccessibleProperty> properties = mapper.allPropertiesMap;
+        StringBuilder sb = new StringBuilder(clause.length() + 10);
+        List<AccessibleProperty> list = new ArrayList<>();
+        int start = 0;
+        Matcher m = p.matcher(clause.toLowerCase());
+        while (m.find()) {
+            sb.append(clause.substring(start, m.start()));
+            String s = clause.substring(m.start(), m.end());
+            String sl = s.toLowerCase();
+            if (properties.containsKey(sl)) {
+                AccessibleProperty ap = properties.get(sl);
+                sb.append(ap.columnName);
+                list.add(ap);
+            } else {
+                if (sl.equals("between")) {
+                    list.add(list.get(list.size() - 1));
+                } else if (sl.equals("null")) {
+                    list.remove(list.size() - 1);
+                } else {
+                    if (!KEYWORDS.contains(sl)) {
+                        throw new IllegalArgumentException("Invalid string \"" + s + "\" found in clause: " + clause);
+                    }
+                }
+                sb.append(s);
+            }
+            start = m.end();
+        }
+        sb.append(clause.substring(start));
+        if (list.size() != numOfPlaceholder(clause)) {
+            throw new IllegalArgumentException("Invalid number of placeholder.");
+        }
+        return new CompiledClause(sb.toString(), list.toArray(AccessibleProperty[]::new));
+    }
+
+    static int numOfPlaceholder(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '?') {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,85 @@
+package com.itranswarp.warpdb;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Cache count(*) results by (SQL, params) with TTL.
+ * 
+ * @author liaoxuefeng
+ */
+final class CountCache {
+
+    final long ttlMillis;
+    final int maxEntries;
+
+    final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+
+    CountCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    int get(String sql, Object[] params, IntSupplier counter) {
+        Key key = new Key(sql, params);
+        long now = System.currentTimeMillis();
+        Entry entry = this.cache.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.count;
+        }
+        int count = counter.getAsInt();
+        if (this.cache.size() >= this.maxEntries) {
+            // remove expired entries, or all entries if still full:
+            this.cache.values().removeIf(e -> e.expiresAt <= now);
+            if (this.cache.size() >= this.maxEntries) {
+                this.cache.clear();
+            }
+        }
+        this.cache.put(key, new Entry(count, now + this.ttlMillis));
+        return count;
+    }
+
+    void clear() {
+        this.cache.clear();
+    }
+
+    static final class Key {
+
+        final String sql;
+        final Object[] params;
+        final int hash;
+
+        Key(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+            this.hash = 31 * sql.hashCode() + Arrays.hashCode(params);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Key) {
+                Key k = (Key) o;
+                return this.hash == k.hash && this.sql.equals(k.sql) && Arrays.equals(this.params, k.params);
+            }
+            return false;
+        }
+    }
+
+    static final class Entry {
+
+        final int count;
+        final long expiresAt;
+
+        Entry(int count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
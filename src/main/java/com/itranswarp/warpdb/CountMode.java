@@ -0,0 +1,30 @@
+package com.itranswarp.warpdb;
+
+/**
+ * How the total of a paged query is counted.
+ * 
+ * @author liaoxuefeng
+ */
+public enum CountMode {
+
+    /**
+     * Exact total by count(*).
+     */
+    EXACT,
+
+    /**
+     * Total by count(*) cached per (SQL, params) for a TTL. May be stale.
+     */
+    CACHED,
+
+    /**
+     * Total estimated from table statistics. Queries with where clause fall back
+     * to EXACT.
+     */
+    ESTIMATED,
+
+    /**
+     * No total. Only hasNext is reported by fetching one more row.
+     */
+    NONE;
+}
@@ -1,8 +1,23 @@
 package com.itranswarp.warpdb;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Hold criteria query information.
@@ -22,6 +37,8 @@ final class Criteria<T> {
     String table = null;
     List<String> where = null;
     List<Object> whereParams = null;
+    // property of each where param:
+    List<AccessibleProperty> whereProperties = null;
     List<String> orderBy = null;
     boolean forUpdate = false;
     int offset = 0;
@@ -32,6 +49,10 @@ final class Criteria<T> {
     }
 
     String sql(String aggregate) {
+        return sql(aggregate, null);
+    }
+
+    String sql(String aggregate, String seek) {
         StringBuilder sb = new StringBuilder(128);
         sb.append("SELECT ");
         if (aggregate == null) {
@@ -44,7 +65,13 @@ final class Criteria<T> {
         }
         sb.append(" FROM ").append(mapper.tableName);
         if (where != null) {
-            sb.append(" WHERE ").append(String.join(" ", where));
+            if (seek == null) {
+                sb.append(" WHERE ").append(String.join(" ", where));
+            } else {
+                sb.append(" WHERE (").append(String.join(" ", where)).append(") AND ").append(seek);
+            }
+        } else if (seek != null) {
+            sb.append(" WHERE ").append(seek);
         }
         if (aggregate == null && orderBy != null) {
             sb.append(" ORDER BY ").append(String.join(", ", orderBy));
@@ -60,6 +87,10 @@ final class Criteria<T> {
     }
 
     Object[] params(String aggregate) {
+        return params(aggregate, null);
+    }
+
+    Object[] params(String aggregate, List<Object> seekParams) {
         List<Object> params = new ArrayList<>();
         if (where != null) {
             for (Object obj : whereParams) {
@@ -70,6 +101,9 @@ final class Criteria<T> {
                 }
             }
         }
+        if (seekParams != null) {
+            params.addAll(seekParams);
+        }
         if (aggregate == null && offset >= 0 && maxResults > 0) {
             params.add(offset);
             params.add(maxResults);
@@ -78,20 +112,173 @@ final class Criteria<T> {
     }
 
     List<T> list() {
+        return query(null, null);
+    }
+
+    // query by current offset and max results, fan out if entity is sharded:
+    List<T> query(String seek, List<Object> seekParams) {
+        if (isScatter()) {
+            return collect(scatter(seek, seekParams));
+        }
+        String selectSql = sql(null, seek);
+        Object[] selectParams = params(null, seekParams);
+        return warpdb.list(selectSql, selectParams);
+    }
+
+    List<T> collect(Supplier<Stream<T>> scatter) {
+        try (Stream<T> stream = scatter.get()) {
+            return stream.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    // entity is sharded and query is not bound to one shard:
+    boolean isScatter() {
+        return warpdb.shardRouter != null && mapper.shardKey != null && warpdb.currentShard.get() == null;
+    }
+
+    /**
+     * Build the query on all shards. Each shard is ordered by order by with @Id
+     * as tiebreaker and null as the smallest value, and limited to offset +
+     * maxResults rows, then the sorted shard cursors are merged and offset is
+     * skipped on the merged rows.
+     */
+    Supplier<Stream<T>> scatter(String seek, List<Object> seekParams) {
+        Keyset keyset = Keyset.of(mapper, orderBy);
+        Comparator<Object> comparator = keyset.comparator(warpdb.shardStringComparator);
+        List<String> originOrderBy = this.orderBy;
+        List<String> originSelect = this.select;
+        int skip = this.offset;
+        int max = this.maxResults;
+        String selectSql;
+        Object[] selectParams;
+        try {
+            this.orderBy = keyset.orderBy(warpdb.nullOrdering());
+            if (this.select != null) {
+                // merge needs values of order by columns:
+                this.select = new ArrayList<>(this.select);
+                for (AccessibleProperty prop : keyset.properties) {
+                    if (this.select.stream().noneMatch(c -> c.equalsIgnoreCase(prop.columnName))) {
+                        this.select.add(prop.columnName);
+                    }
+                }
+            }
+            if (max > 0) {
+                this.offset = 0;
+                this.maxResults = (int) Math.min(Integer.MAX_VALUE, (long) skip + max);
+            }
+            selectSql = sql(null, seek);
+            selectParams = params(null, seekParams);
+        } finally {
+            this.orderBy = originOrderBy;
+            this.select = originSelect;
+            this.offset = skip;
+            this.maxResults = max;
+        }
+        return () -> {
+            Stream<T> merged = warpdb.scatter(mapper, selectSql, selectParams, comparator);
+            return max > 0 ? merged.skip(skip).limit(max) : merged;
+        };
+    }
+
+    Stream<T> stream() {
+        if (isScatter()) {
+            return scatter(null, null).get();
+        }
         String selectSql = sql(null);
         Object[] selectParams = params(null);
-        return warpdb.list(selectSql, selectParams);
+        return warpdb.streamBeans(mapper, selectSql, selectParams);
+    }
+
+    void forEach(Consumer<? super T> consumer) {
+        try (Stream<T> stream = stream()) {
+            stream.forEach(consumer);
+        }
+    }
+
+    Flow.Publisher<T> publish() {
+        if (isScatter()) {
+            return new RowPublisher<>(warpdb.async()::execute, scatter(null, null));
+        }
+        String selectSql = sql(null);
+        Object[] selectParams = params(null);
+        return warpdb.publishBeans(mapper, selectSql, new ArgumentPreparedStatementSetter(selectParams));
+    }
+
+    PreparedQuery<T> prepare() {
+        if (isScatter()) {
+            throw new UnsupportedOperationException("Cannot prepare query of sharded entity: " + mapper.entityClass.getName());
+        }
+        return new PreparedQuery<>(this);
     }
 
     PagedResults<T> list(int pageIndex, int itemsPerPage) {
+        return list(pageIndex, itemsPerPage, CountMode.EXACT);
+    }
+
+    PagedResults<T> list(int pageIndex, int itemsPerPage, CountMode countMode) {
         if (pageIndex < 1) {
             throw new IllegalArgumentException("Invalid page index.");
         }
         if (itemsPerPage < 1 || itemsPerPage > 1000) {
             throw new IllegalArgumentException("Invalid items per page.");
         }
+        if (countMode == CountMode.NONE) {
+            List<T> list = listPage(pageIndex, itemsPerPage);
+            boolean hasNext = hasNext(list, itemsPerPage);
+            Page page = new Page(pageIndex, itemsPerPage, -1, -1, hasNext, CountMode.NONE);
+            page.isEmpty = pageIndex == 1 && list.isEmpty();
+            return new PagedResults<>(page, list);
+        }
+        if (countMode == CountMode.EXACT && warpdb.pagingExecutor != null && !TransactionSynchronizationManager.isActualTransactionActive() && !isScatter()) {
+            return listConcurrently(pageIndex, itemsPerPage, warpdb.pagingExecutor);
+        }
         String countSql = sql("count(*)");
         Object[] countParams = params("count(*)");
+        int totalItems;
+        if (countMode == CountMode.CACHED) {
+            totalItems = warpdb.countCache.get(countSql, countParams, () -> {
+                return count(countSql, countParams);
+            });
+        } else {
+            OptionalInt estimated = countMode == CountMode.ESTIMATED && where == null && !isScatter() ? warpdb.estimateCount(mapper) : OptionalInt.empty();
+            if (estimated.isPresent()) {
+                totalItems = estimated.getAsInt();
+            } else {
+                countMode = CountMode.EXACT;
+                totalItems = count(countSql, countParams);
+            }
+        }
+        int totalPages = 0;
+        if (totalItems > 0) {
+            totalPages = totalItems / itemsPerPage + (totalItems % itemsPerPage > 0 ? 1 : 0);
+        }
+        if (countMode == CountMode.EXACT) {
+            Page page = new Page(pageIndex, itemsPerPage, totalPages, totalItems);
+            if (totalItems == 0 || pageIndex > totalPages) {
+                return new PagedResults<>(page, Collections.emptyList());
+            }
+            this.offset = (pageIndex - 1) * itemsPerPage;
+            this.maxResults = itemsPerPage;
+            return new PagedResults<>(page, list());
+        }
+        // total may be stale or estimated, so always query page with one more row:
+        List<T> list = listPage(pageIndex, itemsPerPage);
+        Page page = new Page(pageIndex, itemsPerPage, totalPages, totalItems, hasNext(list, itemsPerPage), countMode);
+        return new PagedResults<>(page, list);
+    }
+
+    // issue page query on executor while count on current thread, and page query
+    // is routed as current thread so both read from the same database:
+    PagedResults<T> listConcurrently(int pageIndex, int itemsPerPage, Executor executor) {
+        String countSql = sql("count(*)");
+        Object[] countParams = params("count(*)");
+        this.offset = (pageIndex - 1) * itemsPerPage;
+        this.maxResults = itemsPerPage;
+        String selectSql = sql(null);
+        Object[] selectParams = params(null);
+        CompletableFuture<List<T>> future = CompletableFuture.supplyAsync(warpdb.withCallerRouting(() -> {
+            return warpdb.list(selectSql, selectParams);
+        }), executor);
         int totalItems = warpdb.queryForInt(countSql, countParams).getAsInt();
         int totalPages = 0;
         if (totalItems > 0) {
@@ -99,27 +286,136 @@ final class Criteria<T> {
         }
         Page page = new Page(pageIndex, itemsPerPage, totalPages, totalItems);
         if (totalItems == 0 || pageIndex > totalPages) {
+            // discard optimistic page query:
+            future.cancel(false);
             return new PagedResults<>(page, Collections.emptyList());
         }
+        try {
+            return new PagedResults<>(page, future.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // query page with one more row to detect if there is next page:
+    List<T> listPage(int pageIndex, int itemsPerPage) {
         this.offset = (pageIndex - 1) * itemsPerPage;
-        this.maxResults = itemsPerPage;
-        String selectSql = sql(null);
-        Object[] selectParams = params(null);
-        return new PagedResults<>(page, warpdb.list(selectSql, selectParams));
+        this.maxResults = itemsPerPage + 1;
+        return list();
+    }
+
+    boolean hasNext(List<T> list, int itemsPerPage) {
+        if (list.size() > itemsPerPage) {
+            list.remove(itemsPerPage);
+            return true;
+        }
+        return false;
+    }
+
+    SeekResults<T> seek(int maxResults) {
+        return seek(Keyset.of(mapper, orderBy), null, maxResults);
+    }
+
+    SeekResults<T> seek(String token, int maxResults) {
+        Keyset keyset = Keyset.of(mapper, orderBy);
+        return seek(keyset, token == null ? null : keyset.decode(token), maxResults);
+    }
+
+    SeekResults<T> seekAfter(T last, int maxResults) {
+        Keyset keyset = Keyset.of(mapper, orderBy);
+        return seek(keyset, keyset.values(last), maxResults);
+    }
+
+    SeekResults<T> seek(Keyset keyset, Object[] after, int maxResults) {
+        if (maxResults < 1 || maxResults > 1000) {
+            throw new IllegalArgumentException("Invalid max results.");
+        }
+        this.orderBy = keyset.orderBy(warpdb.nullOrdering());
+        // query one more row to detect if there are more results:
+        this.offset = 0;
+        this.maxResults = maxResults + 1;
+        String seek = null;
+        List<Object> seekParams = null;
+        if (after != null) {
+            seekParams = new ArrayList<>(after.length * 2);
+            seek = keyset.predicate(after, seekParams);
+        }
+        List<T> list = query(seek, seekParams);
+        if (list.size() <= maxResults) {
+            return new SeekResults<>(list, null);
+        }
+        list = new ArrayList<>(list.subList(0, maxResults));
+        return new SeekResults<>(list, keyset.encode(keyset.values(list.get(maxResults - 1))));
+    }
+
+    int update(Map<AccessibleProperty, Object> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("No properties provided.");
+        }
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("UPDATE ").append(mapper.tableName).append(" SET ");
+        sb.append(String.join(", ", values.keySet().stream().map((p) -> {
+            return p.columnName + " = ?";
+        }).toArray(String[]::new)));
+        // increase version unless set explicitly, so loaded entities become stale:
+        if (mapper.version != null && !values.containsKey(mapper.version)) {
+            sb.append(", ").append(mapper.versionIncrement);
+        }
+        sb.append(" WHERE ").append(String.join(" ", where));
+        ColumnBinder[] binders = values.keySet().stream().map((p) -> {
+            return p.columnBinder;
+        }).toArray(ColumnBinder[]::new);
+        return executeUpdate(sb.toString(), binders, values.values().toArray());
+    }
+
+    int delete() {
+        String sql = "DELETE FROM " + mapper.tableName + " WHERE " + String.join(" ", where);
+        return executeUpdate(sql, new ColumnBinder[0], new Object[0]);
+    }
+
+    // execute update with typed values followed by where params, on each shard if
+    // entity is sharded:
+    int executeUpdate(String sql, ColumnBinder[] binders, Object[] values) {
+        int size = whereParams.size();
+        ColumnBinder[] allBinders = Arrays.copyOf(binders, binders.length + size);
+        Object[] args = Arrays.copyOf(values, values.length + size);
+        for (int i = 0; i < size; i++) {
+            // where params are bound by binder of property like PreparedQuery:
+            AccessibleProperty prop = whereProperties.get(i);
+            Object param = whereParams.get(i);
+            if (param != null && !PreparedQuery.accepts(prop.propertyType, param)) {
+                throw PreparedQuery.mismatch(i, param, prop);
+            }
+            allBinders[binders.length + i] = prop.columnBinder;
+            args[values.length + i] = param;
+        }
+        if (!isScatter()) {
+            return warpdb.executeUpdate(sql, allBinders, args);
+        }
+        return warpdb.scatterSum(() -> warpdb.executeUpdate(sql, allBinders, args));
     }
 
     int count() {
         String selectSql = sql("count(*)");
         Object[] selectParams = params("count(*)");
-        return warpdb.queryForInt(selectSql, selectParams).getAsInt();
+        return count(selectSql, selectParams);
+    }
+
+    // count on each shard and sum if entity is sharded:
+    int count(String countSql, Object[] countParams) {
+        if (isScatter()) {
+            return warpdb.scatterSum(() -> warpdb.queryForInt(countSql, countParams).orElse(0));
+        }
+        return warpdb.queryForInt(countSql, countParams).getAsInt();
     }
 
     T first() {
         this.offset = 0;
         this.maxResults = 1;
-        String selectSql = sql(null);
-        Object[] selectParams = params(null);
-        List<T> list = warpdb.list(selectSql, selectParams);
+        List<T> list = list();
         if (list.isEmpty()) {
             return null;
         }
@@ -129,9 +425,10 @@ final class Criteria<T> {
     T unique() {
         this.offset = 0;
         this.maxResults = 2;
-        String selectSql = sql(null);
-        Object[] selectParams = params(null);
-        List<T> list = warpdb.list(selectSql, selectParams);
+        return uniqueResult(list());
+    }
+
+    T uniqueResult(List<T> list) {
         if (list.isEmpty()) {
             throw new RuntimeException("Expected unique row but nothing found.");
         }
@@ -140,4 +437,56 @@ final class Criteria<T> {
         }
         return list.get(0);
     }
+
+    // async terminals build sql and params on the caller thread, then only run
+    // the query asynchronously:
+
+    CompletableFuture<List<T>> listAsync() {
+        if (isScatter()) {
+            Supplier<Stream<T>> scatter = scatter(null, null);
+            return warpdb.async().supply(() -> collect(scatter));
+        }
+        String selectSql = sql(null);
+        Object[] selectParams = params(null);
+        return warpdb.async().supply(() -> warpdb.list(selectSql, selectParams));
+    }
+
+    CompletableFuture<Integer> countAsync() {
+        String selectSql = sql("count(*)");
+        Object[] selectParams = params("count(*)");
+        if (isScatter()) {
+            return warpdb.async().supply(() -> warpdb.scatterSum(() -> warpdb.queryForInt(selectSql, selectParams).orElse(0)));
+        }
+        return warpdb.async().supply(() -> warpdb.queryForInt(selectSql, selectParams).getAsInt());
+    }
+
+    CompletableFuture<T> firstAsync() {
+        this.offset = 0;
+        this.maxResults = 1;
+        if (isScatter()) {
+            Supplier<Stream<T>> scatter = scatter(null, null);
+            return warpdb.async().supply(() -> {
+                List<T> list = collect(scatter);
+                return list.isEmpty() ? null : list.get(0);
+            });
+        }
+        String selectSql = sql(null);
+        Object[] selectParams = params(null);
+        return warpdb.async().supply(() -> {
+            List<T> list = warpdb.list(selectSql, selectParams);
+            return list.isEmpty() ? null : list.get(0);
+        });
+    }
+
+    CompletableFuture<T> uniqueAsync() {
+        this.offset = 0;
+        this.maxResults = 2;
+        if (isScatter()) {
+            Supplier<Stream<T>> scatter = scatter(null, null);
+            return warpdb.async().supply(() -> uniqueResult(collect(scatter)));
+        }
+        String selectSql = sql(null);
+        Object[] selectParams = params(null);
+        return warpdb.async().supply(() -> uniqueResult(warpdb.list(selectSql, selectParams)));
+    }
 }
@@ -0,0 +1,207 @@
+package com.itranswarp.warpdb;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.persistence.PersistenceException;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Track loaded values of updatable properties by bean identity, and generate
+ * update statement for changed properties only.
+ *
+ * @author liaoxuefeng
+ */
+final class DirtyTracker {
+
+    final AccessibleProperty[] properties;
+    final AccessibleProperty[] ids;
+    final AccessibleProperty version;
+    final String tableName;
+    final String whereIdsAndVersionEquals;
+
+    // weak bean identity -> db-ready values of properties:
+    final Map<WeakKey, Object[]> snapshots = new ConcurrentHashMap<>();
+    final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    // changed properties -> update statement:
+    final Map<BitSet, UpdateStatement> statements = new ConcurrentHashMap<>();
+
+    DirtyTracker(Mapper<?> mapper) {
+        this.properties = mapper.updatableProperties.toArray(AccessibleProperty[]::new);
+        this.ids = mapper.ids;
+        this.version = mapper.version;
+        this.tableName = mapper.tableName;
+        this.whereIdsAndVersionEquals = mapper.whereIdsAndVersionEquals;
+    }
+
+    void snapshot(Object bean) throws IllegalAccessException, InvocationTargetException {
+        expunge();
+        this.snapshots.put(new WeakKey(bean, this.queue), values(bean));
+    }
+
+    Object[] snapshotOf(Object bean) {
+        return this.snapshots.get(new WeakKey(bean, null));
+    }
+
+    // copy written values into snapshot, or after commit if in transaction. If
+    // rolled back, version of bean is restored so retried update is written
+    // again. null written means all:
+    void refresh(Object bean, Object[] snapshot, Object[] values, BitSet written, Object oldVersion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        copy(snapshot, values, written);
+                    } else if (status == STATUS_ROLLED_BACK && oldVersion != null) {
+                        try {
+                            version.convertSetter.set(bean, oldVersion);
+                        } catch (IllegalAccessException | InvocationTargetException e) {
+                            throw new PersistenceException(e);
+                        }
+                    }
+                }
+            });
+        } else {
+            copy(snapshot, values, written);
+        }
+    }
+
+    static void copy(Object[] snapshot, Object[] values, BitSet written) {
+        if (written == null) {
+            System.arraycopy(values, 0, snapshot, 0, values.length);
+        } else {
+            written.stream().forEach(i -> snapshot[i] = values[i]);
+        }
+    }
+
+    Object[] values(Object bean) throws IllegalAccessException, InvocationTargetException {
+        Object[] values = new Object[this.properties.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.properties[i].convertGetter.get(bean);
+        }
+        return values;
+    }
+
+    BitSet diff(Object[] snapshot, Object[] values) {
+        BitSet changed = new BitSet(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (!Objects.deepEquals(snapshot[i], values[i])) {
+                changed.set(i);
+            }
+        }
+        return changed;
+    }
+
+    UpdateStatement statement(BitSet changed) {
+        UpdateStatement stmt = this.statements.get(changed);
+        if (stmt == null) {
+            stmt = this.statements.computeIfAbsent(changed, (key) -> {
+                return new UpdateStatement(key);
+            });
+        }
+        return stmt;
+    }
+
+    void expunge() {
+        Reference<?> ref;
+        while ((ref = this.queue.poll()) != null) {
+            this.snapshots.remove(ref);
+        }
+    }
+
+    /**
+     * Update statement of changed properties.
+     */
+    final class UpdateStatement {
+
+        final String sql;
+        // index of changed properties:
+        final int[] indexes;
+        final ColumnBinder[] binders;
+
+        UpdateStatement(BitSet changed) {
+            int n = changed.cardinality();
+            this.indexes = changed.stream().toArray();
+            List<ColumnBinder> binders = new ArrayList<>(n + ids.length + 2);
+            List<String> sets = new ArrayList<>(n + 1);
+            for (int i = 0; i < n; i++) {
+                AccessibleProperty prop = properties[this.indexes[i]];
+                sets.add(prop.columnName + " = ?");
+                binders.add(prop.columnBinder);
+            }
+            if (version != null) {
+                sets.add(version.columnName + " = ?");
+                binders.add(version.columnBinder);
+            }
+            for (AccessibleProperty id : ids) {
+                binders.add(id.columnBinder);
+            }
+            if (version != null) {
+                binders.add(version.columnBinder);
+            }
+            this.binders = binders.toArray(ColumnBinder[]::new);
+            this.sql = "UPDATE " + tableName + " SET " + String.join(", ", sets) + " WHERE " + whereIdsAndVersionEquals;
+        }
+
+        Object[] args(Object[] values, Object[] idValues, Object version, Object nextVersion) {
+            Object[] args = new Object[this.binders.length];
+            int n = 0;
+            for (int i = 0; i < this.indexes.length; i++) {
+                args[n] = values[this.indexes[i]];
+                n++;
+            }
+            if (DirtyTracker.this.version != null) {
+                args[n] = nextVersion;
+                n++;
+            }
+            System.arraycopy(idValues, 0, args, n, idValues.length);
+            n += idValues.length;
+            if (DirtyTracker.this.version != null) {
+                args[n] = version;
+            }
+            return args;
+        }
+    }
+
+    /**
+     * Weak reference compared by identity of referent.
+     */
+    static final class WeakKey extends WeakReference<Object> {
+
+        final int hash;
+
+        WeakKey(Object bean, ReferenceQueue<Object> queue) {
+            super(bean, queue);
+            this.hash = System.identityHashCode(bean);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (o instanceof WeakKey) {
+                Object referent = get();
+                return referent != null && referent == ((WeakKey) o).get();
+            }
+            return false;
+        }
+    }
+}
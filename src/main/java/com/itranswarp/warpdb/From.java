@@ -2,7 +2,11 @@ package com.itranswarp.warpdb;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * select ... FROM ...
@@ -89,6 +93,47 @@ public final class From<T> extends CriteriaQuery<T> {
         return this.criteria.list();
     }
 
+    /**
+     * Get all results as a stream backed by an open cursor. The stream must be
+     * closed after use.
+     * 
+     * @return Stream of object T.
+     */
+    public Stream<T> stream() {
+        return this.criteria.stream();
+    }
+
+    /**
+     * Pass each result to consumer without loading all results into memory.
+     * 
+     * @param consumer Consumer of object T.
+     */
+    public void forEach(Consumer<? super T> consumer) {
+        this.criteria.forEach(consumer);
+    }
+
+    /**
+     * Publish results with backpressure. Each subscriber opens a cursor on one
+     * connection, rows are pulled only as requested, and the cursor is closed on
+     * completion, error or cancel. Rows are published on the async executor,
+     * outside the caller's transaction.
+     * 
+     * @return Publisher of object T.
+     */
+    public Flow.Publisher<T> publish() {
+        return this.criteria.publish();
+    }
+
+    /**
+     * Compile the query into an immutable PreparedQuery which can be executed
+     * many times with new arguments.
+     * 
+     * @return PreparedQuery object.
+     */
+    public PreparedQuery<T> prepare() {
+        return this.criteria.prepare();
+    }
+
     /**
      * Do page query using default items per page.
      * 
@@ -110,6 +155,18 @@ public final class From<T> extends CriteriaQuery<T> {
         return this.criteria.list(pageIndex, itemsPerPage);
     }
 
+    /**
+     * Do page query with count mode.
+     * 
+     * @param pageIndex    Page index, starts from 1.
+     * @param itemsPerPage Page size.
+     * @param countMode    How the total is counted.
+     * @return PagedResults object.
+     */
+    public PagedResults<T> list(int pageIndex, int itemsPerPage, CountMode countMode) {
+        return this.criteria.list(pageIndex, itemsPerPage, countMode);
+    }
+
     /**
      * Get count as int.
      * 
@@ -140,4 +197,44 @@ public final class From<T> extends CriteriaQuery<T> {
     public T unique() {
         return this.criteria.unique();
     }
+
+    /**
+     * Get all results as list asynchronously. The query runs outside the caller's
+     * transaction.
+     * 
+     * @return CompletableFuture of list.
+     */
+    public CompletableFuture<List<T>> listAsync() {
+        return this.criteria.listAsync();
+    }
+
+    /**
+     * Get count asynchronously. The query runs outside the caller's transaction.
+     * 
+     * @return CompletableFuture of count.
+     */
+    public CompletableFuture<Integer> countAsync() {
+        return this.criteria.countAsync();
+    }
+
+    /**
+     * Get first row of the query asynchronously, completed with null if no result
+     * found. The query runs outside the caller's transaction.
+     * 
+     * @return CompletableFuture of object T.
+     */
+    public CompletableFuture<T> firstAsync() {
+        return this.criteria.firstAsync();
+    }
+
+    /**
+     * Get unique result of the query asynchronously, completed exceptionally if
+     * no result found or more than 1 results found. The query runs outside the
+     * caller's transaction.
+     * 
+     * @return CompletableFuture of object T.
+     */
+    public CompletableFuture<T> uniqueAsync() {
+        return this.criteria.uniqueAsync();
+    }
 }
@@ -0,0 +1,52 @@
+package com.itranswarp.warpdb;
+
+/**
+ * Snapshot of hedged read statistics.
+ *
+ * @author liaoxuefeng
+ */
+public final class HedgeStats {
+
+    /**
+     * Number of reads which may be hedged.
+     */
+    public final long reads;
+
+    /**
+     * Number of reads which sent a hedge request to a second replica.
+     */
+    public final long hedged;
+
+    /**
+     * Number of hedged reads which were answered by the second replica first.
+     */
+    public final long hedgeWins;
+
+    /**
+     * Current delay in milliseconds before sending a hedge request, or -1 if not
+     * enough samples yet.
+     */
+    public final double delayMillis;
+
+    public HedgeStats(long reads, long hedged, long hedgeWins, double delayMillis) {
+        this.reads = reads;
+        this.hedged = hedged;
+        this.hedgeWins = hedgeWins;
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Get rate of hedged reads, or 0.0 if no read.
+     *
+     * @return Hedge rate between 0.0 and 1.0.
+     */
+    public double hedgeRate() {
+        return this.reads == 0 ? 0.0 : (double) this.hedged / this.reads;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{reads: %s, hedged: %s, hedgeWins: %s, delayMillis: %.3f}", this.reads, this.hedged, this.hedgeWins,
+                this.delayMillis);
+    }
+}
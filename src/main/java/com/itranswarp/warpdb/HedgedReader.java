@@ -0,0 +1,216 @@
+package com.itranswarp.warpdb;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import jakarta.persistence.PersistenceException;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Send a read to a second replica if the first one has not answered within a
+ * percentile of recent read latencies. The first result wins and the statement
+ * of the other replica is cancelled. Latency of every first attempt is sampled,
+ * and a hedged read counts as at least the time until the hedge answered, so
+ * the delay does not keep falling when slow reads are hedged.
+ *
+ * @author liaoxuefeng
+ */
+final class HedgedReader {
+
+    // number of recent latencies kept:
+    static final int WINDOW_SIZE = 256;
+    // no hedging until enough latencies are sampled:
+    static final int MIN_SAMPLES = 32;
+    // re-compute delay after every N samples:
+    static final int RECOMPUTE_INTERVAL = 32;
+
+    final double percentile;
+    final long minDelayNanos;
+
+    final LongAdder reads = new LongAdder();
+    final LongAdder hedged = new LongAdder();
+    final LongAdder hedgeWins = new LongAdder();
+
+    // ring buffer of recent latencies in nanoseconds:
+    final long[] latencies = new long[WINDOW_SIZE];
+    long samples = 0;
+    // delay before hedging, or Long.MAX_VALUE if not enough samples:
+    volatile long delayNanos = Long.MAX_VALUE;
+
+    HedgedReader(double percentile, long minDelayNanos) {
+        this.percentile = percentile;
+        this.minDelayNanos = minDelayNanos;
+    }
+
+    <R> R read(Executor executor, ReplicaRouter router, Function<JdbcTemplate, R> query) {
+        this.reads.increment();
+        long delay = this.delayNanos;
+        if (delay == Long.MAX_VALUE) {
+            return readWithoutHedge(router, query);
+        }
+        CompletableFuture<R> result = new CompletableFuture<>();
+        // number of attempts not finished:
+        AtomicInteger running = new AtomicInteger();
+        Attempt[] attempts = new Attempt[2];
+        AtomicReference<Attempt> winner = new AtomicReference<>();
+        long start = System.nanoTime();
+        int first = router.acquire();
+        attempts[0] = new Attempt(false);
+        submit(executor, router, first, query, attempts[0], attempts, winner, result, running);
+        try {
+            R r;
+            try {
+                r = result.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // send hedge request to another replica:
+                this.hedged.increment();
+                attempts[1] = new Attempt(true);
+                submit(executor, router, router.acquireOther(first), query, attempts[1], attempts, winner, result, running);
+                r = result.get();
+                if (winner.get().hedge) {
+                    this.hedgeWins.increment();
+                }
+            }
+            // latency of first attempt, or its lower bound if hedge won:
+            record(System.nanoTime() - start);
+            return r;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelOthers(attempts, null);
+            throw new PersistenceException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PersistenceException(cause);
+        }
+    }
+
+    // read on caller thread until enough latencies are sampled:
+    <R> R readWithoutHedge(ReplicaRouter router, Function<JdbcTemplate, R> query) {
+        long start = System.nanoTime();
+        int index = router.acquire();
+        try {
+            R r = query.apply(router.cancellables[index]);
+            record(System.nanoTime() - start);
+            return r;
+        } finally {
+            router.release(index);
+        }
+    }
+
+    <R> void submit(Executor executor, ReplicaRouter router, int index, Function<JdbcTemplate, R> query, Attempt attempt, Attempt[] attempts,
+            AtomicReference<Attempt> winner, CompletableFuture<R> result, AtomicInteger running) {
+        running.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                boolean skipped = false;
+                R r = null;
+                Throwable error = null;
+                CancellableJdbcTemplate.CURRENT.set(attempt);
+                try {
+                    // skip if already answered by another attempt:
+                    skipped = result.isDone();
+                    if (!skipped) {
+                        r = query.apply(router.cancellables[index]);
+                    }
+                } catch (RuntimeException | Error e) {
+                    error = e;
+                } finally {
+                    CancellableJdbcTemplate.CURRENT.remove();
+                    router.release(index);
+                }
+                int left = running.decrementAndGet();
+                if (skipped) {
+                    return;
+                }
+                if (error == null) {
+                    if (winner.compareAndSet(null, attempt)) {
+                        result.complete(r);
+                        cancelOthers(attempts, attempt);
+                    }
+                } else if (left == 0) {
+                    // fail only if no other attempt is running:
+                    result.completeExceptionally(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.decrementAndGet();
+            router.release(index);
+            throw e;
+        }
+    }
+
+    void cancelOthers(Attempt[] attempts, Attempt winner) {
+        for (Attempt attempt : attempts) {
+            if (attempt != null && attempt != winner) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    synchronized void record(long nanos) {
+        this.latencies[(int) (this.samples % WINDOW_SIZE)] = nanos;
+        this.samples++;
+        if (this.samples >= MIN_SAMPLES && this.samples % RECOMPUTE_INTERVAL == 0) {
+            int n = (int) Math.min(this.samples, WINDOW_SIZE);
+            long[] sorted = Arrays.copyOf(this.latencies, n);
+            Arrays.sort(sorted);
+            int index = Math.min(n - 1, (int) Math.ceil(this.percentile / 100.0 * n) - 1);
+            this.delayNanos = Math.max(this.minDelayNanos, sorted[Math.max(0, index)]);
+        }
+    }
+
+    HedgeStats stats() {
+        long delay = this.delayNanos;
+        return new HedgeStats(this.reads.sum(), this.hedged.sum(), this.hedgeWins.sum(), delay == Long.MAX_VALUE ? -1 : delay / 1_000_000.0);
+    }
+
+    /**
+     * One attempt of a hedged read, which holds the running statement.
+     */
+    static final class Attempt {
+
+        final boolean hedge;
+        volatile boolean cancelled = false;
+        volatile Statement statement = null;
+
+        Attempt(boolean hedge) {
+            this.hedge = hedge;
+        }
+
+        void register(Statement stmt) throws SQLException {
+            this.statement = stmt;
+            if (this.cancelled) {
+                stmt.cancel();
+            }
+        }
+
+        void cancel() {
+            this.cancelled = true;
+            Statement stmt = this.statement;
+            if (stmt != null) {
+                try {
+                    stmt.cancel();
+                } catch (SQLException e) {
+                    // ignore:
+                }
+            }
+        }
+    }
+}
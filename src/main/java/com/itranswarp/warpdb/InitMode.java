@@ -0,0 +1,24 @@
+package com.itranswarp.warpdb;
+
+/**
+ * How mappers of entities are built by WarpDb.init().
+ * 
+ * @author liaoxuefeng
+ */
+public enum InitMode {
+
+    /**
+     * Build all mappers one by one.
+     */
+    EAGER,
+
+    /**
+     * Build all mappers in parallel on the common fork-join pool.
+     */
+    PARALLEL,
+
+    /**
+     * Build each mapper on first use. Only table names are resolved by init().
+     */
+    LAZY;
+}
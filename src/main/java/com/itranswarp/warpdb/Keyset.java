@@ -0,0 +1,372 @@
+package com.itranswarp.warpdb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import jakarta.persistence.PersistenceException;
+
+/**
+ * Keyset (seek) of a criteria query: the order by columns with @Id columns
+ * appended as tiebreaker.
+ *
+ * @author liaoxuefeng
+ */
+final class Keyset {
+
+    final AccessibleProperty[] properties;
+    final boolean[] desc;
+    // true if column can be null, which is ordered as the smallest value:
+    final boolean[] nullable;
+
+    // e.g. "createdAt DESC, id DESC":
+    final String signature;
+
+    Keyset(AccessibleProperty[] properties, boolean[] desc) {
+        this.properties = properties;
+        this.desc = desc;
+        this.nullable = new boolean[properties.length];
+        List<String> list = new ArrayList<>(properties.length);
+        for (int i = 0; i < properties.length; i++) {
+            list.add(properties[i].columnName + (desc[i] ? " DESC" : " ASC"));
+            this.nullable[i] = properties[i].nullable && !properties[i].propertyType.isPrimitive();
+        }
+        this.signature = String.join(", ", list);
+    }
+
+    /**
+     * Build keyset from order by like ["name", "createdAt DESC"].
+     */
+    static Keyset of(Mapper<?> mapper, List<String> orderBy) {
+        List<AccessibleProperty> props = new ArrayList<>();
+        List<Boolean> descs = new ArrayList<>();
+        if (orderBy != null) {
+            for (String s : orderBy) {
+                String column = s;
+                boolean desc = false;
+                String upper = s.toUpperCase();
+                if (upper.endsWith(" DESC")) {
+                    column = s.substring(0, s.length() - 5).trim();
+                    desc = true;
+                } else if (upper.endsWith(" ASC")) {
+                    column = s.substring(0, s.length() - 4).trim();
+                }
+                AccessibleProperty ap = mapper.allColumnsMap.get(column.toLowerCase());
+                if (ap == null) {
+                    throw new IllegalArgumentException("Invalid column when use seek: " + column);
+                }
+                if (!props.contains(ap)) {
+                    props.add(ap);
+                    descs.add(desc);
+                }
+            }
+        }
+        // append @Id as tiebreaker using direction of last order by:
+        boolean lastDesc = descs.isEmpty() ? false : descs.get(descs.size() - 1);
+        for (AccessibleProperty id : mapper.ids) {
+            if (!props.contains(id)) {
+                props.add(id);
+                descs.add(lastDesc);
+            }
+        }
+        boolean[] desc = new boolean[descs.size()];
+        for (int i = 0; i < desc.length; i++) {
+            desc[i] = descs.get(i);
+        }
+        return new Keyset(props.toArray(AccessibleProperty[]::new), desc);
+    }
+
+    /**
+     * Build order by with null as the smallest value of nullable columns.
+     */
+    List<String> orderBy(NullOrdering nulls) {
+        List<String> list = new ArrayList<>(this.properties.length);
+        for (int i = 0; i < this.properties.length; i++) {
+            String column = this.properties[i].columnName;
+            String direction = this.desc[i] ? " DESC" : "";
+            if (!this.nullable[i] || nulls == NullOrdering.NATIVE) {
+                list.add(column + direction);
+            } else if (nulls == NullOrdering.NULLS_CLAUSE) {
+                list.add(column + (this.desc[i] ? " DESC NULLS LAST" : " NULLS FIRST"));
+            } else {
+                list.add("CASE WHEN " + column + " IS NULL THEN 0 ELSE 1 END" + direction);
+                list.add(column + direction);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Build predicate of rows after the keyset values, which is expanded from row
+     * value comparison like "(c1, c2) > (?, ?)" to a portable form like
+     * "c1 >= ? AND (c1 > ? OR (c1 = ? AND c2 > ?))". The leading bound on c1
+     * allows index range scan, and mixed directions are supported. Null of a
+     * nullable column is compared as the smallest value like orderBy().
+     */
+    String predicate(Object[] values, List<Object> params) {
+        checkValues(values);
+        StringBuilder sb = new StringBuilder(64);
+        if (this.properties.length > 1) {
+            appendBound(sb, values[0], params);
+        }
+        sb.append('(');
+        boolean first = true;
+        for (int i = 0; i < this.properties.length; i++) {
+            // no row is after null of DESC column:
+            if (values[i] == null && this.desc[i]) {
+                continue;
+            }
+            if (!first) {
+                sb.append(" OR ");
+            }
+            first = false;
+            if (i > 0) {
+                sb.append('(');
+            }
+            for (int j = 0; j < i; j++) {
+                if (values[j] == null) {
+                    sb.append(this.properties[j].columnName).append(" IS NULL AND ");
+                } else {
+                    sb.append(this.properties[j].columnName).append(" = ? AND ");
+                    params.add(values[j]);
+                }
+            }
+            appendAfter(sb, i, values[i], params);
+            if (i > 0) {
+                sb.append(')');
+            }
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+
+    // leading bound of first column, skipped if it cannot use index:
+    void appendBound(StringBuilder sb, Object value, List<Object> params) {
+        String column = this.properties[0].columnName;
+        if (!this.nullable[0]) {
+            sb.append(column).append(this.desc[0] ? " <= ?" : " >= ?").append(" AND ");
+            params.add(value);
+        } else if (value == null && this.desc[0]) {
+            sb.append(column).append(" IS NULL AND ");
+        } else if (value != null && !this.desc[0]) {
+            sb.append(column).append(" >= ? AND ");
+            params.add(value);
+        }
+    }
+
+    // rows after value of column i:
+    void appendAfter(StringBuilder sb, int i, Object value, List<Object> params) {
+        String column = this.properties[i].columnName;
+        if (value == null) {
+            sb.append(column).append(" IS NOT NULL");
+        } else if (!this.desc[i]) {
+            sb.append(column).append(" > ?");
+            params.add(value);
+        } else if (this.nullable[i]) {
+            sb.append('(').append(column).append(" < ? OR ").append(column).append(" IS NULL)");
+            params.add(value);
+        } else {
+            sb.append(column).append(" < ?");
+            params.add(value);
+        }
+    }
+
+    void checkValues(Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null && !this.nullable[i]) {
+                throw new IllegalArgumentException("Cannot seek by null value of property: " + this.properties[i].propertyName);
+            }
+        }
+    }
+
+    /**
+     * Get db-ready keyset values of bean.
+     */
+    Object[] values(Object bean) {
+        Object[] values = new Object[this.properties.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.properties[i].convertGetter.get(bean);
+            }
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new PersistenceException(e);
+        }
+        return values;
+    }
+
+    /**
+     * Compare beans by keyset values in the same order as orderBy(), with null
+     * as the smallest value. Strings are compared by the given comparator
+     * which must match database collation, and a string column is rejected if
+     * comparator is null.
+     */
+    Comparator<Object> comparator(Comparator<String> strings) {
+        if (strings == null) {
+            for (AccessibleProperty prop : this.properties) {
+                if (prop.propertyType == String.class) {
+                    throw new UnsupportedOperationException("Cannot merge shards ordered by string column " + prop.columnName
+                            + " without a comparator matching database collation, set it by setShardStringComparator().");
+                }
+            }
+        }
+        return (b1, b2) -> {
+            Object[] v1 = values(b1);
+            Object[] v2 = values(b2);
+            for (int i = 0; i < v1.length; i++) {
+                int n = compare(v1[i], v2[i], strings);
+                if (n != 0) {
+                    return this.desc[i] ? -n : n;
+                }
+            }
+            return 0;
+        };
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compare(Object o1, Object o2, Comparator<String> strings) {
+        if (o1 == null || o2 == null) {
+            return o1 == o2 ? 0 : (o1 == null ? -1 : 1);
+        }
+        if (o1 instanceof String) {
+            return strings.compare((String) o1, (String) o2);
+        }
+        return ((Comparable) o1).compareTo(o2);
+    }
+
+    /**
+     * Encode keyset values as an opaque, url-safe continuation token.
+     */
+    String encode(Object[] values) {
+        checkValues(values);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(128);
+        try (DataOutputStream data = new DataOutputStream(output)) {
+            data.writeUTF(this.signature);
+            for (Object value : values) {
+                data.writeBoolean(value != null);
+                if (value != null) {
+                    data.writeUTF(toString(value));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(output.toByteArray());
+    }
+
+    /**
+     * Decode continuation token as keyset values.
+     */
+    Object[] decode(String token) {
+        Object[] values = new Object[this.properties.length];
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (!this.signature.equals(data.readUTF())) {
+                throw new IllegalArgumentException("Continuation token does not match order by: " + this.signature);
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = data.readBoolean() ? fromString(this.properties[i].propertyType, data.readUTF()) : null;
+            }
+            checkValues(values);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+        }
+        return values;
+    }
+
+    static String toString(Object value) {
+        // all dates are encoded as "epoch millis:nanos of millisecond", since a
+        // java.util.Date property is read as Timestamp:
+        if (value instanceof java.util.Date) {
+            int nanos = value instanceof java.sql.Timestamp ? ((java.sql.Timestamp) value).getNanos() % 1_000_000 : 0;
+            return ((java.util.Date) value).getTime() + ":" + nanos;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+
+    static Object fromString(Class<?> type, String s) {
+        if (type == String.class) {
+            return s;
+        }
+        if (type == long.class || type == Long.class) {
+            return Long.valueOf(s);
+        }
+        if (type == int.class || type == Integer.class) {
+            return Integer.valueOf(s);
+        }
+        if (type == short.class || type == Short.class) {
+            return Short.valueOf(s);
+        }
+        if (type == byte.class || type == Byte.class) {
+            return Byte.valueOf(s);
+        }
+        if (type == double.class || type == Double.class) {
+            return Double.valueOf(s);
+        }
+        if (type == float.class || type == Float.class) {
+            return Float.valueOf(s);
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return Boolean.valueOf(s);
+        }
+        if (type == BigDecimal.class) {
+            return new BigDecimal(s);
+        }
+        if (type == java.sql.Timestamp.class || type == java.util.Date.class) {
+            int n = s.indexOf(':');
+            java.sql.Timestamp ts = new java.sql.Timestamp(Long.parseLong(s.substring(0, n)));
+            ts.setNanos(ts.getNanos() + Integer.parseInt(s.substring(n + 1)));
+            return ts;
+        }
+        if (type == java.sql.Date.class) {
+            return new java.sql.Date(Long.parseLong(s.substring(0, s.indexOf(':'))));
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.parse(s);
+        }
+        if (type == LocalTime.class) {
+            return LocalTime.parse(s);
+        }
+        throw new IllegalArgumentException("Cannot seek by type: " + type.getName());
+    }
+
+    /**
+     * How null is ordered as the smallest value by ORDER BY.
+     */
+    enum NullOrdering {
+
+        // null is the smallest value by default, e.g. MySQL:
+        NATIVE,
+
+        // by "NULLS FIRST" or "NULLS LAST":
+        NULLS_CLAUSE,
+
+        // by "CASE WHEN c IS NULL THEN 0 ELSE 1 END" before the column, which is
+        // portable but cannot use index:
+        CASE_EXPRESSION;
+
+        static NullOrdering of(String product) {
+            String name = product == null ? "" : product.toLowerCase();
+            if (name.contains("mysql") || name.contains("mariadb") || name.contains("sql server")) {
+                return NATIVE;
+            }
+            for (String s : new String[] { "postgresql", "oracle", "hsql", "h2", "sqlite", "db2", "derby" }) {
+                if (name.contains(s)) {
+                    return NULLS_CLAUSE;
+                }
+            }
+            return CASE_EXPRESSION;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.itranswarp.warpdb;
+
+import java.util.function.Function;
+
+/**
+ * Hold a mapper which is built thread-safely on first get().
+ * 
+ * @author liaoxuefeng
+ */
+final class LazyMapper {
+
+    final Class<?> entityClass;
+    final String tableName;
+
+    private final Function<Class<?>, Mapper<?>> factory;
+    private volatile Mapper<?> mapper;
+
+    LazyMapper(Class<?> entityClass, String tableName, Function<Class<?>, Mapper<?>> factory) {
+        this.entityClass = entityClass;
+        this.tableName = tableName;
+        this.factory = factory;
+    }
+
+    LazyMapper(Mapper<?> mapper) {
+        this.entityClass = mapper.entityClass;
+        this.tableName = mapper.tableName;
+        this.factory = null;
+        this.mapper = mapper;
+    }
+
+    Mapper<?> get() {
+        Mapper<?> m = this.mapper;
+        if (m == null) {
+            synchronized (this) {
+                m = this.mapper;
+                if (m == null) {
+                    m = this.factory.apply(this.entityClass);
+                    this.mapper = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Get mapper if already built, or null.
+     */
+    Mapper<?> getIfBuilt() {
+        return this.mapper;
+    }
+}
@@ -1,6 +1,10 @@
 package com.itranswarp.warpdb;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * select ... from ... LIMIT ?, ?
@@ -31,4 +35,55 @@ public final class Limit<T> extends CriteriaQuery<T> {
     public List<T> list() {
         return criteria.list();
     }
+
+    /**
+     * Get all results as a stream backed by an open cursor. The stream must be
+     * closed after use.
+     * 
+     * @return Stream of object T.
+     */
+    public Stream<T> stream() {
+        return criteria.stream();
+    }
+
+    /**
+     * Pass each result to consumer without loading all results into memory.
+     * 
+     * @param consumer Consumer of object T.
+     */
+    public void forEach(Consumer<? super T> consumer) {
+        criteria.forEach(consumer);
+    }
+
+    /**
+     * Publish results with backpressure. Each subscriber opens a cursor on one
+     * connection, rows are pulled only as requested, and the cursor is closed on
+     * completion, error or cancel. Rows are published on the async executor,
+     * outside the caller's transaction.
+     * 
+     * @return Publisher of object T.
+     */
+    public Flow.Publisher<T> publish() {
+        return criteria.publish();
+    }
+
+    /**
+     * Compile the query into an immutable PreparedQuery which can be executed
+     * many times with new arguments.
+     * 
+     * @return PreparedQuery object.
+     */
+    public PreparedQuery<T> prepare() {
+        return criteria.prepare();
+    }
+
+    /**
+     * Get all results as list asynchronously. The query runs outside the caller's
+     * transaction.
+     * 
+     * @return CompletableFuture of list.
+     */
+    public CompletableFuture<List<T>> listAsync() {
+        return criteria.listAsync();
+    }
 }
@@ -0,0 +1,19 @@
+package com.itranswarp.warpdb;
+
+/**
+ * How reads are balanced across replicas.
+ * 
+ * @author liaoxuefeng
+ */
+public enum LoadBalance {
+
+    /**
+     * Pick replicas in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Pick the replica with the least queries in flight.
+     */
+    LEAST_OUTSTANDING;
+}
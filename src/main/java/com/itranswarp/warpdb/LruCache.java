@@ -0,0 +1,108 @@
+package com.itranswarp.warpdb;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache keyed by string with hit, miss and eviction counters. Used to
+ * cache compiled where clauses and parsed raw SQL.
+ *
+ * Reads never lock. Least recently used entries are evicted approximately by
+ * the CLOCK (second chance) algorithm: a hit marks the entry as referenced, and
+ * the clock hand skips and clears referenced entries before evicting one.
+ *
+ * @author liaoxuefeng
+ *
+ * @param <V> Type of cached value.
+ */
+final class LruCache<V> {
+
+    final int maxEntries;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    final Map<String, Entry<V>> cache = new ConcurrentHashMap<>();
+
+    // clock hand over entries guarded by this, only used when evicting:
+    Iterator<Map.Entry<String, Entry<V>>> hand = null;
+
+    LruCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get cached value, or compute and cache it. Compute is called without lock
+     * so concurrent misses of same key may compute more than once, and the first
+     * cached value wins. Nothing is cached if compute throws.
+     */
+    V computeIfAbsent(String key, Function<String, V> function) {
+        Entry<V> entry = this.cache.get(key);
+        if (entry != null) {
+            // avoid writing shared entry if already referenced:
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            this.hits.increment();
+            return entry.value;
+        }
+        this.misses.increment();
+        V value = function.apply(key);
+        Entry<V> existing = this.cache.putIfAbsent(key, new Entry<>(value));
+        if (existing != null) {
+            return existing.value;
+        }
+        if (this.cache.size() > this.maxEntries) {
+            evict(key);
+        }
+        return value;
+    }
+
+    // advance clock hand until size is within bound, never evict the newly
+    // added key:
+    synchronized void evict(String added) {
+        while (this.cache.size() > this.maxEntries) {
+            if (this.hand == null || !this.hand.hasNext()) {
+                this.hand = this.cache.entrySet().iterator();
+                if (!this.hand.hasNext()) {
+                    return;
+                }
+            }
+            Map.Entry<String, Entry<V>> e = this.hand.next();
+            Entry<V> entry = e.getValue();
+            if (entry.referenced) {
+                entry.referenced = false;
+            } else if (!e.getKey().equals(added) && this.cache.remove(e.getKey(), entry)) {
+                this.evictions.increment();
+            }
+        }
+    }
+
+    int size() {
+        return this.cache.size();
+    }
+
+    synchronized void clear() {
+        this.cache.clear();
+        this.hand = null;
+    }
+
+    CacheStats stats() {
+        return new CacheStats(this.hits.sum(), this.misses.sum(), this.evictions.sum(), size(), this.maxEntries);
+    }
+
+    static final class Entry<V> {
+
+        final V value;
+        // set by hit and cleared by clock hand:
+        volatile boolean referenced = false;
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+}
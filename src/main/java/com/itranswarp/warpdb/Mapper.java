@@ -4,6 +4,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -12,6 +13,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import jakarta.persistence.Column;
@@ -30,6 +32,8 @@ import com.itranswarp.warpdb.util.NameUtils;
 
 final class Mapper<T> {
 
+    static final int DEFAULT_CLAUSE_CACHE_SIZE = 256;
+
     final Class<T> entityClass;
     final String tableName;
 
@@ -37,6 +41,10 @@ final class Mapper<T> {
     final AccessibleProperty[] ids;
     // @Version property:
     final AccessibleProperty version;
+    // @ShardKey property, or null if not sharded:
+    final AccessibleProperty shardKey;
+    // index of shard key in ids, or -1 if shard key is not id:
+    final int shardKeyIdIndex;
 
     // all properties including @Id, key is property name (NOT column name)
     final List<AccessibleProperty> allProperties;
@@ -44,10 +52,14 @@ final class Mapper<T> {
     // lower-case property name -> AccessibleProperty
     final Map<String, AccessibleProperty> allPropertiesMap;
 
+    // lower-case column name -> AccessibleProperty
+    final Map<String, AccessibleProperty> allColumnsMap;
+
     final List<AccessibleProperty> insertableProperties;
+    // updatable properties excluding @Version, which is maintained by update:
     final List<AccessibleProperty> updatableProperties;
 
-    // lower-case property name -> AccessibleProperty
+    // lower-case property name -> AccessibleProperty, including @Version:
     final Map<String, AccessibleProperty> updatablePropertiesMap;
 
     final BeanRowMapper<T> rowMapper;
@@ -58,6 +70,21 @@ final class Mapper<T> {
     final String updateSQL;
     final String deleteSQL;
     final String whereIdsEquals;
+    // where clause of ids and version if @Version present:
+    final String whereIdsAndVersionEquals;
+    // set clause to increase version of all matched rows, or null if no @Version:
+    final String versionIncrement;
+
+    // compiled where clauses of this entity, replaced by WarpDb.setClauseCacheSize():
+    volatile LruCache<CompiledClause> clauseCache = new LruCache<>(DEFAULT_CLAUSE_CACHE_SIZE);
+
+    // number of ids -> where clause of ids in list:
+    final Map<Integer, String> whereIdsInCache = new ConcurrentHashMap<>();
+
+    // typed binders of parameters in insertSQL, updateSQL and deleteSQL:
+    final ColumnBinder[] insertBinders;
+    final ColumnBinder[] updateBinders;
+    final ColumnBinder[] idBinders;
 
     final Listener prePersist;
     final Listener preUpdate;
@@ -109,9 +136,19 @@ final class Mapper<T> {
             throw new ConfigurationException("Multiple @Version found.");
         }
         this.version = versions.length == 0 ? null : versions[0];
+        // get @ShardKey:
+        AccessibleProperty[] shardKeys = all.stream().filter((p) -> {
+            return p.isShardKey();
+        }).toArray(AccessibleProperty[]::new);
+        if (shardKeys.length > 1) {
+            throw new ConfigurationException("Multiple @ShardKey found.");
+        }
+        this.shardKey = shardKeys.length == 0 ? null : shardKeys[0];
+        this.shardKeyIdIndex = this.shardKey == null ? -1 : Arrays.asList(ids).indexOf(this.shardKey);
 
         this.allProperties = all;
         this.allPropertiesMap = buildPropertiesMap(this.allProperties);
+        this.allColumnsMap = this.allProperties.stream().collect(Collectors.toMap(p -> p.columnName.toLowerCase(), p -> p));
 
         this.insertableProperties = all.stream().filter((p) -> {
             if (p.isIdentityId()) {
@@ -120,11 +157,14 @@ final class Mapper<T> {
             return p.isInsertable();
         }).collect(Collectors.toList());
 
-        this.updatableProperties = all.stream().filter((p) -> {
+        List<AccessibleProperty> updatables = all.stream().filter((p) -> {
             return p.isUpdatable();
         }).collect(Collectors.toList());
+        this.updatableProperties = updatables.stream().filter((p) -> {
+            return p != this.version;
+        }).collect(Collectors.toList());
 
-        this.updatablePropertiesMap = buildPropertiesMap(this.updatableProperties);
+        this.updatablePropertiesMap = buildPropertiesMap(updatables);
 
         // init:
         this.ids = ids;
@@ -133,6 +173,15 @@ final class Mapper<T> {
 
         this.whereIdsEquals = String.join(" AND ", Arrays.stream(this.ids).map(id -> id.columnName + " = ?").toArray(String[]::new));
 
+        if (this.version == null) {
+            this.whereIdsAndVersionEquals = this.whereIdsEquals;
+            this.versionIncrement = null;
+        } else {
+            this.whereIdsAndVersionEquals = this.whereIdsEquals + " AND " + this.version.columnName + " = ?";
+            this.versionIncrement = this.version.columnName + " = "
+                    + (this.version.propertyType == Timestamp.class ? "CURRENT_TIMESTAMP" : this.version.columnName + " + 1");
+        }
+
         this.selectSQL = "SELECT * FROM " + this.tableName + " WHERE " + this.whereIdsEquals;
 
         String insertPostfix = this.tableName + " (" + String.join(", ", this.insertableProperties.stream().map((p) -> {
@@ -141,12 +190,22 @@ final class Mapper<T> {
         this.insertSQL = "INSERT INTO " + insertPostfix;
         this.insertIgnoreSQL = "INSERT IGNORE INTO " + insertPostfix;
 
-        this.updateSQL = "UPDATE " + this.tableName + " SET " + String.join(", ", this.updatableProperties.stream().map((p) -> {
+        // set next version as parameter and check current version if @Version present:
+        List<AccessibleProperty> sets = new ArrayList<>(this.updatableProperties);
+        if (this.version != null) {
+            sets.add(this.version);
+        }
+        this.updateSQL = "UPDATE " + this.tableName + " SET " + String.join(", ", sets.stream().map((p) -> {
             return p.columnName + " = ?";
-        }).toArray(String[]::new)) + " WHERE " + this.whereIdsEquals;
+        }).toArray(String[]::new)) + " WHERE " + this.whereIdsAndVersionEquals;
 
         this.deleteSQL = "DELETE FROM " + this.tableName + " WHERE " + this.whereIdsEquals;
 
+        this.insertBinders = binders(this.insertableProperties);
+        this.updateBinders = this.version == null ? binders(sets, Arrays.asList(this.ids))
+                : binders(sets, Arrays.asList(this.ids), List.of(this.version));
+        this.idBinders = binders(Arrays.asList(this.ids));
+
         this.rowMapper = new BeanRowMapper<>(this.entityClass, this.allProperties);
 
         List<Method> methods = this.findMethods(clazz);
@@ -255,6 +314,93 @@ final class Mapper<T> {
         return values;
     }
 
+    @SafeVarargs
+    private static ColumnBinder[] binders(List<AccessibleProperty>... props) {
+        List<ColumnBinder> binders = new ArrayList<>();
+        for (List<AccessibleProperty> list : props) {
+            for (AccessibleProperty prop : list) {
+                binders.add(prop.columnBinder);
+            }
+        }
+        return binders.toArray(ColumnBinder[]::new);
+    }
+
+    /**
+     * Get next value of @Version property. A null version is treated as initial
+     * version, but never matches "version = ?" when updating.
+     */
+    Object nextVersion(Object current) {
+        Class<?> type = this.version.propertyType;
+        if (type == Timestamp.class) {
+            long now = System.currentTimeMillis();
+            return new Timestamp(current == null ? now : Math.max(now, ((Timestamp) current).getTime() + 1));
+        }
+        long next = current == null ? 1 : ((Number) current).longValue() + 1;
+        if (type == int.class || type == Integer.class) {
+            return Integer.valueOf((int) next);
+        }
+        if (type == short.class || type == Short.class) {
+            return Short.valueOf((short) next);
+        }
+        return Long.valueOf(next);
+    }
+
+    /**
+     * Get where clause like "id IN (?, ?, ?)" for n ids. For composite ids, a
+     * portable form like "(sid = ? AND uid = ?) OR (sid = ? AND uid = ?)" is used
+     * instead of row value IN.
+     */
+    String whereIdsIn(int n) {
+        String s = this.whereIdsInCache.get(n);
+        if (s == null) {
+            if (this.ids.length == 1) {
+                s = this.ids[0].columnName + " IN (" + numOfQuestions(n) + ")";
+            } else {
+                String[] ss = new String[n];
+                Arrays.fill(ss, "(" + this.whereIdsEquals + ")");
+                s = String.join(" OR ", ss);
+            }
+            this.whereIdsInCache.put(n, s);
+        }
+        return s;
+    }
+
+    /**
+     * Get id values from id, which is an Object[] sorted by column names for
+     * composite ids.
+     */
+    Object[] toIdsValue(Object id) {
+        if (this.ids.length == 1) {
+            return new Object[] { id };
+        }
+        if (!(id instanceof Object[]) || ((Object[]) id).length != this.ids.length) {
+            throw new IllegalArgumentException(this.ids.length + " id values are expected.");
+        }
+        return (Object[]) id;
+    }
+
+    /**
+     * Get a key with equals() and hashCode() from id values. Integral numbers are
+     * normalized to long.
+     */
+    Object idKey(Object[] values) {
+        if (values.length == 1) {
+            return normalizeId(values[0]);
+        }
+        List<Object> list = new ArrayList<>(values.length);
+        for (Object value : values) {
+            list.add(normalizeId(value));
+        }
+        return list;
+    }
+
+    static Object normalizeId(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
     Map<String, AccessibleProperty> buildPropertiesMap(List<AccessibleProperty> props) {
         Map<String, AccessibleProperty> map = new HashMap<>();
         for (AccessibleProperty prop : props) {
@@ -320,7 +466,7 @@ final class Mapper<T> {
         }).toArray(String[]::new));
     }
 
-    String getTableName(Class<?> clazz) {
+    static String getTableName(Class<?> clazz) {
         Table table = clazz.getAnnotation(Table.class);
         if (table != null) {
             String schema = table.schema();
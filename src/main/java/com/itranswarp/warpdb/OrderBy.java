@@ -2,6 +2,10 @@ package com.itranswarp.warpdb;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * select ... from ... ORDER BY ...
@@ -100,6 +104,47 @@ public final class OrderBy<T> extends CriteriaQuery<T> {
         return criteria.list();
     }
 
+    /**
+     * Get all results as a stream backed by an open cursor. The stream must be
+     * closed after use.
+     * 
+     * @return Stream of object T.
+     */
+    public Stream<T> stream() {
+        return criteria.stream();
+    }
+
+    /**
+     * Pass each result to consumer without loading all results into memory.
+     * 
+     * @param consumer Consumer of object T.
+     */
+    public void forEach(Consumer<? super T> consumer) {
+        criteria.forEach(consumer);
+    }
+
+    /**
+     * Publish results with backpressure. Each subscriber opens a cursor on one
+     * connection, rows are pulled only as requested, and the cursor is closed on
+     * completion, error or cancel. Rows are published on the async executor,
+     * outside the caller's transaction.
+     * 
+     * @return Publisher of object T.
+     */
+    public Flow.Publisher<T> publish() {
+        return criteria.publish();
+    }
+
+    /**
+     * Compile the query into an immutable PreparedQuery which can be executed
+     * many times with new arguments.
+     * 
+     * @return PreparedQuery object.
+     */
+    public PreparedQuery<T> prepare() {
+        return criteria.prepare();
+    }
+
     /**
      * Do page query using default items per page.
      * 
@@ -121,6 +166,54 @@ public final class OrderBy<T> extends CriteriaQuery<T> {
         return criteria.list(pageIndex, itemsPerPage);
     }
 
+    /**
+     * Do page query with count mode.
+     * 
+     * @param pageIndex    Page index, starts from 1.
+     * @param itemsPerPage Page size.
+     * @param countMode    How the total is counted.
+     * @return PagedResults object.
+     */
+    public PagedResults<T> list(int pageIndex, int itemsPerPage, CountMode countMode) {
+        return criteria.list(pageIndex, itemsPerPage, countMode);
+    }
+
+    /**
+     * Do keyset (seek) query for the first results. The @Id columns are appended
+     * to order by as tiebreaker, and null of nullable columns is ordered as the
+     * smallest value.
+     * 
+     * @param maxResults The max results.
+     * @return SeekResults object with continuation token of next results.
+     */
+    public SeekResults<T> seek(int maxResults) {
+        return criteria.seek(maxResults);
+    }
+
+    /**
+     * Do keyset (seek) query for results after the continuation token returned by
+     * previous query.
+     * 
+     * @param continuationToken Token of previous SeekResults, or null for the
+     *                          first results.
+     * @param maxResults        The max results.
+     * @return SeekResults object with continuation token of next results.
+     */
+    public SeekResults<T> seek(String continuationToken, int maxResults) {
+        return criteria.seek(continuationToken, maxResults);
+    }
+
+    /**
+     * Do keyset (seek) query for results after the given row.
+     * 
+     * @param last       The last row of previous results.
+     * @param maxResults The max results.
+     * @return SeekResults object with continuation token of next results.
+     */
+    public SeekResults<T> seekAfter(T last, int maxResults) {
+        return criteria.seekAfter(last, maxResults);
+    }
+
     /**
      * Get first row of the query, or null if no result found.
      * 
@@ -129,4 +222,24 @@ public final class OrderBy<T> extends CriteriaQuery<T> {
     public T first() {
         return criteria.first();
     }
+
+    /**
+     * Get all results as list asynchronously. The query runs outside the caller's
+     * transaction.
+     * 
+     * @return CompletableFuture of list.
+     */
+    public CompletableFuture<List<T>> listAsync() {
+        return criteria.listAsync();
+    }
+
+    /**
+     * Get first row of the query asynchronously, completed with null if no result
+     * found. The query runs outside the caller's transaction.
+     * 
+     * @return CompletableFuture of object T.
+     */
+    public CompletableFuture<T> firstAsync() {
+        return criteria.firstAsync();
+    }
 }
@@ -17,16 +17,26 @@ public class Page {
     public int totalPages;
     public int totalItems;
     public boolean isEmpty;
+    public boolean hasNext;
+
+    // kind of totalPages and totalItems, which are -1 if CountMode.NONE:
+    public CountMode countMode = CountMode.EXACT;
 
     public Page() {
     }
 
     public Page(int pageIndex, int itemsPerPage, int totalPages, int totalItems) {
+        this(pageIndex, itemsPerPage, totalPages, totalItems, pageIndex < totalPages, CountMode.EXACT);
+    }
+
+    public Page(int pageIndex, int itemsPerPage, int totalPages, int totalItems, boolean hasNext, CountMode countMode) {
         this.pageIndex = pageIndex;
         this.itemsPerPage = itemsPerPage;
         this.totalPages = totalPages;
         this.totalItems = totalItems;
         this.isEmpty = totalItems == 0;
+        this.hasNext = hasNext;
+        this.countMode = countMode;
     }
 
     public List<Integer> list(int currentIndex) {
@@ -0,0 +1,256 @@
+package com.itranswarp.warpdb;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.NonUniqueResultException;
+
+/**
+ * Immutable and thread-safe query compiled from a criteria query. SQL is built
+ * once, and each execution only binds new arguments to the typed parameter
+ * slots of where clause:
+ *
+ * <code>
+ * static PreparedQuery&lt;User&gt; BY_EMAIL = db.from(User.class).where("email = ?", (Object) null).prepare();
+ *
+ * User user = BY_EMAIL.unique("bob@example.com");
+ * </code>
+ *
+ * Arguments passed to where clauses when building the query are placeholders
+ * only and never used.
+ *
+ * @author liaoxuefeng
+ *
+ * @param <T> Generic type.
+ */
+public final class PreparedQuery<T> {
+
+    static final ColumnBinder INT_BINDER = AccessibleProperty.createColumnBinder(int.class);
+
+    // numeric property type -> argument types accepted by widening conversion:
+    static final Map<Class<?>, List<Class<?>>> NUMBER_ARGUMENT_TYPES = Map.of( //
+            byte.class, List.of(Byte.class), //
+            short.class, List.of(Short.class, Byte.class), //
+            int.class, List.of(Integer.class, Short.class, Byte.class), //
+            long.class, List.of(Long.class, Integer.class, Short.class, Byte.class), //
+            float.class, List.of(Float.class, Long.class, Integer.class, Short.class, Byte.class), //
+            double.class, List.of(Double.class, Float.class, Long.class, Integer.class, Short.class, Byte.class));
+
+    final WarpDb warpdb;
+    final Mapper<T> mapper;
+
+    final String listSql;
+    final String firstSql;
+    final String uniqueSql;
+    final String countSql;
+
+    // property of each parameter slot:
+    final AccessibleProperty[] slots;
+    // binders of slots followed by LIMIT ?, ?:
+    final ColumnBinder[] binders;
+    final ColumnBinder[] countBinders;
+    // offset and max results of listSql, or null if no limit:
+    final int[] limit;
+
+    PreparedQuery(Criteria<T> criteria) {
+        this.warpdb = criteria.warpdb;
+        this.mapper = criteria.mapper;
+        this.slots = criteria.whereProperties == null ? new AccessibleProperty[0] : criteria.whereProperties.toArray(AccessibleProperty[]::new);
+        this.countBinders = new ColumnBinder[this.slots.length];
+        for (int i = 0; i < this.slots.length; i++) {
+            this.countBinders[i] = this.slots[i].columnBinder;
+        }
+        this.binders = new ColumnBinder[this.slots.length + 2];
+        System.arraycopy(this.countBinders, 0, this.binders, 0, this.slots.length);
+        this.binders[this.slots.length] = INT_BINDER;
+        this.binders[this.slots.length + 1] = INT_BINDER;
+        int offset = criteria.offset;
+        int maxResults = criteria.maxResults;
+        this.limit = offset >= 0 && maxResults > 0 ? new int[] { offset, maxResults } : null;
+        try {
+            this.listSql = criteria.sql(null);
+            criteria.offset = 0;
+            criteria.maxResults = 1;
+            this.firstSql = criteria.sql(null);
+            criteria.maxResults = 2;
+            this.uniqueSql = criteria.sql(null);
+            this.countSql = criteria.sql("count(*)");
+        } finally {
+            criteria.offset = offset;
+            criteria.maxResults = maxResults;
+        }
+    }
+
+    /**
+     * Get all results as list.
+     *
+     * @param args Arguments of where clause.
+     * @return List of object T.
+     */
+    public List<T> list(Object... args) {
+        if (this.limit == null) {
+            return this.warpdb.listBeans(this.mapper, this.listSql, new TypedArgumentSetter(this.countBinders, convert(args)));
+        }
+        return this.warpdb.listBeans(this.mapper, this.listSql, limitSetter(args, this.limit[0], this.limit[1]));
+    }
+
+    /**
+     * Get all results as a stream backed by an open cursor. The stream must be
+     * closed after use.
+     *
+     * @param args Arguments of where clause.
+     * @return Stream of object T.
+     */
+    public Stream<T> stream(Object... args) {
+        if (this.limit == null) {
+            return this.warpdb.streamBeans(this.mapper, this.listSql, new TypedArgumentSetter(this.countBinders, convert(args)));
+        }
+        return this.warpdb.streamBeans(this.mapper, this.listSql, limitSetter(args, this.limit[0], this.limit[1]));
+    }
+
+    /**
+     * Pass each result to consumer without loading all results into memory.
+     *
+     * @param consumer Consumer of object T.
+     * @param args     Arguments of where clause.
+     */
+    public void forEach(Consumer<? super T> consumer, Object... args) {
+        try (Stream<T> stream = stream(args)) {
+            stream.forEach(consumer);
+        }
+    }
+
+    /**
+     * Get first row of the query, or null if no result found.
+     *
+     * @param args Arguments of where clause.
+     * @return Object T or null.
+     */
+    public T first(Object... args) {
+        List<T> list = this.warpdb.listBeans(this.mapper, this.firstSql, limitSetter(args, 0, 1));
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * Get unique result of the query.
+     *
+     * @param args Arguments of where clause.
+     * @return Object T.
+     * @throws jakarta.persistence.NoResultException        If result set is empty.
+     * @throws jakarta.persistence.NonUniqueResultException If more than 1 results
+     *                                                      found.
+     */
+    public T unique(Object... args) {
+        List<T> list = this.warpdb.listBeans(this.mapper, this.uniqueSql, limitSetter(args, 0, 2));
+        if (list.isEmpty()) {
+            throw new NoResultException("Expected unique row but nothing found.");
+        }
+        if (list.size() > 1) {
+            throw new NonUniqueResultException("Expected unique row but more than 1 rows found.");
+        }
+        return list.get(0);
+    }
+
+    /**
+     * Get count as int.
+     *
+     * @param args Arguments of where clause.
+     * @return Count result.
+     */
+    public int count(Object... args) {
+        return this.warpdb.queryForInt(this.countSql, new TypedArgumentSetter(this.countBinders, convert(args))).getAsInt();
+    }
+
+    /**
+     * Get the compiled SQL of list().
+     *
+     * @return SQL.
+     */
+    public String getSql() {
+        return this.listSql;
+    }
+
+    TypedArgumentSetter limitSetter(Object[] args, int offset, int maxResults) {
+        Object[] values = new Object[this.binders.length];
+        convert(args, values);
+        values[this.slots.length] = offset;
+        values[this.slots.length + 1] = maxResults;
+        return new TypedArgumentSetter(this.binders, values);
+    }
+
+    Object[] convert(Object[] args) {
+        Object[] values = new Object[this.slots.length];
+        convert(args, values);
+        return values;
+    }
+
+    // check and convert arguments to db-ready values:
+    void convert(Object[] args, Object[] values) {
+        if (args.length != this.slots.length) {
+            throw new IllegalArgumentException("Arguments not match the placeholder.");
+        }
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null) {
+                values[i] = null;
+                continue;
+            }
+            AccessibleProperty slot = this.slots[i];
+            Object value = arg;
+            if (slot.converter != null) {
+                try {
+                    value = slot.converter.convertToDatabaseColumn(arg);
+                } catch (ClassCastException e) {
+                    throw mismatch(i, arg, slot);
+                }
+            }
+            if (value != null && !accepts(slot.propertyType, value)) {
+                throw mismatch(i, arg, slot);
+            }
+            values[i] = value;
+        }
+    }
+
+    // accept value of same type, or widened to numeric type without loss:
+    static boolean accepts(Class<?> type, Object value) {
+        List<Class<?>> numberTypes = NUMBER_ARGUMENT_TYPES.get(unbox(type));
+        if (numberTypes != null) {
+            return numberTypes.contains(value.getClass());
+        }
+        if (type == boolean.class) {
+            return value instanceof Boolean;
+        }
+        return type.isInstance(value);
+    }
+
+    static Class<?> unbox(Class<?> type) {
+        if (type == Byte.class) {
+            return byte.class;
+        }
+        if (type == Short.class) {
+            return short.class;
+        }
+        if (type == Integer.class) {
+            return int.class;
+        }
+        if (type == Long.class) {
+            return long.class;
+        }
+        if (type == Float.class) {
+            return float.class;
+        }
+        if (type == Double.class) {
+            return double.class;
+        }
+        return type;
+    }
+
+    static IllegalArgumentException mismatch(int index, Object arg, AccessibleProperty slot) {
+        return new IllegalArgumentException("Argument at index " + index + " of type " + arg.getClass().getName() + " does not match property "
+                + slot.propertyName + " of type " + slot.propertyType.getName() + ".");
+    }
+}
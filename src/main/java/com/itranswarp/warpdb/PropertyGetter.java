@@ -2,7 +2,13 @@ package com.itranswarp.warpdb;
 
 import java.lang.reflect.InvocationTargetException;
 
-interface PropertyGetter {
+/**
+ * Get property of entity bean. Public only because accessor classes are
+ * generated in the package of entity class.
+ * 
+ * @author liaoxuefeng
+ */
+public interface PropertyGetter {
 
     Object get(Object bean) throws IllegalAccessException, InvocationTargetException;
 
@@ -2,7 +2,13 @@ package com.itranswarp.warpdb;
 
 import java.lang.reflect.InvocationTargetException;
 
-interface PropertySetter {
+/**
+ * Set property of entity bean. Public only because accessor classes are
+ * generated in the package of entity class.
+ * 
+ * @author liaoxuefeng
+ */
+public interface PropertySetter {
 
     void set(Object bean, Object value) throws IllegalAccessException, InvocationTargetException;
 
@@ -0,0 +1,128 @@
+package com.itranswarp.warpdb;
+
+/**
+ * Parsed raw SQL like "SELECT * FROM `schema`.`table` WHERE ... LIMIT ?" with
+ * the resolved mapper.
+ *
+ * @author liaoxuefeng
+ */
+final class RawSql {
+
+    final Mapper<?> mapper;
+    final String sql;
+    // sql with " limit 2" appended if no LIMIT found, used by unique and fetch:
+    final String uniqueSql;
+
+    RawSql(Mapper<?> mapper, String sql, boolean hasLimit) {
+        this.mapper = mapper;
+        this.sql = sql;
+        this.uniqueSql = hasLimit ? sql : sql + " limit 2";
+    }
+
+    /**
+     * Get table name after the first FROM keyword outside quoted strings and
+     * identifiers, with quotes removed, e.g. "`schema`.`table`" as
+     * "schema.table".
+     *
+     * @return Table name, or null if not found.
+     */
+    static String parseTable(String sql) {
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '`' || c == '"') {
+                i = skipQuoted(sql, i, c);
+            } else if (isWordChar(c)) {
+                int start = i;
+                while (i < n && isWordChar(sql.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 4 && sql.regionMatches(true, start, "from", 0, 4)) {
+                    return readIdentifier(sql, i);
+                }
+            } else {
+                i++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if LIMIT keyword found outside quoted string and identifier.
+     */
+    static boolean hasLimit(String sql) {
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '`' || c == '"') {
+                i = skipQuoted(sql, i, c);
+            } else if (isWordChar(c)) {
+                int start = i;
+                while (i < n && isWordChar(sql.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 5 && sql.regionMatches(true, start, "limit", 0, 5)) {
+                    return true;
+                }
+            } else {
+                i++;
+            }
+        }
+        return false;
+    }
+
+    // read identifier like table, `table`, schema.table or "schema"."table":
+    static String readIdentifier(String sql, int start) {
+        int n = sql.length();
+        int i = start;
+        while (i < n && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        StringBuilder sb = new StringBuilder(32);
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '`' || c == '"') {
+                int end = sql.indexOf(c, i + 1);
+                if (end == (-1)) {
+                    return null;
+                }
+                sb.append(sql, i + 1, end);
+                i = end + 1;
+            } else if (c == '.' || isWordChar(c)) {
+                sb.append(c);
+                i++;
+            } else {
+                break;
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    // return index after the closing quote:
+    static int skipQuoted(String sql, int start, char quote) {
+        int n = sql.length();
+        int i = start + 1;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                // escaped by double quotes:
+                if (i + 1 < n && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$';
+    }
+}
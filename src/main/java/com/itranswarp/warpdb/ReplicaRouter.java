@@ -0,0 +1,112 @@
+package com.itranswarp.warpdb;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Pick a replica for each read and track queries in flight per replica.
+ * 
+ * @author liaoxuefeng
+ */
+final class ReplicaRouter {
+
+    final JdbcTemplate[] replicas;
+    // replicas with statements cancellable by hedged reads:
+    final JdbcTemplate[] cancellables;
+    final LoadBalance loadBalance;
+
+    // number of queries in flight of each replica:
+    final AtomicInteger[] outstanding;
+    final AtomicInteger next = new AtomicInteger();
+
+    ReplicaRouter(List<JdbcTemplate> replicas, LoadBalance loadBalance) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("Replicas is empty.");
+        }
+        this.replicas = replicas.toArray(JdbcTemplate[]::new);
+        this.cancellables = new JdbcTemplate[this.replicas.length];
+        for (int i = 0; i < this.replicas.length; i++) {
+            this.cancellables[i] = new CancellableJdbcTemplate(this.replicas[i]);
+        }
+        this.loadBalance = loadBalance;
+        this.outstanding = new AtomicInteger[this.replicas.length];
+        for (int i = 0; i < this.outstanding.length; i++) {
+            this.outstanding[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Pick a replica and count it as in flight. Must call release() after query.
+     * 
+     * @return Index of replica.
+     */
+    int acquire() {
+        int index = select();
+        this.outstanding[index].incrementAndGet();
+        return index;
+    }
+
+    /**
+     * Pick a replica other than the excluded one and count it as in flight. Must
+     * call release() after query.
+     * 
+     * @param excluded Index of replica excluded.
+     * @return Index of replica.
+     */
+    int acquireOther(int excluded) {
+        int n = this.replicas.length;
+        int index = (excluded + 1) % n;
+        if (this.loadBalance == LoadBalance.LEAST_OUTSTANDING) {
+            int min = this.outstanding[index].get();
+            for (int i = 2; i < n && min > 0; i++) {
+                int next = (excluded + i) % n;
+                int value = this.outstanding[next].get();
+                if (value < min) {
+                    min = value;
+                    index = next;
+                }
+            }
+        }
+        this.outstanding[index].incrementAndGet();
+        return index;
+    }
+
+    void release(int index) {
+        this.outstanding[index].decrementAndGet();
+    }
+
+    int select() {
+        int n = this.replicas.length;
+        // start from next one in turn, which also breaks ties of LEAST_OUTSTANDING:
+        int start = Math.floorMod(this.next.getAndIncrement(), n);
+        if (n == 1 || this.loadBalance == LoadBalance.ROUND_ROBIN) {
+            return start;
+        }
+        int selected = start;
+        int min = this.outstanding[start].get();
+        for (int i = 1; i < n && min > 0; i++) {
+            int index = (start + i) % n;
+            int value = this.outstanding[index].get();
+            if (value < min) {
+                min = value;
+                selected = index;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Check if the SQL is a locking read like "SELECT ... FOR UPDATE" which must
+     * run on primary.
+     */
+    static boolean isLockingRead(String sql) {
+        String s = sql.stripTrailing();
+        return endsWithIgnoreCase(s, " for update") || endsWithIgnoreCase(s, " for share") || endsWithIgnoreCase(s, " lock in share mode");
+    }
+
+    static boolean endsWithIgnoreCase(String s, String suffix) {
+        return s.regionMatches(true, s.length() - suffix.length(), suffix, 0, suffix.length());
+    }
+}
@@ -0,0 +1,154 @@
+package com.itranswarp.warpdb;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Cold publisher which opens a cursor for each subscriber and pulls rows only as
+ * requested. The cursor holds one connection until all rows are published, an
+ * error occurs or the subscription is cancelled.
+ *
+ * Rows are pulled and published on the executor, which holds a permit of
+ * async operations, so the query runs outside the caller's transaction.
+ *
+ * @author liaoxuefeng
+ *
+ * @param <T> Generic type.
+ */
+final class RowPublisher<T> implements Flow.Publisher<T> {
+
+    final Executor executor;
+    final Supplier<Stream<T>> cursor;
+
+    RowPublisher(Executor executor, Supplier<Stream<T>> cursor) {
+        this.executor = executor;
+        this.cursor = cursor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        RowSubscription<T> subscription = new RowSubscription<>(this, subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    static final class RowSubscription<T> implements Flow.Subscription {
+
+        final RowPublisher<T> publisher;
+        final Flow.Subscriber<? super T> subscriber;
+
+        // outstanding demand, Long.MAX_VALUE as unbounded:
+        final AtomicLong demand = new AtomicLong();
+        // number of pending drain requests, drain loop runs only when 0 -> 1:
+        final AtomicInteger wip = new AtomicInteger();
+
+        volatile boolean cancelled = false;
+        volatile Throwable invalidRequest = null;
+
+        // accessed only by drain loop:
+        Stream<T> stream = null;
+        Iterator<T> iterator = null;
+        boolean terminated = false;
+
+        RowSubscription(RowPublisher<T> publisher, Flow.Subscriber<? super T> subscriber) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.invalidRequest = new IllegalArgumentException("Request must be > 0 but was " + n + ".");
+            } else {
+                this.demand.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            drain();
+        }
+
+        void drain() {
+            if (this.wip.getAndIncrement() == 0) {
+                this.publisher.executor.execute(this::drainLoop);
+            }
+        }
+
+        void drainLoop() {
+            int missed = 1;
+            for (;;) {
+                if (this.terminated) {
+                    // leave wip non-zero so no more drain is scheduled:
+                    return;
+                }
+                if (this.cancelled) {
+                    terminate();
+                    return;
+                }
+                if (this.invalidRequest != null) {
+                    terminate();
+                    this.subscriber.onError(this.invalidRequest);
+                    return;
+                }
+                long requested = this.demand.get();
+                long emitted = 0;
+                while (emitted != requested) {
+                    if (this.cancelled) {
+                        terminate();
+                        return;
+                    }
+                    T bean;
+                    try {
+                        if (this.iterator == null) {
+                            this.stream = this.publisher.cursor.get();
+                            this.iterator = this.stream.iterator();
+                        }
+                        bean = this.iterator.hasNext() ? this.iterator.next() : null;
+                    } catch (RuntimeException e) {
+                        terminate();
+                        this.subscriber.onError(e);
+                        return;
+                    }
+                    if (bean == null) {
+                        terminate();
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    try {
+                        this.subscriber.onNext(bean);
+                    } catch (Throwable t) {
+                        // subscriber violated the spec, treat as cancelled:
+                        terminate();
+                        return;
+                    }
+                    emitted++;
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    this.demand.addAndGet(-emitted);
+                }
+                missed = this.wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        // close cursor and release connection:
+        void terminate() {
+            this.terminated = true;
+            this.iterator = null;
+            if (this.stream != null) {
+                Stream<T> s = this.stream;
+                this.stream = null;
+                s.close();
+            }
+        }
+    }
+}
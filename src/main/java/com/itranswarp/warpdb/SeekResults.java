@@ -0,0 +1,47 @@
+package com.itranswarp.warpdb;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Represent a result list of keyset (seek) pagination.
+ * 
+ * @author liaoxuefeng
+ *
+ * @param <T> Generic type.
+ */
+public class SeekResults<T> {
+
+    public List<T> results;
+
+    /**
+     * Opaque continuation token to fetch next results, or null if no more results.
+     */
+    public String nextToken;
+
+    public SeekResults() {
+    }
+
+    public SeekResults(List<T> results, String nextToken) {
+        this.results = results;
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getResults() {
+        return results;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    public <R> SeekResults<R> map(Function<? super T, ? extends R> mapper) {
+        List<R> newResults = results.stream().map(mapper).collect(Collectors.toList());
+        return new SeekResults<>(newResults, this.nextToken);
+    }
+}
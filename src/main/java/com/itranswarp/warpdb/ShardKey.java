@@ -0,0 +1,21 @@
+package com.itranswarp.warpdb;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark the property whose value selects the shard of an entity when shards are
+ * set. Usually marked on the @Id property so that fetch by id is routed to one
+ * shard.
+ * 
+ * @author liaoxuefeng
+ */
+@Documented
+@Target({ ElementType.FIELD, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+
+}
@@ -0,0 +1,77 @@
+package com.itranswarp.warpdb;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of per-shard iterators which are already sorted by the same
+ * order. Only the head row of each shard is held in memory.
+ *
+ * @author liaoxuefeng
+ *
+ * @param <T> Generic type.
+ */
+final class ShardMergeIterator<T> implements Iterator<T> {
+
+    final List<Iterator<T>> iterators;
+    final PriorityQueue<Head<T>> heads;
+    // iterator of last returned row, advanced lazily on next hasNext():
+    Head<T> pending = null;
+    boolean started = false;
+
+    ShardMergeIterator(List<Iterator<T>> iterators, Comparator<? super T> comparator) {
+        this.iterators = iterators;
+        // rows of same order are returned by shard index:
+        Comparator<Head<T>> byRow = (h1, h2) -> comparator.compare(h1.row, h2.row);
+        this.heads = new PriorityQueue<>(Math.max(1, iterators.size()), byRow.thenComparingInt(h -> h.shard));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!this.started) {
+            this.started = true;
+            for (int i = 0; i < this.iterators.size(); i++) {
+                advance(new Head<>(i, this.iterators.get(i)));
+            }
+        }
+        if (this.pending != null) {
+            Head<T> head = this.pending;
+            this.pending = null;
+            advance(head);
+        }
+        return !this.heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Head<T> head = this.heads.poll();
+        this.pending = head;
+        return head.row;
+    }
+
+    // read next row of shard, so a LIMIT reached downstream never reads ahead:
+    void advance(Head<T> head) {
+        if (head.iterator.hasNext()) {
+            head.row = head.iterator.next();
+            this.heads.add(head);
+        }
+    }
+
+    static final class Head<T> {
+
+        final int shard;
+        final Iterator<T> iterator;
+        T row;
+
+        Head(int shard, Iterator<T> iterator) {
+            this.shard = shard;
+            this.iterator = iterator;
+        }
+    }
+}
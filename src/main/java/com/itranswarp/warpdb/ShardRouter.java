@@ -0,0 +1,62 @@
+package com.itranswarp.warpdb;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+import jakarta.persistence.PersistenceException;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Map entities to shards by value of @ShardKey.
+ * 
+ * @author liaoxuefeng
+ */
+final class ShardRouter {
+
+    // index of shard which means primary, used by entities not sharded:
+    static final int PRIMARY = -1;
+
+    final JdbcTemplate[] shards;
+    final ShardStrategy strategy;
+
+    ShardRouter(List<JdbcTemplate> shards, ShardStrategy strategy) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Shards is empty.");
+        }
+        this.shards = shards.toArray(JdbcTemplate[]::new);
+        this.strategy = strategy;
+    }
+
+    /**
+     * Get shard index of bean, or PRIMARY if entity is not sharded.
+     */
+    int shardOf(Mapper<?> mapper, Object bean) {
+        if (mapper.shardKey == null) {
+            return PRIMARY;
+        }
+        try {
+            return shardOfKey(mapper.shardKey.convertGetter.get(bean));
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /**
+     * Get shard index of id values, or -1 if the shard key is not id.
+     */
+    int shardOfIds(Mapper<?> mapper, Object[] ids) {
+        return mapper.shardKeyIdIndex < 0 ? PRIMARY : shardOfKey(ids[mapper.shardKeyIdIndex]);
+    }
+
+    int shardOfKey(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Value of shard key is null.");
+        }
+        int index = this.strategy.shardOf(Mapper.normalizeId(key), this.shards.length);
+        if (index < 0 || index >= this.shards.length) {
+            throw new IllegalStateException("Invalid shard index: " + index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,71 @@
+package com.itranswarp.warpdb;
+
+import java.util.Arrays;
+
+/**
+ * Map value of shard key to index of shard.
+ * 
+ * @author liaoxuefeng
+ */
+@FunctionalInterface
+public interface ShardStrategy {
+
+    /**
+     * Get index of shard.
+     * 
+     * @param key    Value of shard key, not null. Integral numbers are normalized
+     *               to long.
+     * @param shards Number of shards.
+     * @return Index of shard between 0 and shards - 1.
+     */
+    int shardOf(Object key, int shards);
+
+    /**
+     * Shard by hash of key: integral key modulo number of shards, or hashCode() of
+     * other key modulo number of shards.
+     * 
+     * @return ShardStrategy object.
+     */
+    static ShardStrategy hash() {
+        return (key, shards) -> {
+            if (key instanceof Long) {
+                return (int) Math.floorMod((Long) key, (long) shards);
+            }
+            return Math.floorMod(key.hashCode(), shards);
+        };
+    }
+
+    /**
+     * Shard by ranges of key split by ascending bounds: key less than bounds[0] is
+     * mapped to shard 0, key less than bounds[1] is mapped to shard 1, and so on.
+     * Number of shards must be bounds.length + 1.
+     * 
+     * @param bounds Ascending upper bounds (exclusive) of shards except the last
+     *               one.
+     * @return ShardStrategy object.
+     */
+    @SafeVarargs
+    static <K extends Comparable<? super K>> ShardStrategy range(K... bounds) {
+        if (bounds.length == 0) {
+            throw new IllegalArgumentException("Bounds is empty.");
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i - 1].compareTo(bounds[i]) >= 0) {
+                throw new IllegalArgumentException("Bounds must be ascending.");
+            }
+        }
+        // integral bounds are normalized to long as keys:
+        final Object[] sorted = new Object[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            sorted[i] = Mapper.normalizeId(bounds[i]);
+        }
+        return (key, shards) -> {
+            if (shards != sorted.length + 1) {
+                throw new IllegalStateException("Expect " + (sorted.length + 1) + " shards but actual " + shards + ".");
+            }
+            int index = Arrays.binarySearch(sorted, key);
+            // key equals to bound belongs to next shard:
+            return index >= 0 ? index + 1 : -index - 1;
+        };
+    }
+}
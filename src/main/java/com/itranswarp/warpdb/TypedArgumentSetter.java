@@ -0,0 +1,33 @@
+package com.itranswarp.warpdb;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+/**
+ * Bind db-ready arguments by precomputed typed binders.
+ * 
+ * @author liaoxuefeng
+ */
+final class TypedArgumentSetter implements PreparedStatementSetter {
+
+    final ColumnBinder[] binders;
+    final Object[] args;
+
+    TypedArgumentSetter(ColumnBinder[] binders, Object[] args) {
+        this.binders = binders;
+        this.args = args;
+    }
+
+    @Override
+    public void setValues(PreparedStatement ps) throws SQLException {
+        bind(ps, this.binders, this.args);
+    }
+
+    static void bind(PreparedStatement ps, ColumnBinder[] binders, Object[] args) throws SQLException {
+        for (int i = 0; i < args.length; i++) {
+            binders[i].bind(ps, i + 1, args[i]);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.itranswarp.warpdb;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * update ... SET ... WHERE ...
+ * 
+ * @author liaoxuefeng
+ *
+ * @param <T> Generic type.
+ */
+public final class Update<T> extends CriteriaQuery<T> {
+
+    // property -> db-ready value:
+    final Map<AccessibleProperty, Object> values = new LinkedHashMap<>();
+
+    Update(Criteria<T> criteria) {
+        super(criteria);
+    }
+
+    /**
+     * Set property value.
+     * 
+     * @param property Property name.
+     * @param value    Property value, which is converted by converter if present.
+     * @return Update object.
+     */
+    public Update<T> set(String property, Object value) {
+        AccessibleProperty ap = this.criteria.mapper.updatablePropertiesMap.get(property.toLowerCase());
+        if (ap == null) {
+            throw new IllegalArgumentException("Property " + property + " not exist or un-updatable.");
+        }
+        this.values.put(ap, ap.converter == null || value == null ? value : ap.converter.convertToDatabaseColumn(value));
+        return this;
+    }
+
+    /**
+     * Update all rows matching the where clause without loading entities. NOTE
+     * entity listeners are not invoked, and @Version is increased if not set.
+     * 
+     * @return Number of updated rows.
+     */
+    public int update() {
+        return this.criteria.update(this.values);
+    }
+}
@@ -0,0 +1,33 @@
+package com.itranswarp.warpdb;
+
+import java.util.List;
+
+import jakarta.persistence.OptimisticLockException;
+
+/**
+ * Thrown when update of versioned entities matched no row, which means the
+ * entities were updated or deleted by another transaction.
+ *
+ * @author liaoxuefeng
+ */
+public class VersionConflictException extends OptimisticLockException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Object> entities;
+
+    public VersionConflictException(String message, List<Object> entities) {
+        super(message, null, entities.isEmpty() ? null : entities.get(0));
+        this.entities = List.copyOf(entities);
+    }
+
+    /**
+     * Get all conflicted entities. For batch update, entities not in this list
+     * have been updated successfully.
+     *
+     * @return List of entities.
+     */
+    public List<Object> getEntities() {
+        return this.entities;
+    }
+}
@@ -1,25 +1,51 @@
 package com.itranswarp.warpdb;
 
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.sql.DataSource;
 
+import jakarta.persistence.Entity;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.NonUniqueResultException;
@@ -28,13 +54,18 @@ import jakarta.persistence.PersistenceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlProvider;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.itranswarp.warpdb.util.ClassUtils;
 
@@ -47,17 +78,99 @@ import jakarta.annotation.PostConstruct;
  */
 public class WarpDb {
 
+    static final int DEFAULT_SQL_CACHE_SIZE = 1024;
+
     final Logger logger = LoggerFactory.getLogger(getClass());
 
     JdbcTemplate jdbcTemplate;
 
+    // route reads to replicas, or null if no replica:
+    ReplicaRouter replicaRouter = null;
+    LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+
+    // route sharded entities to shards, or null if no shard:
+    ShardRouter shardRouter = null;
+    ShardStrategy shardStrategy = ShardStrategy.hash();
+    // shard of current thread, or null if on primary:
+    final ThreadLocal<JdbcTemplate> currentShard = new ThreadLocal<>();
+    // executor of parallel shard tasks, or null to use default:
+    Executor shardExecutor = null;
+    volatile ExecutorService defaultShardExecutor = null;
+    // order of strings when merging shards, or null if not set:
+    Comparator<String> shardStringComparator = null;
+    // true if current thread is running a shard task:
+    final ThreadLocal<Boolean> inShardTask = new ThreadLocal<>();
+
+    // hedge reads across replicas, or null if disabled:
+    HedgedReader hedgedReader = null;
+    double hedgeDelayPercentile = 95.0;
+    long hedgeMinDelayMillis = 1L;
+    // executor of hedged attempts, or null to use default:
+    Executor hedgeExecutor = null;
+    volatile ExecutorService defaultHedgeExecutor = null;
+
+    // reads of current thread go to primary within this time after a write:
+    long readYourWritesMillis = 1000L;
+    final ThreadLocal<WriteWindow> writeWindow = new ThreadLocal<>();
+    // depth of withPrimary() of current thread:
+    final ThreadLocal<int[]> primaryScope = ThreadLocal.withInitial(() -> new int[1]);
+
     List<String> basePackages;
 
+    // entity classes registered explicitly:
+    List<Class<?>> entityClasses = new ArrayList<>();
+
+    // load entities from META-INF/warpdb.entities instead of scanning:
+    boolean useEntityIndex = false;
+
     // class -> Mapper:
-    Map<Class<?>, Mapper<?>> classMapping;
+    Map<Class<?>, LazyMapper> classMapping;
+
+    // lower-case tableName -> Mapper:
+    Map<String, LazyMapper> tableMapping;
+
+    // how mappers are built by init():
+    InitMode initMode = InitMode.EAGER;
+
+    // max number of ids in one IN list:
+    int maxInListSize = 500;
+
+    // fetch size of streaming queries:
+    int fetchSize = 1000;
+
+    // track loaded values to update changed columns only:
+    boolean dirtyTracking = false;
+
+    // raw SQL -> parsed SQL with mapper:
+    LruCache<RawSql> sqlCache = new LruCache<>(DEFAULT_SQL_CACHE_SIZE);
 
-    // tableName -> Mapper:
-    Map<String, Mapper<?>> tableMapping;
+    // max number of compiled where clauses cached per entity:
+    int clauseCacheSize = Mapper.DEFAULT_CLAUSE_CACHE_SIZE;
+
+    // executor to run page query concurrently with count(*), or null if disabled:
+    Executor pagingExecutor = null;
+
+    // executor and max concurrency of async(), or null / 0 to use default:
+    Executor asyncExecutor = null;
+    int asyncMaxConcurrency = 0;
+    volatile AsyncWarpDb async = null;
+
+    // cache of count(*) used by CountMode.CACHED:
+    CountCache countCache = new CountCache(60_000L, 10_000);
+
+    // query estimated number of rows by table name used by CountMode.ESTIMATED,
+    // or null to pick by database product on first use:
+    volatile String estimatedCountSql = null;
+    // estimation is not supported by database or failed once:
+    volatile boolean estimateDisabled = false;
+
+    // how keyset queries order null as the smallest value, or null to pick by
+    // database product on first use:
+    volatile Keyset.NullOrdering nullOrdering = null;
+
+    // if driver reports update counts of batch, or null if not checked yet.
+    // Entities with @Version are updated row by row to detect conflicts if not:
+    volatile Boolean batchUpdateCounts = null;
 
     /**
      * Set DataSource instance.
@@ -77,6 +190,279 @@ public class WarpDb {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Set replica DataSources. Reads outside transaction are routed to replicas,
+     * while writes, locking reads and reads within transaction stay on primary.
+     * 
+     * @param dataSources Replica DataSources, or empty to disable.
+     */
+    public void setReplicaDataSources(List<DataSource> dataSources) {
+        setReplicaJdbcTemplates(dataSources.stream().map(ds -> new JdbcTemplate(ds, false)).collect(Collectors.toList()));
+    }
+
+    /**
+     * Set JdbcTemplate instances of replicas. Reads outside transaction are
+     * routed to replicas, while writes, locking reads and reads within transaction
+     * stay on primary.
+     * 
+     * @param jdbcTemplates Replica JdbcTemplates, or empty to disable.
+     */
+    public void setReplicaJdbcTemplates(List<JdbcTemplate> jdbcTemplates) {
+        this.replicaRouter = jdbcTemplates.isEmpty() ? null : new ReplicaRouter(jdbcTemplates, this.loadBalance);
+    }
+
+    /**
+     * Set how reads are balanced across replicas. Default to ROUND_ROBIN.
+     * 
+     * @param loadBalance LoadBalance.
+     */
+    public void setLoadBalance(LoadBalance loadBalance) {
+        this.loadBalance = Objects.requireNonNull(loadBalance);
+        ReplicaRouter router = this.replicaRouter;
+        if (router != null) {
+            this.replicaRouter = new ReplicaRouter(Arrays.asList(router.replicas), loadBalance);
+        }
+    }
+
+    /**
+     * Set shard DataSources. Entities with @ShardKey are stored in the shard
+     * selected by the shard strategy, and other entities stay on primary.
+     * 
+     * @param dataSources Shard DataSources, or empty to disable.
+     */
+    public void setShardDataSources(List<DataSource> dataSources) {
+        setShardJdbcTemplates(dataSources.stream().map(ds -> new JdbcTemplate(ds, false)).collect(Collectors.toList()));
+    }
+
+    /**
+     * Set JdbcTemplate instances of shards. Entities with @ShardKey are stored in
+     * the shard selected by the shard strategy, and other entities stay on
+     * primary.
+     * 
+     * @param jdbcTemplates Shard JdbcTemplates, or empty to disable.
+     */
+    public void setShardJdbcTemplates(List<JdbcTemplate> jdbcTemplates) {
+        this.shardRouter = jdbcTemplates.isEmpty() ? null : new ShardRouter(jdbcTemplates, this.shardStrategy);
+        shutdownDefaultShardExecutor();
+    }
+
+    /**
+     * Set executor which runs tasks of shards in parallel for batch writes and
+     * queries across shards. Default to a pool of daemon threads as many as
+     * shards. Within a transaction, tasks of shards run one by one on the caller
+     * thread instead.
+     * 
+     * @param executor Executor.
+     */
+    public void setShardExecutor(Executor executor) {
+        this.shardExecutor = Objects.requireNonNull(executor);
+        shutdownDefaultShardExecutor();
+    }
+
+    /**
+     * Set order of string values when merging rows of shards, which must match
+     * the collation of shard databases, e.g. Comparator.naturalOrder() for a
+     * binary collation. Queries across shards ordered by a string column
+     * (including a string @Id as tiebreaker) are rejected if not set.
+     * 
+     * @param comparator Comparator of strings.
+     */
+    public void setShardStringComparator(Comparator<String> comparator) {
+        this.shardStringComparator = Objects.requireNonNull(comparator);
+    }
+
+    Executor shardExecutor() {
+        if (this.shardExecutor != null) {
+            return this.shardExecutor;
+        }
+        ExecutorService executor = this.defaultShardExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.defaultShardExecutor;
+                if (executor == null) {
+                    int size = this.shardRouter.shards.length;
+                    AtomicInteger n = new AtomicInteger();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (r) -> {
+                        Thread t = new Thread(r, "warpdb-shard-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                    this.defaultShardExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    synchronized void shutdownDefaultShardExecutor() {
+        if (this.defaultShardExecutor != null) {
+            this.defaultShardExecutor.shutdown();
+            this.defaultShardExecutor = null;
+        }
+    }
+
+    /**
+     * Set how value of shard key is mapped to shard. Default to
+     * ShardStrategy.hash().
+     * 
+     * @param shardStrategy ShardStrategy.
+     */
+    public void setShardStrategy(ShardStrategy shardStrategy) {
+        this.shardStrategy = Objects.requireNonNull(shardStrategy);
+        ShardRouter router = this.shardRouter;
+        if (router != null) {
+            this.shardRouter = new ShardRouter(Arrays.asList(router.shards), shardStrategy);
+        }
+    }
+
+    /**
+     * Enable or disable hedged reads. When enabled and more than 1 replicas are
+     * set, a read not answered by a replica within the hedge delay is sent to a
+     * second replica. The first result wins and the statement of the other replica
+     * is cancelled. Streaming queries are never hedged. Default to false.
+     * 
+     * @param hedgedReads True if enable hedged reads.
+     */
+    public void setHedgedReads(boolean hedgedReads) {
+        this.hedgedReader = hedgedReads ? newHedgedReader() : null;
+    }
+
+    /**
+     * Set percentile of recent read latencies used as hedge delay. Default to 95.
+     * Statistics of hedged reads are reset.
+     * 
+     * @param percentile Percentile between 0 and 100.
+     */
+    public void setHedgeDelayPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile.");
+        }
+        this.hedgeDelayPercentile = percentile;
+        if (this.hedgedReader != null) {
+            this.hedgedReader = newHedgedReader();
+        }
+    }
+
+    /**
+     * Set min hedge delay in milliseconds, which avoids hedging very fast reads.
+     * Default to 1. Statistics of hedged reads are reset.
+     * 
+     * @param millis Min delay in milliseconds.
+     */
+    public void setHedgeMinDelay(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Invalid min delay.");
+        }
+        this.hedgeMinDelayMillis = millis;
+        if (this.hedgedReader != null) {
+            this.hedgedReader = newHedgedReader();
+        }
+    }
+
+    /**
+     * Set executor which runs attempts of hedged reads while the caller waits.
+     * Default to a pool of daemon threads created on demand. It should not be the
+     * async executor, otherwise a hedged read of an async operation may wait for
+     * a thread held by itself.
+     * 
+     * @param executor Executor.
+     */
+    public void setHedgeExecutor(Executor executor) {
+        this.hedgeExecutor = Objects.requireNonNull(executor);
+        shutdownDefaultHedgeExecutor();
+    }
+
+    Executor hedgeExecutor() {
+        if (this.hedgeExecutor != null) {
+            return this.hedgeExecutor;
+        }
+        ExecutorService executor = this.defaultHedgeExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.defaultHedgeExecutor;
+                if (executor == null) {
+                    AtomicInteger n = new AtomicInteger();
+                    executor = Executors.newCachedThreadPool((r) -> {
+                        Thread t = new Thread(r, "warpdb-hedge-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    this.defaultHedgeExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    synchronized void shutdownDefaultHedgeExecutor() {
+        if (this.defaultHedgeExecutor != null) {
+            this.defaultHedgeExecutor.shutdown();
+            this.defaultHedgeExecutor = null;
+        }
+    }
+
+    /**
+     * Get statistics of hedged reads.
+     * 
+     * @return HedgeStats object.
+     */
+    public HedgeStats getHedgeStats() {
+        HedgedReader reader = this.hedgedReader;
+        return reader == null ? new HedgeStats(0, 0, 0, -1) : reader.stats();
+    }
+
+    HedgedReader newHedgedReader() {
+        return new HedgedReader(this.hedgeDelayPercentile, this.hedgeMinDelayMillis * 1_000_000L);
+    }
+
+    /**
+     * Set read-your-writes window in milliseconds. Reads of a thread go to
+     * primary within the window after its last write, or after commit if the write
+     * is in transaction. Operations submitted by async() and publishers run with
+     * the window of the submitting thread, and writes submitted by async() keep
+     * its reads on primary until completed and within the window after that. Default
+     * to 1000. Set to 0 to disable.
+     * 
+     * @param millis Window in milliseconds.
+     */
+    public void setReadYourWritesWindow(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Invalid read-your-writes window.");
+        }
+        this.readYourWritesMillis = millis;
+    }
+
+    /**
+     * Run action with all reads of current thread on primary.
+     * 
+     * @param <R>    Result type.
+     * @param action Action to run.
+     * @return Result of action.
+     */
+    public <R> R withPrimary(Supplier<R> action) {
+        int[] depth = this.primaryScope.get();
+        depth[0]++;
+        try {
+            return action.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * Run action with all reads of current thread on primary.
+     * 
+     * @param action Action to run.
+     */
+    public void withPrimary(Runnable action) {
+        withPrimary(() -> {
+            action.run();
+            return null;
+        });
+    }
+
     /**
      * Get JdbcTemplate instance.
      * 
@@ -86,29 +472,334 @@ public class WarpDb {
         return this.jdbcTemplate;
     }
 
+    /**
+     * Set max number of ids in one IN list when query or delete by multiple ids.
+     * Default to 500.
+     * 
+     * @param maxInListSize Max number of ids.
+     */
+    public void setMaxInListSize(int maxInListSize) {
+        if (maxInListSize < 1) {
+            throw new IllegalArgumentException("Invalid max IN list size.");
+        }
+        this.maxInListSize = maxInListSize;
+    }
+
+    /**
+     * Set fetch size used by streaming queries. Default to 1000. For MySQL, set to
+     * Integer.MIN_VALUE to stream rows one by one.
+     * 
+     * @param fetchSize The fetch size.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Enable or disable dirty tracking. When enabled, values of loaded entities are
+     * snapshot, and update(bean) only writes changed columns of a loaded entity,
+     * or skips the statement if nothing changed. Default to false.
+     * 
+     * @param dirtyTracking True if enable dirty tracking.
+     */
+    public void setDirtyTracking(boolean dirtyTracking) {
+        this.dirtyTracking = dirtyTracking;
+        if (this.classMapping != null) {
+            // mappers not built yet apply the setting when built:
+            for (Mapper<?> mapper : builtMappers()) {
+                mapper.rowMapper.dirtyTracker = dirtyTracking ? new DirtyTracker(mapper) : null;
+            }
+        }
+    }
+
+    /**
+     * Set max number of compiled where clauses cached per entity. Least recently
+     * used clauses are evicted when full. Default to 256. Existing cached clauses
+     * are discarded.
+     * 
+     * @param clauseCacheSize Max number of cached clauses per entity.
+     */
+    public void setClauseCacheSize(int clauseCacheSize) {
+        if (clauseCacheSize < 1) {
+            throw new IllegalArgumentException("Invalid clause cache size.");
+        }
+        this.clauseCacheSize = clauseCacheSize;
+        if (this.classMapping != null) {
+            for (Mapper<?> mapper : builtMappers()) {
+                mapper.clauseCache = new LruCache<>(clauseCacheSize);
+            }
+        }
+    }
+
+    /**
+     * Set max number of parsed raw SQL cached, which are used to resolve entity
+     * of list(sql, args), unique(sql, args), etc. Default to 1024.
+     * 
+     * @param sqlCacheSize Max number of cached SQL.
+     */
+    public void setSqlCacheSize(int sqlCacheSize) {
+        if (sqlCacheSize < 1) {
+            throw new IllegalArgumentException("Invalid SQL cache size.");
+        }
+        this.sqlCache = new LruCache<>(sqlCacheSize);
+    }
+
+    /**
+     * Get statistics of parsed raw SQL cache.
+     * 
+     * @return CacheStats object.
+     */
+    public CacheStats getSqlCacheStats() {
+        return this.sqlCache.stats();
+    }
+
+    /**
+     * Get statistics of compiled where clause cache of entity.
+     * 
+     * @param clazz Entity class.
+     * @return CacheStats object.
+     */
+    public CacheStats getClauseCacheStats(Class<?> clazz) {
+        return getMapper(clazz).clauseCache.stats();
+    }
+
+    /**
+     * Set executor to run the page query of paged list concurrently with the
+     * count(*) query on a separate connection. Default to null which means run
+     * sequentially. The page query is routed to replica or primary the same as
+     * the caller thread. Queries within an active transaction always run
+     * sequentially.
+     * 
+     * @param executor Executor, or null to disable.
+     */
+    public void setPagingExecutor(Executor executor) {
+        this.pagingExecutor = executor;
+    }
+
+    /**
+     * Set executor of async operations. Default to virtual thread per task if
+     * supported by JVM, otherwise cached daemon threads.
+     * 
+     * @param executor Executor.
+     */
+    public void setAsyncExecutor(Executor executor) {
+        this.asyncExecutor = Objects.requireNonNull(executor);
+        this.async = null;
+    }
+
+    /**
+     * Set max number of async operations running at the same time, which should
+     * not exceed the size of connection pool. Default to the max pool size
+     * detected from DataSource, or 10 if not detected.
+     * 
+     * @param maxConcurrency Max concurrency.
+     */
+    public void setAsyncMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Invalid max concurrency.");
+        }
+        this.asyncMaxConcurrency = maxConcurrency;
+        this.async = null;
+    }
+
+    /**
+     * Get async facade which returns CompletableFuture.
+     * 
+     * @return AsyncWarpDb object.
+     */
+    public AsyncWarpDb async() {
+        AsyncWarpDb a = this.async;
+        if (a == null) {
+            synchronized (this) {
+                a = this.async;
+                if (a == null) {
+                    Executor executor = this.asyncExecutor == null ? AsyncWarpDb.defaultExecutor() : this.asyncExecutor;
+                    int maxConcurrency = this.asyncMaxConcurrency > 0 ? this.asyncMaxConcurrency
+                            : AsyncWarpDb.detectPoolSize(this.jdbcTemplate == null ? null : this.jdbcTemplate.getDataSource());
+                    a = new AsyncWarpDb(this, executor, maxConcurrency);
+                    this.async = a;
+                }
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Set TTL of cached count used by paged query with CountMode.CACHED. Default
+     * to 60 seconds.
+     * 
+     * @param ttlMillis TTL in milliseconds.
+     */
+    public void setCountCacheTtl(long ttlMillis) {
+        this.countCache = new CountCache(ttlMillis, this.countCache.maxEntries);
+    }
+
+    /**
+     * Clear all cached count.
+     */
+    public void clearCountCache() {
+        this.countCache.clear();
+    }
+
+    /**
+     * Set SQL to query estimated number of rows by table name, which is used by
+     * paged query with CountMode.ESTIMATED. By default the SQL is picked by
+     * database product (MySQL / MariaDB and PostgreSQL), and estimation is
+     * disabled on other databases. Estimation is also disabled after the SQL
+     * fails once, and CountMode.ESTIMATED falls back to exact count.
+     * 
+     * @param estimatedCountSql SQL with one parameter of table name.
+     */
+    public void setEstimatedCountSql(String estimatedCountSql) {
+        this.estimatedCountSql = estimatedCountSql;
+        this.estimateDisabled = false;
+    }
+
+    /**
+     * Set how mappers of entities are built by init(). Default to EAGER.
+     * 
+     * @param initMode InitMode.
+     */
+    public void setInitMode(InitMode initMode) {
+        this.initMode = Objects.requireNonNull(initMode);
+    }
+
     public void setBasePackages(List<String> basePackages) {
         this.basePackages = basePackages;
     }
 
+    /**
+     * Load entities from META-INF/warpdb.entities generated by EntityIndexProcessor
+     * instead of scanning base packages. Default to false. Enable it only if all
+     * entities of base packages are compiled by the processor in one build, since
+     * any index found on classpath is trusted and entities missing from it are not
+     * found. Classpath scanning is used if no index is found.
+     * 
+     * @param useEntityIndex True if use entity index.
+     */
+    public void setUseEntityIndex(boolean useEntityIndex) {
+        this.useEntityIndex = useEntityIndex;
+    }
+
+    /**
+     * Set entity classes explicitly. If any entity is registered, entity index and
+     * classpath scanning are skipped. Must be called before init().
+     * 
+     * @param entityClasses Entity classes.
+     */
+    public void setEntityClasses(List<Class<?>> entityClasses) {
+        checkNotInitialized();
+        this.entityClasses = new ArrayList<>();
+        for (Class<?> entityClass : entityClasses) {
+            registerEntity(entityClass);
+        }
+    }
+
+    /**
+     * Register an entity class explicitly. If any entity is registered, entity
+     * index and classpath scanning are skipped. Must be called before init().
+     * 
+     * @param entityClass Entity class annotated with @Entity.
+     */
+    public void registerEntity(Class<?> entityClass) {
+        checkNotInitialized();
+        if (entityClass.getAnnotation(Entity.class) == null) {
+            throw new IllegalArgumentException("Class is not annotated with @Entity: " + entityClass.getName());
+        }
+        if (!this.entityClasses.contains(entityClass)) {
+            this.entityClasses.add(entityClass);
+        }
+    }
+
+    void checkNotInitialized() {
+        if (this.classMapping != null) {
+            throw new IllegalStateException("Cannot register entity after init().");
+        }
+    }
+
     @PostConstruct
     public void init() {
-        List<Class<?>> classes = ClassUtils.scanEntities(this.basePackages.toArray(new String[this.basePackages.size()]));
-        Map<Class<?>, Mapper<?>> classMapping = new HashMap<>();
-        Map<String, Mapper<?>> tableMapping = new HashMap<>();
-        for (Class<?> clazz : classes) {
-            logger.info("Found class: {}", clazz.getName());
-            Mapper<?> mapper = new Mapper<>(clazz);
-            classMapping.put(clazz, mapper);
+        List<Class<?>> classes = findEntities();
+        long start = System.nanoTime();
+        List<LazyMapper> mappers = switch (this.initMode) {
+        case EAGER -> classes.stream().map((clazz) -> {
+            return new LazyMapper(buildMapper(clazz));
+        }).collect(Collectors.toList());
+        case PARALLEL -> classes.parallelStream().map((clazz) -> {
+            return new LazyMapper(buildMapper(clazz));
+        }).collect(Collectors.toList());
+        case LAZY -> classes.stream().map((clazz) -> {
+            return new LazyMapper(clazz, Mapper.getTableName(clazz), this::buildMapper);
+        }).collect(Collectors.toList());
+        };
+        Map<Class<?>, LazyMapper> classMapping = new HashMap<>();
+        Map<String, LazyMapper> tableMapping = new HashMap<>();
+        for (LazyMapper mapper : mappers) {
+            logger.info("Found class: {}", mapper.entityClass.getName());
+            classMapping.put(mapper.entityClass, mapper);
             if (null != tableMapping.put(mapper.tableName.toLowerCase(), mapper)) {
-                throw new ConfigurationException("Duplicate table name: " + mapper.tableName + " defined in class: " + clazz.getName());
+                throw new ConfigurationException("Duplicate table name: " + mapper.tableName + " defined in class: " + mapper.entityClass.getName());
             }
         }
+        logger.info("Init {} entities in {} mode: {} ms.", mappers.size(), this.initMode, (System.nanoTime() - start) / 1_000_000);
         this.classMapping = classMapping;
         this.tableMapping = tableMapping;
+        this.sqlCache = new LruCache<>(this.sqlCache.maxEntries);
+    }
+
+    // find entities registered explicitly, or from entity index if enabled, or
+    // by scanning base packages:
+    List<Class<?>> findEntities() {
+        if (!this.entityClasses.isEmpty()) {
+            logger.info("Use {} registered entities.", this.entityClasses.size());
+            return new ArrayList<>(this.entityClasses);
+        }
+        String[] packages = this.basePackages == null ? new String[0] : this.basePackages.toArray(new String[this.basePackages.size()]);
+        // use entity index generated at build time if enabled and present:
+        if (this.useEntityIndex) {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            List<Class<?>> classes = ClassUtils.loadIndexedEntities(classLoader == null ? WarpDb.class.getClassLoader() : classLoader, packages);
+            if (classes != null && !classes.isEmpty()) {
+                logger.info("Load {} entities from {}.", classes.size(), ClassUtils.ENTITY_INDEX);
+                return classes;
+            }
+            logger.warn("No entity found in {}, scan base packages instead.", ClassUtils.ENTITY_INDEX);
+        }
+        return ClassUtils.scanEntities(packages);
+    }
+
+    // build mapper with current settings:
+    Mapper<?> buildMapper(Class<?> clazz) {
+        Mapper<?> mapper = new Mapper<>(clazz);
+        if (this.dirtyTracking) {
+            mapper.rowMapper.dirtyTracker = new DirtyTracker(mapper);
+        }
+        if (this.clauseCacheSize != Mapper.DEFAULT_CLAUSE_CACHE_SIZE) {
+            mapper.clauseCache = new LruCache<>(this.clauseCacheSize);
+        }
+        return mapper;
+    }
+
+    // mappers already built:
+    List<Mapper<?>> builtMappers() {
+        List<Mapper<?>> list = new ArrayList<>();
+        for (LazyMapper lm : this.classMapping.values()) {
+            Mapper<?> mapper = lm.getIfBuilt();
+            if (mapper != null) {
+                list.add(mapper);
+            }
+        }
+        return list;
+    }
+
+    // get mapper by class, or null if not an entity:
+    Mapper<?> findMapper(Class<?> clazz) {
+        LazyMapper lm = this.classMapping.get(clazz);
+        return lm == null ? null : lm.get();
     }
 
     public String getDDL(Class<?> clazz) {
-        Mapper<?> mapper = this.classMapping.get(clazz);
+        Mapper<?> mapper = findMapper(clazz);
         if (mapper == null) {
             throw new PersistenceException("Cannot find entity class: " + clazz.getName());
         }
@@ -122,7 +813,7 @@ public class WarpDb {
      */
     public String getDDL() {
         return String.join("\n\n", this.classMapping.values().stream().map((mapper) -> {
-            return mapper.ddl();
+            return mapper.get().ddl();
         }).sorted().toArray(String[]::new));
     }
 
@@ -173,20 +864,7 @@ public class WarpDb {
         if (mapper.ids.length != 1) {
             throw new IllegalArgumentException(mapper.ids.length + " id values are expected but actual 1.");
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug("SQL: {}", mapper.selectSQL);
-        }
-        List<T> list = jdbcTemplate.query(mapper.selectSQL, mapper.rowMapper, id);
-        if (list.isEmpty()) {
-            return null;
-        }
-        T t = list.get(0);
-        try {
-            mapper.postLoad.invoke(t);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new PersistenceException(e);
-        }
-        return t;
+        return fetchByShard(mapper, new Object[] { id });
     }
 
     /**
@@ -202,10 +880,32 @@ public class WarpDb {
         if (mapper.ids.length != ids.length) {
             throw new IllegalArgumentException(mapper.ids.length + " id values are expected but actual " + ids.length + ".");
         }
+        return fetchByShard(mapper, ids);
+    }
+
+    // fetch from the shard of ids, or from each shard if shard key is not id:
+    <T> T fetchByShard(Mapper<T> mapper, Object[] ids) {
+        ShardRouter router = this.shardRouter;
+        if (router == null || mapper.shardKey == null) {
+            return doFetch(mapper, ids);
+        }
+        if (mapper.shardKeyIdIndex >= 0) {
+            return withShard(router.shardOfIds(mapper, ids), () -> doFetch(mapper, ids));
+        }
+        for (int i = 0; i < router.shards.length; i++) {
+            T t = withShard(i, () -> doFetch(mapper, ids));
+            if (t != null) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    <T> T doFetch(Mapper<T> mapper, Object[] ids) {
         if (logger.isDebugEnabled()) {
             logger.debug("SQL: {}", mapper.selectSQL);
         }
-        List<T> list = jdbcTemplate.query(mapper.selectSQL, mapper.rowMapper, ids);
+        List<T> list = queryForBeans(mapper, mapper.selectSQL, ids);
         if (list.isEmpty()) {
             return null;
         }
@@ -218,19 +918,134 @@ public class WarpDb {
         return t;
     }
 
+    /**
+     * Get model instances by class type and ids in request order. Ids not found
+     * are skipped. Ids are queried by chunked IN list. NOTE each id of composite
+     * ids is an Object[] sorted by column names.
+     * 
+     * @param <T>   Generic type.
+     * @param clazz Entity class.
+     * @param ids   Collection of id values.
+     * @return List of entity beans.
+     */
+    public <T> List<T> fetchAll(Class<T> clazz, Collection<?> ids) {
+        Mapper<T> mapper = getMapper(clazz);
+        Map<Object, T> found = fetchByIds(mapper, ids);
+        List<T> list = new ArrayList<>(found.size());
+        for (Object id : ids) {
+            T t = found.get(mapper.idKey(mapper.toIdsValue(id)));
+            if (t != null) {
+                list.add(t);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Get model instances by class type and ids as map with same order of ids. Ids
+     * not found are not contained in map. NOTE each id of composite ids is an
+     * Object[] sorted by column names.
+     * 
+     * @param <K>   Id type.
+     * @param <T>   Generic type.
+     * @param clazz Entity class.
+     * @param ids   Collection of id values.
+     * @return Map of id and entity bean.
+     */
+    public <K, T> Map<K, T> fetchMap(Class<T> clazz, Collection<K> ids) {
+        Mapper<T> mapper = getMapper(clazz);
+        Map<Object, T> found = fetchByIds(mapper, ids);
+        Map<K, T> map = new LinkedHashMap<>();
+        for (K id : ids) {
+            T t = found.get(mapper.idKey(mapper.toIdsValue(id)));
+            if (t != null) {
+                map.put(id, t);
+            }
+        }
+        return map;
+    }
+
+    // query beans by chunked ids and return as map of id key -> bean:
+    <T> Map<Object, T> fetchByIds(Mapper<T> mapper, Collection<?> ids) {
+        // remove duplicate ids:
+        Map<Object, Object[]> keys = new LinkedHashMap<>();
+        for (Object id : ids) {
+            Object[] values = mapper.toIdsValue(id);
+            keys.putIfAbsent(mapper.idKey(values), values);
+        }
+        ShardRouter router = this.shardRouter;
+        if (router == null || mapper.shardKey == null) {
+            return doFetchByIds(mapper, new ArrayList<>(keys.values()));
+        }
+        // group ids by shard, or query all ids on each shard if shard key is not id:
+        Map<Integer, List<Object[]>> groups = new LinkedHashMap<>();
+        for (Object[] values : keys.values()) {
+            if (mapper.shardKeyIdIndex >= 0) {
+                groups.computeIfAbsent(router.shardOfIds(mapper, values), (key) -> {
+                    return new ArrayList<>();
+                }).add(values);
+            } else {
+                for (int i = 0; i < router.shards.length; i++) {
+                    groups.computeIfAbsent(i, (key) -> {
+                        return new ArrayList<>();
+                    }).add(values);
+                }
+            }
+        }
+        Map<Object, T> found = new ConcurrentHashMap<>();
+        forEachShard(groups, (list) -> {
+            found.putAll(doFetchByIds(mapper, list));
+        });
+        return found;
+    }
+
+    <T> Map<Object, T> doFetchByIds(Mapper<T> mapper, List<Object[]> all) {
+        Map<Object, T> found = new HashMap<>();
+        try {
+            for (int start = 0; start < all.size(); start += this.maxInListSize) {
+                List<Object[]> chunk = all.subList(start, Math.min(all.size(), start + this.maxInListSize));
+                Object[] args = new Object[chunk.size() * mapper.ids.length];
+                int n = 0;
+                for (Object[] values : chunk) {
+                    for (Object value : values) {
+                        args[n] = value;
+                        n++;
+                    }
+                }
+                String sql = "SELECT * FROM " + mapper.tableName + " WHERE " + mapper.whereIdsIn(chunk.size());
+                if (logger.isDebugEnabled()) {
+                    logger.debug("SQL: {}", sql);
+                }
+                for (T bean : queryForBeans(mapper, sql, args)) {
+                    mapper.postLoad.invoke(bean);
+                    found.put(mapper.idKey(mapper.getIdsValue(bean)), bean);
+                }
+            }
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new PersistenceException(e);
+        }
+        return found;
+    }
+
     /**
      * Remove bean by id.
      * 
      * @param bean The entity.
      */
     public <T> void remove(T bean) {
+        int shard = shardOf(bean);
+        if (!isCurrentShard(shard)) {
+            withShard(shard, () -> remove(bean));
+            return;
+        }
         try {
             Mapper<?> mapper = getMapper(bean.getClass());
             mapper.preRemove.invoke(bean);
             if (logger.isDebugEnabled()) {
                 logger.debug("SQL: {}", mapper.deleteSQL);
             }
-            jdbcTemplate.update(mapper.deleteSQL, mapper.getIdsValue(bean));
+            template().update(mapper.deleteSQL, new TypedArgumentSetter(mapper.idBinders, mapper.getIdsValue(bean)));
+            markWrite();
             mapper.postRemove.invoke(bean);
         } catch (IllegalAccessException | InvocationTargetException e) {
             throw new PersistenceException(e);
@@ -238,7 +1053,8 @@ public class WarpDb {
     }
 
     /**
-     * Remove beans by id.
+     * Remove beans by id. Beans are grouped by entity class and deleted by chunked
+     * IN list on one connection.
      * 
      * @param beans The entities.
      */
@@ -246,19 +1062,94 @@ public class WarpDb {
         if (beans.isEmpty()) {
             return;
         }
+        Map<Integer, List<T>> shards = groupByShard(beans);
+        if (shards != null) {
+            forEachShard(shards, this::remove);
+            return;
+        }
+        // group consecutive beans of same mapper, so callbacks and deletes keep list order:
+        List<Mapper<?>> mappers = new ArrayList<>();
+        List<List<Object>> groups = new ArrayList<>();
+        Mapper<?> last = null;
+        for (Object bean : beans) {
+            Mapper<?> mapper = getMapper(bean.getClass());
+            if (mapper != last) {
+                last = mapper;
+                mappers.add(mapper);
+                groups.add(new ArrayList<>());
+            }
+            groups.get(groups.size() - 1).add(bean);
+        }
+        template().execute(new ConnectionCallback<>() {
+            @Override
+            public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+                try {
+                    for (int i = 0; i < groups.size(); i++) {
+                        Mapper<?> mapper = mappers.get(i);
+                        List<Object> list = groups.get(i);
+                        for (Object bean : list) {
+                            mapper.preRemove.invoke(bean);
+                        }
+                        doRemove(con, mapper, list);
+                        for (Object bean : list) {
+                            mapper.postRemove.invoke(bean);
+                        }
+                    }
+                    return null;
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new PersistenceException(e);
+                }
+            }
+        });
+        markWrite();
+    }
+
+    // delete beans of same mapper by chunked DELETE ... WHERE id IN (...):
+    private void doRemove(Connection con, Mapper<?> mapper, List<Object> beans)
+            throws SQLException, IllegalAccessException, InvocationTargetException {
+        final int chunkSize = this.maxInListSize;
+        PreparedStatement fullChunk = null;
         try {
-            for (Object bean : beans) {
-                Mapper<?> mapper = getMapper(bean.getClass());
-                mapper.preRemove.invoke(bean);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("SQL: {}", mapper.deleteSQL);
+            for (int start = 0; start < beans.size(); start += chunkSize) {
+                int size = Math.min(chunkSize, beans.size() - start);
+                PreparedStatement ps;
+                if (size == chunkSize) {
+                    // reuse statement of full chunk:
+                    if (fullChunk == null) {
+                        fullChunk = con.prepareStatement(deleteByIdsSQL(mapper, size));
+                    }
+                    ps = fullChunk;
+                } else {
+                    ps = con.prepareStatement(deleteByIdsSQL(mapper, size));
+                }
+                try {
+                    int n = 0;
+                    for (Object bean : beans.subList(start, start + size)) {
+                        for (AccessibleProperty id : mapper.ids) {
+                            n++;
+                            id.columnBinder.bind(ps, n, id.convertGetter.get(bean));
+                        }
+                    }
+                    ps.executeUpdate();
+                } finally {
+                    if (ps != fullChunk) {
+                        ps.close();
+                    }
                 }
-                jdbcTemplate.update(mapper.deleteSQL, mapper.getIdsValue(bean));
-                mapper.postRemove.invoke(bean);
             }
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new PersistenceException(e);
+        } finally {
+            if (fullChunk != null) {
+                fullChunk.close();
+            }
+        }
+    }
+
+    private String deleteByIdsSQL(Mapper<?> mapper, int size) {
+        String sql = "DELETE FROM " + mapper.tableName + " WHERE " + mapper.whereIdsIn(size);
+        if (logger.isDebugEnabled()) {
+            logger.debug("SQL: {}", sql);
         }
+        return sql;
     }
 
     @SuppressWarnings("rawtypes")
@@ -279,37 +1170,106 @@ public class WarpDb {
     }
 
     /**
-     * Update entity's updatable properties by id.
+     * Update entity's updatable properties by id. If entity has @Version, the
+     * version is checked and increased, and VersionConflictException is thrown if
+     * entity was updated or deleted by others.
      * 
      * @param <T>  Generic type.
      * @param bean Entity object.
      */
     public <T> void update(T bean) {
+        int shard = shardOf(bean);
+        if (!isCurrentShard(shard)) {
+            withShard(shard, () -> update(bean));
+            return;
+        }
         try {
             Mapper<?> mapper = getMapper(bean.getClass());
             mapper.preUpdate.invoke(bean);
-            Object[] args = new Object[mapper.updatableProperties.size() + mapper.ids.length];
+            DirtyTracker tracker = mapper.rowMapper.dirtyTracker;
+            Object[] snapshot = tracker == null ? null : tracker.snapshotOf(bean);
+            if (snapshot != null) {
+                updateChanged(mapper, tracker, snapshot, bean);
+                mapper.postUpdate.invoke(bean);
+                return;
+            }
+            Object[] args = new Object[mapper.updateBinders.length];
             int n = 0;
             for (AccessibleProperty prop : mapper.updatableProperties) {
                 args[n] = prop.convertGetter.get(bean);
                 n++;
             }
+            Object version = null;
+            Object nextVersion = null;
+            if (mapper.version != null) {
+                version = mapper.version.convertGetter.get(bean);
+                nextVersion = mapper.nextVersion(version);
+                args[n] = nextVersion;
+                n++;
+            }
             for (int i = 0; i < mapper.ids.length; i++) {
                 args[n] = mapper.ids[i].convertGetter.get(bean);
                 n++;
             }
+            if (mapper.version != null) {
+                args[n] = version;
+            }
             if (logger.isDebugEnabled()) {
                 logger.debug("SQL: {}", mapper.updateSQL);
             }
-            jdbcTemplate.update(mapper.updateSQL, args);
+            int rows = template().update(mapper.updateSQL, new TypedArgumentSetter(mapper.updateBinders, args));
+            markWrite();
+            if (mapper.version != null) {
+                checkVersion(mapper, bean, nextVersion, rows);
+            }
             mapper.postUpdate.invoke(bean);
         } catch (IllegalAccessException | InvocationTargetException e) {
             throw new PersistenceException(e);
         }
     }
 
+    // update changed columns compared to snapshot of loaded bean:
+    private void updateChanged(Mapper<?> mapper, DirtyTracker tracker, Object[] snapshot, Object bean)
+            throws IllegalAccessException, InvocationTargetException {
+        Object[] values = tracker.values(bean);
+        BitSet changed = tracker.diff(snapshot, values);
+        if (changed.isEmpty()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Skip update for nothing changed: {}", mapper.entityClass.getName());
+            }
+            return;
+        }
+        DirtyTracker.UpdateStatement stmt = tracker.statement(changed);
+        if (logger.isDebugEnabled()) {
+            logger.debug("SQL: {}", stmt.sql);
+        }
+        Object version = mapper.version == null ? null : mapper.version.convertGetter.get(bean);
+        Object nextVersion = mapper.version == null ? null : mapper.nextVersion(version);
+        int rows = template().update(stmt.sql,
+                new TypedArgumentSetter(stmt.binders, stmt.args(values, mapper.getIdsValue(bean), version, nextVersion)));
+        markWrite();
+        if (mapper.version != null) {
+            checkVersion(mapper, bean, nextVersion, rows);
+        }
+        tracker.refresh(bean, snapshot, values, changed, version);
+    }
+
+    // throw VersionConflictException if no row updated, or set next version:
+    private void checkVersion(Mapper<?> mapper, Object bean, Object nextVersion, int rows)
+            throws IllegalAccessException, InvocationTargetException {
+        if (rows == 0) {
+            throw new VersionConflictException("Entity " + mapper.entityClass.getSimpleName() + " was updated or deleted by another transaction.",
+                    List.of(bean));
+        }
+        mapper.version.convertSetter.set(bean, nextVersion);
+    }
+
     /**
-     * Update entities' updatable properties by id.
+     * Update entities' updatable properties by id. If entities have @Version,
+     * VersionConflictException is thrown after batch executed if any entity was
+     * updated or deleted by others, and other entities are updated as usual. If
+     * the JDBC driver does not report update counts of batch, which is checked by
+     * the first batch update, entities with @Version are updated row by row.
      * 
      * @param <T>   Generic type.
      * @param beans List of objects.
@@ -318,39 +1278,116 @@ public class WarpDb {
         if (beans.isEmpty()) {
             return;
         }
+        Map<Integer, List<T>> shards = groupByShard(beans);
+        if (shards != null) {
+            forEachShard(shards, this::update);
+            return;
+        }
         Mapper<?> mapper = getMapper(beans.iterator().next().getClass());
-        jdbcTemplate.execute(new ConnectionCallback<>() {
+        List<Object> conflicts = template().execute(new ConnectionCallback<List<Object>>() {
             @Override
-            public Object doInConnection(Connection con) throws SQLException, DataAccessException {
+            public List<Object> doInConnection(Connection con) throws SQLException, DataAccessException {
                 try (PreparedStatement ps = con.prepareStatement(mapper.updateSQL)) {
+                    boolean rowByRow = mapper.version != null && !batchUpdateCounts(con, mapper);
+                    int[] results = rowByRow ? new int[beans.size()] : null;
+                    Object[] versions = mapper.version == null ? null : new Object[beans.size()];
+                    Object[] nextVersions = mapper.version == null ? null : new Object[beans.size()];
+                    int index = 0;
                     for (T bean : beans) {
                         mapper.preUpdate.invoke(bean);
                         int n = 0;
                         for (AccessibleProperty prop : mapper.updatableProperties) {
                             Object arg = prop.convertGetter.get(bean);
                             n++;
-                            ps.setObject(n, arg);
+                            prop.columnBinder.bind(ps, n, arg);
+                        }
+                        Object version = null;
+                        if (mapper.version != null) {
+                            version = mapper.version.convertGetter.get(bean);
+                            versions[index] = version;
+                            nextVersions[index] = mapper.nextVersion(version);
+                            n++;
+                            mapper.version.columnBinder.bind(ps, n, nextVersions[index]);
                         }
                         for (int i = 0; i < mapper.ids.length; i++) {
                             n++;
-                            ps.setObject(n, mapper.ids[i].convertGetter.get(bean)); // where id = ?
+                            mapper.ids[i].columnBinder.bind(ps, n, mapper.ids[i].convertGetter.get(bean)); // where id = ?
+                        }
+                        if (mapper.version != null) {
+                            n++;
+                            mapper.version.columnBinder.bind(ps, n, version); // and version = ?
+                        }
+                        if (rowByRow) {
+                            results[index] = ps.executeUpdate();
+                        } else {
+                            ps.addBatch();
                         }
-                        ps.addBatch();
+                        index++;
                     }
-                    ps.executeBatch();
+                    if (!rowByRow) {
+                        results = ps.executeBatch();
+                        if (mapper.version != null && Arrays.stream(results).anyMatch(r -> r == Statement.SUCCESS_NO_INFO)) {
+                            // rows are written already, so treat as updated:
+                            batchUpdateCounts = Boolean.FALSE;
+                            logger.warn("JDBC driver does not report update counts of batch, versions of entities {} were not checked.",
+                                    mapper.entityClass.getSimpleName());
+                        }
+                    }
+                    List<Object> conflicts = new ArrayList<>();
+                    DirtyTracker tracker = mapper.rowMapper.dirtyTracker;
+                    index = 0;
                     for (T bean : beans) {
+                        if (mapper.version != null) {
+                            if (index < results.length && results[index] == 0) {
+                                conflicts.add(bean);
+                                index++;
+                                continue;
+                            }
+                            mapper.version.convertSetter.set(bean, nextVersions[index]);
+                        }
+                        Object[] snapshot = tracker == null ? null : tracker.snapshotOf(bean);
+                        if (snapshot != null) {
+                            tracker.refresh(bean, snapshot, tracker.values(bean), null, versions == null ? null : versions[index]);
+                        }
                         mapper.postUpdate.invoke(bean);
+                        index++;
                     }
-                    return null;
+                    return conflicts;
                 } catch (IllegalAccessException | InvocationTargetException e) {
                     throw new RuntimeException(e);
                 }
             }
         });
+        markWrite();
+        if (!conflicts.isEmpty()) {
+            throw new VersionConflictException(conflicts.size() + " of " + beans.size() + " entities " + mapper.entityClass.getSimpleName()
+                    + " were updated or deleted by another transaction.", conflicts);
+        }
+    }
+
+    // check once if driver reports update counts of batch by a batch which matches
+    // no row, so it is known before any row is written:
+    boolean batchUpdateCounts(Connection con, Mapper<?> mapper) throws SQLException {
+        Boolean supported = this.batchUpdateCounts;
+        if (supported == null) {
+            String column = mapper.version.columnName;
+            try (PreparedStatement ps = con.prepareStatement("UPDATE " + mapper.tableName + " SET " + column + " = " + column + " WHERE 1 = 0")) {
+                ps.addBatch();
+                int[] results = ps.executeBatch();
+                supported = results.length == 1 && results[0] != Statement.SUCCESS_NO_INFO;
+            }
+            if (!supported) {
+                logger.info("JDBC driver does not report update counts of batch, entities with @Version will be updated row by row.");
+            }
+            this.batchUpdateCounts = supported;
+        }
+        return supported;
     }
 
     /**
-     * Update entity's specified properties.
+     * Update entity's specified properties. If entity has @Version which is not
+     * specified, the version is checked and increased as update(bean). If the
+     * version property is specified explicitly, it is written as is without check.
      * 
      * @param <T>        Generic type.
      * @param bean       Entity object.
@@ -360,33 +1397,85 @@ public class WarpDb {
         if (properties.length == 0) {
             throw new IllegalArgumentException("No properties provided.");
         }
+        int shard = shardOf(bean);
+        if (!isCurrentShard(shard)) {
+            withShard(shard, () -> updateProperties(bean, properties));
+            return;
+        }
         Mapper<?> mapper = getMapper(bean.getClass());
         try {
             mapper.preUpdate.invoke(bean);
-            Object[] args = new Object[properties.length + mapper.ids.length];
+            AccessibleProperty[] aps = new AccessibleProperty[properties.length];
+            boolean checkVersion = mapper.version != null;
+            for (int i = 0; i < properties.length; i++) {
+                AccessibleProperty ap = mapper.updatablePropertiesMap.get(properties[i].toLowerCase());
+                if (ap == null) {
+                    throw new IllegalArgumentException("Property " + properties[i] + " not exist or un-updatable.");
+                }
+                if (ap == mapper.version) {
+                    checkVersion = false;
+                }
+                aps[i] = ap;
+            }
+            Object[] args = new Object[properties.length + mapper.ids.length + (checkVersion ? 2 : 0)];
+            ColumnBinder[] binders = new ColumnBinder[args.length];
             StringBuilder sb = new StringBuilder(150);
             sb.append("UPDATE ").append(mapper.tableName).append(" SET ");
             int n = 0;
-            for (String prop : properties) {
-                AccessibleProperty ap = mapper.updatablePropertiesMap.get(prop.toLowerCase());
-                if (ap == null) {
-                    throw new IllegalArgumentException("Property " + prop + " not exist or un-updatable.");
-                }
+            for (AccessibleProperty ap : aps) {
                 sb.append(ap.columnName).append(" = ?, ");
                 args[n] = ap.convertGetter.get(bean);
+                binders[n] = ap.columnBinder;
+                n++;
+            }
+            Object version = null;
+            Object nextVersion = null;
+            if (checkVersion) {
+                version = mapper.version.convertGetter.get(bean);
+                nextVersion = mapper.nextVersion(version);
+                sb.append(mapper.version.columnName).append(" = ?, ");
+                args[n] = nextVersion;
+                binders[n] = mapper.version.columnBinder;
                 n++;
             }
             for (int i = 0; i < mapper.ids.length; i++) {
                 args[n] = mapper.ids[i].convertGetter.get(bean);
+                binders[n] = mapper.ids[i].columnBinder;
                 n++;
             }
             sb.delete(sb.length() - 2, sb.length());
-            sb.append(" WHERE ").append(mapper.whereIdsEquals);
+            if (checkVersion) {
+                args[n] = version;
+                binders[n] = mapper.version.columnBinder;
+                sb.append(" WHERE ").append(mapper.whereIdsAndVersionEquals);
+            } else {
+                sb.append(" WHERE ").append(mapper.whereIdsEquals);
+            }
             String sql = sb.toString();
             if (logger.isDebugEnabled()) {
                 logger.debug("SQL: {}", sql);
             }
-            jdbcTemplate.update(sql, args);
+            int rows = template().update(sql, new TypedArgumentSetter(binders, args));
+            markWrite();
+            if (checkVersion) {
+                checkVersion(mapper, bean, nextVersion, rows);
+            }
+            DirtyTracker tracker = mapper.rowMapper.dirtyTracker;
+            Object[] snapshot = tracker == null ? null : tracker.snapshotOf(bean);
+            if (snapshot != null) {
+                // refresh snapshot of updated properties:
+                Object[] values = new Object[tracker.properties.length];
+                BitSet written = new BitSet(values.length);
+                for (int i = 0; i < tracker.properties.length; i++) {
+                    for (int j = 0; j < aps.length; j++) {
+                        if (aps[j] == tracker.properties[i]) {
+                            values[i] = args[j];
+                            written.set(i);
+                        }
+                    }
+                }
+                tracker.refresh(bean, snapshot, values, written, version);
+            }
             mapper.postUpdate.invoke(bean);
         } catch (IllegalAccessException | InvocationTargetException e) {
             throw new PersistenceException(e);
@@ -431,12 +1520,19 @@ public class WarpDb {
     }
 
     private <T> void doInsert(Mapper<?> mapper, boolean ignore, List<T> beans) {
+        Map<Integer, List<T>> shards = groupByShard(beans);
+        if (shards != null) {
+            forEachShard(shards, (list) -> {
+                doInsert(mapper, ignore, list);
+            });
+            return;
+        }
         final String sql = ignore ? mapper.insertIgnoreSQL : mapper.insertSQL;
         if (logger.isDebugEnabled()) {
             logger.debug("SQL: {}", sql);
         }
         try {
-            jdbcTemplate.execute(new ConnectionCallback<>() {
+            template().execute(new ConnectionCallback<>() {
                 @Override
                 public Object doInConnection(Connection con) throws SQLException, DataAccessException {
                     try (PreparedStatement ps = mapper.ids[0].isIdentityId() ? con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
@@ -447,7 +1543,7 @@ public class WarpDb {
                             for (AccessibleProperty prop : mapper.insertableProperties) {
                                 Object arg = prop.convertGetter.get(bean);
                                 n++;
-                                ps.setObject(n, arg);
+                                prop.columnBinder.bind(ps, n, arg);
                             }
                             ps.addBatch();
                         }
@@ -475,6 +1571,7 @@ public class WarpDb {
                     }
                 }
             });
+            markWrite();
             for (T bean : beans) {
                 mapper.postPersist.invoke(bean);
             }
@@ -516,6 +1613,10 @@ public class WarpDb {
     }
 
     private <T> boolean doInsert(boolean ignore, T bean) {
+        int shard = shardOf(bean);
+        if (!isCurrentShard(shard)) {
+            return withShard(shard, () -> doInsert(ignore, bean));
+        }
         try {
             int rows;
             final Mapper<?> mapper = getMapper(bean.getClass());
@@ -533,12 +1634,10 @@ public class WarpDb {
             if (mapper.ids[0].isIdentityId()) {
                 // using identityId:
                 KeyHolder keyHolder = new GeneratedKeyHolder();
-                rows = jdbcTemplate.update(new PreparedStatementCreator() {
+                rows = template().update(new PreparedStatementCreator() {
                     public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
                         PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-                        for (int i = 0; i < args.length; i++) {
-                            ps.setObject(i + 1, args[i]);
-                        }
+                        TypedArgumentSetter.bind(ps, mapper.insertBinders, args);
                         return ps;
                     }
                 }, keyHolder);
@@ -547,8 +1646,9 @@ public class WarpDb {
                 }
             } else {
                 // id is specified:
-                rows = jdbcTemplate.update(sql, args);
+                rows = template().update(sql, new TypedArgumentSetter(mapper.insertBinders, args));
             }
+            markWrite();
             mapper.postPersist.invoke(bean);
             return rows == 1;
         } catch (IllegalAccessException | InvocationTargetException e) {
@@ -564,7 +1664,9 @@ public class WarpDb {
      * @return int result of update.
      */
     public int updateSql(String sql, Object... args) {
-        return jdbcTemplate.update(sql, args);
+        int rows = template().update(sql, args);
+        markWrite();
+        return rows;
     }
 
     /**
@@ -580,7 +1682,7 @@ public class WarpDb {
             logger.debug("SQL: {}", sql);
         }
         Mapper<T> mapper = getMapper(sql);
-        List<T> list = jdbcTemplate.query(sql, mapper.rowMapper, args);
+        List<T> list = queryForBeans(mapper, sql, args);
         try {
             for (T bean : list) {
                 mapper.postLoad.invoke(bean);
@@ -605,7 +1707,7 @@ public class WarpDb {
             logger.debug("SQL: {}", sql);
         }
         Mapper<T> mapper = getMapper(clazz);
-        List<T> list = jdbcTemplate.query(sql, mapper.rowMapper, args);
+        List<T> list = queryForBeans(mapper, sql, args);
         try {
             for (T bean : list) {
                 mapper.postLoad.invoke(bean);
@@ -616,6 +1718,84 @@ public class WarpDb {
         return list;
     }
 
+    /**
+     * Execute query and return results as a stream backed by an open forward-only,
+     * read-only cursor. The stream must be closed after use, e.g. by
+     * try-with-resources.
+     * 
+     * @param <T>  Generic type.
+     * @param sql  The select SQL.
+     * @param args The arguments that match the SQL.
+     * @return Stream of object T.
+     */
+    public <T> Stream<T> stream(String sql, Object... args) {
+        Mapper<T> mapper = getMapper(sql);
+        return streamBeans(mapper, sql, args);
+    }
+
+    /**
+     * Execute query and return results as a stream backed by an open forward-only,
+     * read-only cursor. The stream must be closed after use, e.g. by
+     * try-with-resources.
+     * 
+     * @param <T>   Generic type.
+     * @param clazz Entity class.
+     * @param sql   Raw SQL.
+     * @param args  Arguments.
+     * @return Stream of entities.
+     */
+    public <T> Stream<T> stream(Class<T> clazz, String sql, Object... args) {
+        return streamBeans(getMapper(clazz), sql, args);
+    }
+
+    /**
+     * Execute query and publish results with backpressure. Each subscriber opens a
+     * forward-only, read-only cursor on one connection, rows are pulled only as
+     * requested, and the cursor is closed on completion, error or cancel. Rows are
+     * published on the async executor, outside the caller's transaction.
+     * 
+     * @param <T>  Generic type.
+     * @param sql  The select SQL.
+     * @param args The arguments that match the SQL.
+     * @return Publisher of object T.
+     */
+    public <T> Flow.Publisher<T> publish(String sql, Object... args) {
+        Mapper<T> mapper = getMapper(sql);
+        return publishBeans(mapper, sql, new ArgumentPreparedStatementSetter(args));
+    }
+
+    /**
+     * Execute query and publish results with backpressure. Each subscriber opens a
+     * forward-only, read-only cursor on one connection, rows are pulled only as
+     * requested, and the cursor is closed on completion, error or cancel. Rows are
+     * published on the async executor, outside the caller's transaction.
+     * 
+     * @param <T>   Generic type.
+     * @param clazz Entity class.
+     * @param sql   Raw SQL.
+     * @param args  Arguments.
+     * @return Publisher of entities.
+     */
+    public <T> Flow.Publisher<T> publish(Class<T> clazz, String sql, Object... args) {
+        return publishBeans(getMapper(clazz), sql, new ArgumentPreparedStatementSetter(args));
+    }
+
+    /**
+     * Execute query and pass each entity to consumer without loading all results
+     * into memory.
+     * 
+     * @param <T>      Generic type.
+     * @param clazz    Entity class.
+     * @param consumer Consumer of entity.
+     * @param sql      Raw SQL.
+     * @param args     Arguments.
+     */
+    public <T> void forEach(Class<T> clazz, Consumer<? super T> consumer, String sql, Object... args) {
+        try (Stream<T> stream = stream(clazz, sql, args)) {
+            stream.forEach(consumer);
+        }
+    }
+
     /**
      * Query for list by JdbcTemplate's RowMapper.
      * 
@@ -628,14 +1808,14 @@ public class WarpDb {
         if (logger.isDebugEnabled()) {
             logger.debug("SQL: {}", sql);
         }
-        return jdbcTemplate.query(sql, rowMapper, args);
+        return read(sql, (template) -> template.query(sql, rowMapper, args));
     }
 
     public Optional<Number> queryForNumber(String sql, Object... args) {
         if (logger.isDebugEnabled()) {
             logger.debug("SQL: {}", sql);
         }
-        Number number = jdbcTemplate.query(sql, NUMBER_RESULT_SET, args);
+        Number number = read(sql, (template) -> template.query(sql, NUMBER_RESULT_SET, args));
         return Optional.ofNullable(number);
     }
 
@@ -643,7 +1823,7 @@ public class WarpDb {
         if (logger.isDebugEnabled()) {
             logger.debug("SQL: {}", sql);
         }
-        Number number = jdbcTemplate.query(sql, NUMBER_RESULT_SET, args);
+        Number number = read(sql, (template) -> template.query(sql, NUMBER_RESULT_SET, args));
         if (number == null) {
             return OptionalLong.empty();
         }
@@ -654,7 +1834,7 @@ public class WarpDb {
         if (logger.isDebugEnabled()) {
             logger.debug("SQL: {}", sql);
         }
-        Number number = jdbcTemplate.query(sql, NUMBER_RESULT_SET, args);
+        Number number = read(sql, (template) -> template.query(sql, NUMBER_RESULT_SET, args));
         if (number == null) {
             return OptionalInt.empty();
         }
@@ -669,11 +1849,11 @@ public class WarpDb {
      * @param args The arguments.
      * @return Object.
      */
+    @SuppressWarnings("unchecked")
     public <T> T unique(String sql, Object... args) {
-        if (sql.toLowerCase().indexOf(" limit ") == (-1)) {
-            sql = sql + " limit 2";
-        }
-        List<T> list = list(sql, args);
+        RawSql raw = rawSql(sql);
+        sql = raw.uniqueSql;
+        List<T> list = listBeans((Mapper<T>) raw.mapper, sql, new ArgumentPreparedStatementSetter(args));
         if (list.isEmpty()) {
             throw new NoResultException("Empty result from SQL: " + sql);
         }
@@ -683,11 +1863,11 @@ public class WarpDb {
         return list.get(0);
     }
 
+    @SuppressWarnings("unchecked")
     public <T> T fetch(String sql, Object... args) {
-        if (sql.toLowerCase().indexOf(" limit ") == (-1)) {
-            sql = sql + " limit 2";
-        }
-        List<T> list = list(sql, args);
+        RawSql raw = rawSql(sql);
+        sql = raw.uniqueSql;
+        List<T> list = listBeans((Mapper<T>) raw.mapper, sql, new ArgumentPreparedStatementSetter(args));
         if (list.isEmpty()) {
             return null;
         }
@@ -713,7 +1893,7 @@ public class WarpDb {
      * @return Table name.
      */
     public String getTable(Class<?> clazz) {
-        Mapper<?> mapper = (Mapper<?>) this.classMapping.get(clazz);
+        Mapper<?> mapper = findMapper(clazz);
         if (mapper == null) {
             throw new RuntimeException("Target class is not a registered entity: " + clazz.getName());
         }
@@ -727,7 +1907,7 @@ public class WarpDb {
      * @return String array of fields.
      */
     public String[] getInsertableFields(Class<?> clazz) {
-        Mapper<?> mapper = (Mapper<?>) this.classMapping.get(clazz);
+        Mapper<?> mapper = findMapper(clazz);
         if (mapper == null) {
             throw new RuntimeException("Target class is not a registered entity: " + clazz.getName());
         }
@@ -743,7 +1923,7 @@ public class WarpDb {
      * @return Object array of values.
      */
     public <T> Object[] getInsertableValues(T bean) {
-        Mapper<?> mapper = (Mapper<?>) this.classMapping.get(bean.getClass());
+        Mapper<?> mapper = findMapper(bean.getClass());
         if (mapper == null) {
             throw new RuntimeException("Target class is not a registered entity: " + bean.getClass().getName());
         }
@@ -760,10 +1940,470 @@ public class WarpDb {
         return args;
     }
 
+    // query beans using the cached column plan of the row mapper:
+    <T> List<T> queryForBeans(Mapper<T> mapper, String sql, Object... args) {
+        ResultSetExtractor<List<T>> extractor = mapper.rowMapper;
+        return read(sql, (template) -> template.query(sql, extractor, args));
+    }
+
+    // query beans by mapper and typed parameters, and invoke postLoad:
+    <T> List<T> listBeans(Mapper<T> mapper, String sql, PreparedStatementSetter pss) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("SQL: {}", sql);
+        }
+        ResultSetExtractor<List<T>> extractor = mapper.rowMapper;
+        List<T> list = read(sql, (template) -> template.query(sql, pss, extractor));
+        try {
+            for (T bean : list) {
+                mapper.postLoad.invoke(bean);
+            }
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new PersistenceException(e);
+        }
+        return list;
+    }
+
+    // query for int by typed parameters:
+    OptionalInt queryForInt(String sql, PreparedStatementSetter pss) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("SQL: {}", sql);
+        }
+        Number number = read(sql, (template) -> template.query(sql, pss, NUMBER_RESULT_SET));
+        if (number == null) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(number.intValue());
+    }
+
+    // stream beans by forward-only, read-only cursor with fetch size:
+    <T> Stream<T> streamBeans(Mapper<T> mapper, String sql, Object... args) {
+        return streamBeans(mapper, sql, new ArgumentPreparedStatementSetter(args));
+    }
+
+    <T> Stream<T> streamBeans(Mapper<T> mapper, String sql, PreparedStatementSetter pss) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("SQL: {}", sql);
+        }
+        PreparedStatementCreator psc = new CursorStatementCreator(sql, this.fetchSize);
+        RowMapper<T> rowMapper = mapper.rowMapper.cursorRowMapper(mapper.postLoad);
+        JdbcTemplate shard = this.currentShard.get();
+        if (shard != null) {
+            return shard.queryForStream(psc, pss, rowMapper);
+        }
+        ReplicaRouter router = this.replicaRouter;
+        if (router == null || readFromPrimary(sql)) {
+            return jdbcTemplate.queryForStream(psc, pss, rowMapper);
+        }
+        // replica is in flight until stream closed:
+        int index = router.acquire();
+        try {
+            return router.replicas[index].queryForStream(psc, pss, rowMapper).onClose(() -> router.release(index));
+        } catch (RuntimeException e) {
+            router.release(index);
+            throw e;
+        }
+    }
+
+    // run query on a replica, or hedged across replicas if enabled, or on primary
+    // if no replica or must read from primary:
+    <R> R read(String sql, Function<JdbcTemplate, R> query) {
+        JdbcTemplate shard = this.currentShard.get();
+        if (shard != null) {
+            return query.apply(shard);
+        }
+        ReplicaRouter router = this.replicaRouter;
+        if (router == null || readFromPrimary(sql)) {
+            return query.apply(this.jdbcTemplate);
+        }
+        HedgedReader reader = this.hedgedReader;
+        if (reader != null && router.replicas.length > 1) {
+            return reader.read(hedgeExecutor(), router, query);
+        }
+        int index = router.acquire();
+        try {
+            return query.apply(router.replicas[index]);
+        } finally {
+            router.release(index);
+        }
+    }
+
+    // read from primary if in transaction, in withPrimary(), within
+    // read-your-writes window, or a locking read:
+    boolean readFromPrimary(String sql) {
+        if (TransactionSynchronizationManager.isActualTransactionActive() || this.primaryScope.get()[0] > 0) {
+            return true;
+        }
+        WriteWindow window = this.writeWindow.get();
+        if (window != null) {
+            if (window.pendingWrites.get() > 0 || System.currentTimeMillis() - window.lastWriteTime < this.readYourWritesMillis) {
+                return true;
+            }
+            this.writeWindow.remove();
+        }
+        return ReplicaRouter.isLockingRead(sql);
+    }
+
+    // start read-your-writes window of current thread, or after commit if in
+    // transaction:
+    void markWrite() {
+        if (this.replicaRouter == null || this.readYourWritesMillis <= 0) {
+            return;
+        }
+        writeWindow().lastWriteTime = System.currentTimeMillis();
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !TransactionSynchronizationManager.hasResource(this.writeWindow)) {
+            TransactionSynchronizationManager.bindResource(this.writeWindow, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(writeWindow);
+                    writeWindow().lastWriteTime = System.currentTimeMillis();
+                }
+            });
+        }
+    }
+
+    // open read-your-writes window of current thread for an async write running
+    // on other thread, and return callback to restart the window when the write
+    // completes:
+    Runnable markAsyncWrite() {
+        if (this.replicaRouter == null || this.readYourWritesMillis <= 0) {
+            return () -> {
+            };
+        }
+        WriteWindow window = writeWindow();
+        window.pendingWrites.incrementAndGet();
+        return () -> {
+            window.lastWriteTime = System.currentTimeMillis();
+            window.pendingWrites.decrementAndGet();
+        };
+    }
+
+    WriteWindow writeWindow() {
+        WriteWindow window = this.writeWindow.get();
+        if (window == null) {
+            window = new WriteWindow();
+            this.writeWindow.set(window);
+        }
+        return window;
+    }
+
+    /**
+     * Capture routing of current thread and return action which runs with it on
+     * other thread: the read-your-writes window, withPrimary() scope and shard.
+     * Writes of the action also start the window of current thread.
+     */
+    <R> Supplier<R> withCallerRouting(Supplier<R> action) {
+        WriteWindow window = this.replicaRouter == null ? null : writeWindow();
+        boolean primary = this.primaryScope.get()[0] > 0;
+        JdbcTemplate shard = this.currentShard.get();
+        return () -> {
+            WriteWindow workerWindow = this.writeWindow.get();
+            JdbcTemplate workerShard = this.currentShard.get();
+            int[] depth = this.primaryScope.get();
+            if (window == null) {
+                this.writeWindow.remove();
+            } else {
+                this.writeWindow.set(window);
+            }
+            setCurrentShard(shard);
+            if (primary) {
+                depth[0]++;
+            }
+            try {
+                return action.get();
+            } finally {
+                if (primary) {
+                    depth[0]--;
+                }
+                setCurrentShard(workerShard);
+                if (workerWindow == null) {
+                    this.writeWindow.remove();
+                } else {
+                    this.writeWindow.set(workerWindow);
+                }
+            }
+        };
+    }
+
+    <T> Flow.Publisher<T> publishBeans(Mapper<T> mapper, String sql, PreparedStatementSetter pss) {
+        return new RowPublisher<>(async()::execute, withCallerRouting(() -> streamBeans(mapper, sql, pss)));
+    }
+
+    // JdbcTemplate of current shard, or primary:
+    JdbcTemplate template() {
+        JdbcTemplate shard = this.currentShard.get();
+        return shard == null ? this.jdbcTemplate : shard;
+    }
+
+    // shard index of bean, or PRIMARY if not sharded:
+    int shardOf(Object bean) {
+        ShardRouter router = this.shardRouter;
+        return router == null ? ShardRouter.PRIMARY : router.shardOf(getMapper(bean.getClass()), bean);
+    }
+
+    boolean isCurrentShard(int shard) {
+        JdbcTemplate current = this.currentShard.get();
+        if (shard == ShardRouter.PRIMARY) {
+            return current == null;
+        }
+        return current == this.shardRouter.shards[shard];
+    }
+
+    // run action with current thread bound to shard, or primary if PRIMARY:
+    <R> R withShard(int shard, Supplier<R> action) {
+        JdbcTemplate current = this.currentShard.get();
+        setCurrentShard(shard == ShardRouter.PRIMARY ? null : this.shardRouter.shards[shard]);
+        try {
+            return action.get();
+        } finally {
+            setCurrentShard(current);
+        }
+    }
+
+    // bind current thread to shard, or primary if null:
+    void setCurrentShard(JdbcTemplate shard) {
+        if (shard == null) {
+            this.currentShard.remove();
+        } else {
+            this.currentShard.set(shard);
+        }
+    }
+
+    void withShard(int shard, Runnable action) {
+        withShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // group beans by shard, or null if all beans are on current shard:
+    <T> Map<Integer, List<T>> groupByShard(List<T> beans) {
+        if (this.shardRouter == null) {
+            return null;
+        }
+        Map<Integer, List<T>> groups = new LinkedHashMap<>();
+        for (T bean : beans) {
+            groups.computeIfAbsent(shardOf(bean), (key) -> {
+                return new ArrayList<>();
+            }).add(bean);
+        }
+        if (groups.size() == 1 && isCurrentShard(groups.keySet().iterator().next())) {
+            return null;
+        }
+        return groups;
+    }
+
+    // run action on each shard group in parallel and wait for all:
+    <T> void forEachShard(Map<Integer, List<T>> groups, Consumer<List<T>> action) {
+        List<CompletableFuture<Void>> futures = submitToShards(groups.keySet(), (shard) -> {
+            action.accept(groups.get(shard));
+            return null;
+        });
+        RuntimeException error = null;
+        List<Object> conflicts = new ArrayList<>();
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof VersionConflictException) {
+                    conflicts.addAll(((VersionConflictException) cause).getEntities());
+                } else if (error == null) {
+                    error = cause instanceof RuntimeException ? (RuntimeException) cause : new PersistenceException(cause);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (!conflicts.isEmpty()) {
+            throw new VersionConflictException(conflicts.size() + " entities were updated or deleted by another transaction.", conflicts);
+        }
+    }
+
+    // open cursor on each shard in parallel and merge rows of sorted cursors:
+    <T> Stream<T> scatter(Mapper<T> mapper, String sql, Object[] params, Comparator<? super T> comparator) {
+        List<Integer> shards = IntStream.range(0, this.shardRouter.shards.length).boxed().collect(Collectors.toList());
+        List<CompletableFuture<Stream<T>>> futures = submitToShards(shards, (shard) -> {
+            return streamBeans(mapper, sql, params);
+        });
+        List<Stream<T>> streams = new ArrayList<>(futures.size());
+        RuntimeException error = null;
+        for (CompletableFuture<Stream<T>> future : futures) {
+            try {
+                streams.add(future.join());
+            } catch (CompletionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new PersistenceException(e.getCause());
+                }
+            }
+        }
+        if (error != null) {
+            // close cursors already opened:
+            closeAll(streams);
+            throw error;
+        }
+        List<Iterator<T>> iterators = streams.stream().map(Stream::iterator).collect(Collectors.toList());
+        Iterator<T> merged = new ShardMergeIterator<>(iterators, comparator);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeAll(streams));
+    }
+
+    <T> void closeAll(List<Stream<T>> streams) {
+        RuntimeException error = null;
+        for (Stream<T> stream : streams) {
+            try {
+                stream.close();
+            } catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // run action on each shard in parallel and sum results:
+    int scatterSum(Supplier<Integer> action) {
+        Map<Integer, List<Object>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < this.shardRouter.shards.length; i++) {
+            groups.put(i, List.of());
+        }
+        AtomicLong total = new AtomicLong();
+        forEachShard(groups, (unused) -> {
+            total.addAndGet(action.get());
+        });
+        return Math.toIntExact(total.get());
+    }
+
+    // run task bound to each shard on shard executor. Tasks run one by one on
+    // current thread if only one shard, in transaction so writes join it, or
+    // already in a shard task so the bounded executor never waits for itself:
+    <R> List<CompletableFuture<R>> submitToShards(Collection<Integer> shards, Function<Integer, R> task) {
+        boolean sequential = shards.size() == 1 || TransactionSynchronizationManager.isActualTransactionActive()
+                || this.inShardTask.get() != null;
+        Executor executor = sequential ? null : shardExecutor();
+        List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+        for (Integer shard : shards) {
+            if (sequential) {
+                CompletableFuture<R> future = new CompletableFuture<>();
+                try {
+                    future.complete(withShard(shard, () -> task.apply(shard)));
+                } catch (RuntimeException | Error e) {
+                    future.completeExceptionally(e);
+                }
+                futures.add(future);
+            } else {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    this.inShardTask.set(Boolean.TRUE);
+                    try {
+                        return withShard(shard, () -> task.apply(shard));
+                    } finally {
+                        this.inShardTask.remove();
+                    }
+                }, executor));
+            }
+        }
+        return futures;
+    }
+
+    static final class CursorStatementCreator implements PreparedStatementCreator, SqlProvider {
+
+        final String sql;
+        final int fetchSize;
+
+        CursorStatementCreator(String sql, int fetchSize) {
+            this.sql = sql;
+            this.fetchSize = fetchSize;
+        }
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+            PreparedStatement ps = con.prepareStatement(this.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(this.fetchSize);
+            return ps;
+        }
+
+        @Override
+        public String getSql() {
+            return this.sql;
+        }
+    }
+
+    // execute update or delete with typed values:
+    int executeUpdate(String sql, ColumnBinder[] binders, Object[] values) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("SQL: {}", sql);
+        }
+        int rows = template().update(sql, new TypedArgumentSetter(binders, values));
+        markWrite();
+        return rows;
+    }
+
+    // estimated number of rows of table, or empty if not available:
+    OptionalInt estimateCount(Mapper<?> mapper) {
+        if (this.estimateDisabled) {
+            return OptionalInt.empty();
+        }
+        String sql = this.estimatedCountSql;
+        if (sql == null) {
+            sql = estimatedCountSqlOf(databaseProductName());
+            if (sql == null) {
+                logger.info("CountMode.ESTIMATED is not supported by database, fallback to exact count.");
+                this.estimateDisabled = true;
+                return OptionalInt.empty();
+            }
+            this.estimatedCountSql = sql;
+        }
+        String table = mapper.tableName.substring(mapper.tableName.lastIndexOf('.') + 1);
+        try {
+            OptionalInt n = queryForInt(sql, table);
+            // PostgreSQL returns -1 if table was never analyzed:
+            return n.isPresent() && n.getAsInt() < 0 ? OptionalInt.empty() : n;
+        } catch (DataAccessException e) {
+            logger.warn("Query estimated count failed, fallback to exact count: {}", e.getMessage());
+            this.estimateDisabled = true;
+            return OptionalInt.empty();
+        }
+    }
+
+    Keyset.NullOrdering nullOrdering() {
+        Keyset.NullOrdering ordering = this.nullOrdering;
+        if (ordering == null) {
+            ordering = Keyset.NullOrdering.of(databaseProductName());
+            this.nullOrdering = ordering;
+        }
+        return ordering;
+    }
+
+    String databaseProductName() {
+        try {
+            return this.jdbcTemplate.execute((ConnectionCallback<String>) (conn) -> {
+                return conn.getMetaData().getDatabaseProductName();
+            });
+        } catch (DataAccessException e) {
+            logger.warn("Cannot get database product name: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    static String estimatedCountSqlOf(String product) {
+        String name = product == null ? "" : product.toLowerCase();
+        if (name.contains("mysql") || name.contains("mariadb")) {
+            return "SELECT TABLE_ROWS FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+        }
+        if (name.contains("postgresql")) {
+            return "SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE oid = to_regclass(?)";
+        }
+        return null;
+    }
+
     // get mapper by class:
     @SuppressWarnings("unchecked")
     <T> Mapper<T> getMapper(Class<T> clazz) {
-        Mapper<T> mapper = (Mapper<T>) this.classMapping.get(clazz);
+        Mapper<T> mapper = (Mapper<T>) findMapper(clazz);
         if (mapper == null) {
             throw new RuntimeException("Target class is not a registered entity: " + clazz.getName());
         }
@@ -783,23 +2423,27 @@ public class WarpDb {
     // get Mapper from SQL like "select * from abc where ..."
     @SuppressWarnings("unchecked")
     <T> Mapper<T> getMapper(String sql) {
-        String[] ss = sql.split("\\s+");
-        for (int i = 0; i < ss.length; i++) {
-            if (ss[i].toLowerCase().equals("from")) {
-                if (i < ss.length - 1) {
-                    String table = ss[i + 1];
-                    if (table.length() > 2 && table.startsWith("`") && table.endsWith("`")) {
-                        table = table.substring(1, table.length() - 1);
-                    }
-                    Mapper<T> mapper = (Mapper<T>) this.tableMapping.get(table.toLowerCase());
-                    if (mapper == null) {
-                        throw new RuntimeException("Cannot find mapping for table: " + table);
-                    }
-                    return mapper;
-                }
+        return (Mapper<T>) rawSql(sql).mapper;
+    }
+
+    // parse SQL and resolve mapper, cached by SQL:
+    RawSql rawSql(String sql) {
+        return this.sqlCache.computeIfAbsent(sql, (key) -> {
+            String table = RawSql.parseTable(key);
+            if (table == null) {
+                throw new RuntimeException("Cannot parse entity name from SQL: " + key);
             }
-        }
-        throw new RuntimeException("Cannot parse entity name from SQL: " + sql);
+            LazyMapper mapper = this.tableMapping.get(table.toLowerCase());
+            int pos = table.lastIndexOf('.');
+            if (mapper == null && pos >= 0) {
+                // try table name without schema:
+                mapper = this.tableMapping.get(table.substring(pos + 1).toLowerCase());
+            }
+            if (mapper == null) {
+                throw new RuntimeException("Cannot find mapping for table: " + table);
+            }
+            return new RawSql(mapper.get(), key, RawSql.hasLimit(key));
+        });
     }
 
     static final RowMapper<Number> NUMBER_ROW_MAPPER = new RowMapper<>() {
@@ -818,52 +2462,14 @@ public class WarpDb {
             return null;
         }
     };
-}
-
-class BeanRowMapper<T> implements RowMapper<T> {
 
-    // columnName -> property:
-    final Map<String, AccessibleProperty> mapping;
-    final Function<Void, T> constructor;
-
-    BeanRowMapper(Class<T> clazz, List<AccessibleProperty> properties) {
-        Map<String, AccessibleProperty> mapping = new HashMap<>();
-        for (AccessibleProperty p : properties) {
-            mapping.put(p.columnName.toLowerCase(), p);
-        }
-        this.mapping = mapping;
-        try {
-            Constructor<T> constructor = clazz.getDeclaredConstructor();
-            constructor.setAccessible(true);
-            this.constructor = (Void) -> {
-                try {
-                    return constructor.newInstance();
-                } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                    throw new RuntimeException(e);
-                }
-            };
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        }
-    }
+    /**
+     * Read-your-writes window of a thread, which is kept open while its async
+     * writes are running.
+     */
+    static final class WriteWindow {
 
-    @Override
-    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
-        T bean = this.constructor.apply(null);
-        ResultSetMetaData meta = rs.getMetaData();
-        int count = meta.getColumnCount();
-        try {
-            for (int i = 1; i <= count; i++) {
-                String name = meta.getColumnName(i);
-                AccessibleProperty prop = this.mapping.get(name.toLowerCase());
-                if (prop != null) {
-                    Object value = rs.getObject(i);
-                    prop.convertSetter.set(bean, value);
-                }
-            }
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
-        return bean;
+        volatile long lastWriteTime = 0;
+        final AtomicInteger pendingWrites = new AtomicInteger();
     }
 }
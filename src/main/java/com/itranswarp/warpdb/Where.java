@@ -1,14 +1,12 @@
 package com.itranswarp.warpdb;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import jakarta.persistence.AttributeConverter;
 
@@ -25,6 +23,7 @@ public final class Where<T> extends CriteriaQuery<T> {
         super(criteria);
         this.criteria.where = new ArrayList<>();
         this.criteria.whereParams = new ArrayList<>();
+        this.criteria.whereProperties = new ArrayList<>();
         append(null, clause, params);
     }
 
@@ -61,6 +60,9 @@ public final class Where<T> extends CriteriaQuery<T> {
         for (Object param : params) {
             this.criteria.whereParams.add(param);
         }
+        for (AccessibleProperty prop : cc.properties) {
+            this.criteria.whereProperties.add(prop);
+        }
         return this;
     }
 
@@ -83,6 +85,27 @@ public final class Where<T> extends CriteriaQuery<T> {
         return new OrderBy<>(this.criteria, orderBy);
     }
 
+    /**
+     * Set property value for bulk update.
+     * 
+     * @param property Property name.
+     * @param value    Property value, which is converted by converter if present.
+     * @return Update object.
+     */
+    public Update<T> set(String property, Object value) {
+        return new Update<>(this.criteria).set(property, value);
+    }
+
+    /**
+     * Delete all rows matching the where clause without loading entities. NOTE
+     * entity listeners are not invoked.
+     * 
+     * @return Number of deleted rows.
+     */
+    public int delete() {
+        return this.criteria.delete();
+    }
+
     /**
      * Get all results as list.
      * 
@@ -92,6 +115,47 @@ public final class Where<T> extends CriteriaQuery<T> {
         return this.criteria.list();
     }
 
+    /**
+     * Get all results as a stream backed by an open cursor. The stream must be
+     * closed after use.
+     * 
+     * @return Stream of object T.
+     */
+    public Stream<T> stream() {
+        return this.criteria.stream();
+    }
+
+    /**
+     * Pass each result to consumer without loading all results into memory.
+     * 
+     * @param consumer Consumer of object T.
+     */
+    public void forEach(Consumer<? super T> consumer) {
+        this.criteria.forEach(consumer);
+    }
+
+    /**
+     * Publish results with backpressure. Each subscriber opens a cursor on one
+     * connection, rows are pulled only as requested, and the cursor is closed on
+     * completion, error or cancel. Rows are published on the async executor,
+     * outside the caller's transaction.
+     * 
+     * @return Publisher of object T.
+     */
+    public Flow.Publisher<T> publish() {
+        return this.criteria.publish();
+    }
+
+    /**
+     * Compile the query into an immutable PreparedQuery which can be executed
+     * many times with new arguments.
+     * 
+     * @return PreparedQuery object.
+     */
+    public PreparedQuery<T> prepare() {
+        return this.criteria.prepare();
+    }
+
     /**
      * Do page query using default items per page.
      * 
@@ -113,6 +177,18 @@ public final class Where<T> extends CriteriaQuery<T> {
         return this.criteria.list(pageIndex, itemsPerPage);
     }
 
+    /**
+     * Do page query with count mode.
+     * 
+     * @param pageIndex    Page index, starts from 1.
+     * @param itemsPerPage Page size.
+     * @param countMode    How the total is counted.
+     * @return PagedResults object.
+     */
+    public PagedResults<T> list(int pageIndex, int itemsPerPage, CountMode countMode) {
+        return this.criteria.list(pageIndex, itemsPerPage, countMode);
+    }
+
     /**
      * Get count as int.
      * 
@@ -143,77 +219,44 @@ public final class Where<T> extends CriteriaQuery<T> {
     public T unique() {
         return this.criteria.unique();
     }
-}
-
-class CompiledClause {
 
-    static final Map<String, CompiledClause> CACHE = new ConcurrentHashMap<>();
-
-    static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("and", "or", "like", "is", "not"));
-
-    static final Pattern p = Pattern.compile("[a-z\\_][a-z0-9\\_]*");
-
-    final String clause;
-    final AttributeConverter<Object, Object>[] converters;
+    /**
+     * Get all results as list asynchronously. The query runs outside the caller's
+     * transaction.
+     * 
+     * @return CompletableFuture of list.
+     */
+    public CompletableFuture<List<T>> listAsync() {
+        return this.criteria.listAsync();
+    }
 
-    CompiledClause(String clause, AttributeConverter<Object, Object>[] converters) {
-        this.clause = clause;
-        this.converters = converters;
+    /**
+     * Get count asynchronously. The query runs outside the caller's transaction.
+     * 
+     * @return CompletableFuture of count.
+     */
+    public CompletableFuture<Integer> countAsync() {
+        return this.criteria.countAsync();
     }
 
-    static CompiledClause compile(Mapper<?> mapper, String clause) {
-        String key = mapper.entityClass.getName() + "\n" + clause;
-        CompiledClause cc = CACHE.get(key);
-        if (cc == null) {
-            cc = doCompile(mapper, clause);
-            CACHE.put(key, cc);
-        }
-        return cc;
-    }
-
-    @SuppressWarnings("unchecked")
-    static CompiledClause doCompile(Mapper<?> mapper, String clause) {
-        Map<String, AccessibleProperty> properties = mapper.allPropertiesMap;
-        StringBuilder sb = new StringBuilder(clause.length() + 10);
-        List<AttributeConverter<Object, Object>> list = new ArrayList<>();
-        int start = 0;
-        Matcher m = p.matcher(clause.toLowerCase());
-        while (m.find()) {
-            sb.append(clause.substring(start, m.start()));
-            String s = clause.substring(m.start(), m.end());
-            String sl = s.toLowerCase();
-            if (properties.containsKey(sl)) {
-                AccessibleProperty ap = properties.get(sl);
-                sb.append(ap.columnName);
-                list.add(ap.converter);
-            } else {
-                if (sl.equals("between")) {
-                    list.add(list.get(list.size() - 1));
-                } else if (sl.equals("null")) {
-                    list.remove(list.size() - 1);
-                } else {
-                    if (!KEYWORDS.contains(sl)) {
-                        throw new IllegalArgumentException("Invalid string \"" + s + "\" found in clause: " + clause);
-                    }
-                }
-                sb.append(s);
-            }
-            start = m.end();
-        }
-        sb.append(clause.substring(start));
-        if (list.size() != numOfPlaceholder(clause)) {
-            throw new IllegalArgumentException("Invalid number of placeholder.");
-        }
-        return new CompiledClause(sb.toString(), list.toArray(new AttributeConverter[0]));
+    /**
+     * Get first row of the query asynchronously, completed with null if no result
+     * found. The query runs outside the caller's transaction.
+     * 
+     * @return CompletableFuture of object T.
+     */
+    public CompletableFuture<T> firstAsync() {
+        return this.criteria.firstAsync();
     }
 
-    static int numOfPlaceholder(String s) {
-        int n = 0;
-        for (int i = 0; i < s.length(); i++) {
-            if (s.charAt(i) == '?') {
-                n++;
-            }
-        }
-        return n;
+    /**
+     * Get unique result of the query asynchronously, completed exceptionally if
+     * no result found or more than 1 results found. The query runs outside the
+     * caller's transaction.
+     * 
+     * @return CompletableFuture of object T.
+     */
+    public CompletableFuture<T> uniqueAsync() {
+        return this.criteria.uniqueAsync();
     }
 }
@@ -0,0 +1,129 @@
+package com.itranswarp.warpdb.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.itranswarp.warpdb.util.ClassUtils;
+
+/**
+ * Annotation processor which generates entity index file
+ * "META-INF/warpdb.entities" listing all @Entity classes at build time, so
+ * WarpDb.init() can load entities without classpath scanning.
+ * 
+ * Entries of an existing index in the class output are kept for incremental
+ * builds, unless the class was compiled again or no longer exists.
+ * 
+ * The processor is not registered as service. Enable it by the
+ * annotationProcessors / annotationProcessorPaths configuration of
+ * maven-compiler-plugin, or by javac option "-processor".
+ * 
+ * @author liaoxuefeng
+ */
+@SupportedAnnotationTypes("jakarta.persistence.Entity")
+public class EntityIndexProcessor extends AbstractProcessor {
+
+    final Set<String> entities = new TreeSet<>();
+
+    // comment: binary names of all classes compiled in this build:
+    final Set<String> processedTypes = new HashSet<>();
+
+    // comment: entries of index written by previous build:
+    final Set<String> previousEntities = new TreeSet<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        readIndex();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getRootElements()) {
+            addProcessedTypes(element);
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    this.entities.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+                }
+            }
+        }
+        if (roundEnv.processingOver()) {
+            mergePreviousEntities();
+            if (!this.entities.isEmpty() || !this.previousEntities.isEmpty()) {
+                writeIndex();
+            }
+        }
+        return false;
+    }
+
+    void addProcessedTypes(Element element) {
+        if (element instanceof TypeElement) {
+            this.processedTypes.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+            for (Element enclosed : element.getEnclosedElements()) {
+                addProcessedTypes(enclosed);
+            }
+        }
+    }
+
+    void mergePreviousEntities() {
+        for (String entity : this.previousEntities) {
+            // comment: canonical name is required by getTypeElement():
+            if (!this.processedTypes.contains(entity) && processingEnv.getElementUtils().getTypeElement(entity.replace('$', '.')) != null) {
+                this.entities.add(entity);
+            }
+        }
+    }
+
+    void readIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ClassUtils.ENTITY_INDEX);
+            try (BufferedReader reader = new BufferedReader(file.openReader(true))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.strip();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        this.previousEntities.add(line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // comment: no previous index:
+        }
+    }
+
+    void writeIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ClassUtils.ENTITY_INDEX);
+            try (Writer writer = file.openWriter()) {
+                for (String entity : this.entities) {
+                    writer.write(entity);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Write " + ClassUtils.ENTITY_INDEX + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.itranswarp.warpdb.util;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import jakarta.persistence.Entity;
 
@@ -13,6 +21,67 @@ import org.springframework.core.type.filter.AnnotationTypeFilter;
 
 public final class ClassUtils {
 
+	/**
+	 * Resource name of entity index generated by EntityIndexProcessor.
+	 */
+	public static final String ENTITY_INDEX = "META-INF/warpdb.entities";
+
+	/**
+	 * Load @Entity classes in base packages from entity index files.
+	 * 
+	 * @param classLoader
+	 *            class loader to load index files and classes.
+	 * @param basePackages
+	 *            base package names, or empty to load all indexed entities.
+	 * @return List of entity class, or null if no index file found.
+	 */
+	public static List<Class<?>> loadIndexedEntities(ClassLoader classLoader, String... basePackages) {
+		Set<String> names = new TreeSet<>();
+		boolean found = false;
+		try {
+			Enumeration<URL> urls = classLoader.getResources(ENTITY_INDEX);
+			while (urls.hasMoreElements()) {
+				found = true;
+				try (BufferedReader reader = new BufferedReader(
+						new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						line = line.strip();
+						if (!line.isEmpty() && !line.startsWith("#") && inPackages(line, basePackages)) {
+							names.add(line);
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (!found) {
+			return null;
+		}
+		List<Class<?>> classes = new ArrayList<>(names.size());
+		for (String name : names) {
+			try {
+				classes.add(Class.forName(name, true, classLoader));
+			} catch (ClassNotFoundException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return classes;
+	}
+
+	static boolean inPackages(String className, String... basePackages) {
+		if (basePackages.length == 0) {
+			return true;
+		}
+		for (String basePackage : basePackages) {
+			if (className.startsWith(basePackage + ".")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Scan @Entity classes in base packages.
 	 * 
@@ -0,0 +1,164 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.User;
+
+/**
+ * Compare generated / lambda accessors with reflection accessors. The benchmark
+ * is tagged "benchmark" and excluded from default test run, run it by:
+ *
+ * mvn test -Dtest=AccessorsBenchmarkTest -Dsurefire.excludedGroups=
+ */
+public class AccessorsBenchmarkTest {
+
+    static final int ROUNDS = 5;
+    static final int LOOPS = 2_000_000;
+
+    @Test
+    public void testFieldAccessors() throws Throwable {
+        Field f = User.class.getField("name");
+        User user = new User();
+        Accessors.generatedSetter(f).set(user, "Bob");
+        assertEquals("Bob", Accessors.generatedGetter(f).get(user));
+        Accessors.reflectSetter(f).set(user, "Alice");
+        assertEquals("Alice", Accessors.reflectGetter(f).get(user));
+        // long field accepts widening like Field.set():
+        Field createdAt = User.class.getField("createdAt");
+        Accessors.generatedSetter(createdAt).set(user, Integer.valueOf(123));
+        assertEquals(123L, user.createdAt);
+        // private field:
+        Field age = User.class.getDeclaredField("age");
+        Accessors.generatedSetter(age).set(user, 18);
+        assertEquals(18, user.getAge());
+        assertEquals(18, Accessors.generatedGetter(age).get(user));
+    }
+
+    @Test
+    public void testMethodAccessors() throws Throwable {
+        Method getter = User.class.getMethod("getAge");
+        Method setter = User.class.getMethod("setAge", int.class);
+        User user = new User();
+        Accessors.generatedSetter(getter, setter).set(user, 20);
+        assertEquals(20, Accessors.generatedGetter(getter, setter).get(user));
+        // int property accepts widening like Method.invoke():
+        Accessors.generatedSetter(getter, setter).set(user, Short.valueOf((short) 30));
+        assertEquals(30, user.getAge());
+        Accessors.reflectSetter(setter).set(user, 40);
+        assertEquals(40, Accessors.reflectGetter(getter).get(user));
+    }
+
+    @Test
+    public void testNarrowingRejected() throws Throwable {
+        User user = new User();
+        Field age = User.class.getDeclaredField("age");
+        // long into int field throws like Field.set():
+        assertThrows(IllegalArgumentException.class, () -> {
+            Accessors.generatedSetter(age).set(user, Long.valueOf(1L << 33));
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            Accessors.generatedSetter(age).set(user, Double.valueOf(1.5));
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            Accessors.generatedSetter(age).set(user, null);
+        });
+        Method getter = User.class.getMethod("getAge");
+        Method setter = User.class.getMethod("setAge", int.class);
+        assertThrows(IllegalArgumentException.class, () -> {
+            Accessors.generatedSetter(getter, setter).set(user, Long.valueOf(5));
+        });
+        assertEquals(0, user.getAge());
+    }
+
+    @Test
+    public void testAccessorNotWrapped() throws Throwable {
+        Accessors.PropertyAccessor name = Accessors.accessor(User.class.getField("name"));
+        Accessors.PropertyAccessor email = Accessors.accessor(User.class.getField("email"));
+        // generated class is used directly, one class per property:
+        assertSame(name.getter, name.setter);
+        assertNotEquals(name.getter.getClass(), email.getter.getClass());
+        Accessors.PropertyAccessor age = Accessors.accessor(User.class.getMethod("getAge"), User.class.getMethod("setAge", int.class));
+        assertSame(age.getter, age.primitiveSetter);
+    }
+
+    /**
+     * Each strategy is measured by its own loop so that the JIT profile of one
+     * call site is not polluted by other strategies. Results are consumed by a
+     * checksum so loops are not eliminated.
+     */
+    @Test
+    @Tag("benchmark")
+    public void benchmarkAccessors() throws Throwable {
+        Field f = User.class.getField("name");
+        Method getter = User.class.getMethod("getAge");
+        Method setter = User.class.getMethod("setAge", int.class);
+        PropertyGetter fieldReflectGetter = Accessors.reflectGetter(f);
+        PropertySetter fieldReflectSetter = Accessors.reflectSetter(f);
+        PropertyGetter fieldGeneratedGetter = Accessors.generatedGetter(f);
+        PropertySetter fieldGeneratedSetter = Accessors.generatedSetter(f);
+        PropertyGetter methodReflectGetter = Accessors.reflectGetter(getter);
+        PropertySetter methodReflectSetter = Accessors.reflectSetter(setter);
+        PropertyGetter methodGeneratedGetter = Accessors.generatedGetter(getter, setter);
+        PropertySetter methodGeneratedSetter = Accessors.generatedSetter(getter, setter);
+        Supplier<User> reflectConstructor = Accessors.reflectConstructor(User.class);
+        Supplier<User> lambdaConstructor = Accessors.lambdaConstructor(User.class);
+        String[] names = { "Bob", "Alice", "Tom", "Jerry" };
+        User user = new User();
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean report = round == ROUNDS - 1;
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                fieldReflectSetter.set(user, names[i & 3]);
+                sink += fieldReflectGetter.get(user).hashCode();
+            }
+            report(report, "field/reflection", start);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                fieldGeneratedSetter.set(user, names[i & 3]);
+                sink += fieldGeneratedGetter.get(user).hashCode();
+            }
+            report(report, "field/generated", start);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                methodReflectSetter.set(user, i);
+                sink += (Integer) methodReflectGetter.get(user);
+            }
+            report(report, "method/reflection", start);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                methodGeneratedSetter.set(user, i);
+                sink += (Integer) methodGeneratedGetter.get(user);
+            }
+            report(report, "method/generated", start);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                sink += reflectConstructor.get().hashCode();
+            }
+            report(report, "constructor/reflection", start);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOPS; i++) {
+                sink += lambdaConstructor.get().hashCode();
+            }
+            report(report, "constructor/lambda", start);
+        }
+        System.out.println("checksum: " + sink);
+        assertEquals(LOOPS - 1, user.getAge());
+    }
+
+    void report(boolean report, String name, long start) {
+        if (report) {
+            System.out.printf("%s: %.2f ns/op%n", name, (double) (System.nanoTime() - start) / LOOPS);
+        }
+    }
+}
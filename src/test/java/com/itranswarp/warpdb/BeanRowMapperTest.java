@@ -0,0 +1,87 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.User;
+
+public class BeanRowMapperTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        for (int i = 0; i < 10; i++) {
+            User u = new User();
+            u.id = "U" + i;
+            u.name = "Mr " + i;
+            u.email = "u" + i + "@somewhere.org";
+            u.tag = "T" + i;
+            warpdb.insert(u);
+        }
+    }
+
+    @Test
+    public void testPlanCachedByResultShape() {
+        BeanRowMapper<User> rowMapper = warpdb.getMapper(User.class).rowMapper;
+        List<User> list1 = warpdb.from(User.class).orderBy("id").list();
+        List<User> list2 = warpdb.from(User.class).where("id>=?", "U5").list();
+        assertEquals(10, list1.size());
+        assertEquals(5, list2.size());
+        assertEquals("T0", list1.get(0).tag);
+        assertEquals(1, rowMapper.plans.size());
+        // different columns:
+        List<User> list3 = warpdb.select("name", "tag").from(User.class).orderBy("id").list();
+        assertEquals(10, list3.size());
+        assertEquals("Mr 0", list3.get(0).name);
+        assertEquals("T0", list3.get(0).tag);
+        assertNull(list3.get(0).id);
+        assertEquals(2, rowMapper.plans.size());
+    }
+
+    @Test
+    public void testMapRowByJdbcTemplate() {
+        List<User> list = warpdb.queryForList(warpdb.getRowMapper(User.class), "SELECT * FROM User ORDER BY id");
+        assertEquals(10, list.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("U" + i, list.get(i).id);
+            assertEquals("u" + i + "@somewhere.org", list.get(i).email);
+        }
+    }
+
+    @Test
+    public void testMapRowResolvesPlanOncePerResultSet() {
+        BeanRowMapper<User> rowMapper = warpdb.getMapper(User.class).rowMapper;
+        for (int n = 0; n < 2; n++) {
+            int[] metaDataCalls = new int[1];
+            List<User> list = warpdb.jdbcTemplate.query("SELECT * FROM User ORDER BY id", rs -> {
+                ResultSet counting = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+                        (proxy, method, args) -> {
+                            if (method.getName().equals("getMetaData")) {
+                                metaDataCalls[0]++;
+                            }
+                            try {
+                                return method.invoke(rs, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+                List<User> users = new ArrayList<>();
+                while (counting.next()) {
+                    users.add(rowMapper.mapRow(counting, users.size()));
+                }
+                return users;
+            });
+            assertEquals(10, list.size());
+            assertEquals("U9", list.get(9).id);
+            assertEquals(1, metaDataCalls[0]);
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package com.itranswarp.warpdb;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -44,4 +53,85 @@ public class CompiledClauseTest extends WarpDbTestBase {
         assertEquals(3, cc.converters.length);
     }
 
+    @Test
+    public void testCacheHitMissAndEviction() {
+        mapper.clauseCache = new LruCache<>(2);
+        CompiledClause cc = CompiledClause.compile(mapper, "name=?");
+        assertSame(cc, CompiledClause.compile(mapper, "name=?"));
+        CompiledClause.compile(mapper, "targetDate=?");
+        // name=? is most recently used:
+        CompiledClause.compile(mapper, "name=?");
+        CompiledClause.compile(mapper, "name=? and targetDate=?");
+        CacheStats stats = mapper.clauseCache.stats();
+        assertEquals(2, stats.hits);
+        assertEquals(3, stats.misses);
+        assertEquals(1, stats.evictions);
+        assertEquals(2, stats.size);
+        assertSame(cc, CompiledClause.compile(mapper, "name=?"));
+        // invalid clause is not cached:
+        assertThrows(IllegalArgumentException.class, () -> {
+            CompiledClause.compile(mapper, "invalid=?");
+        });
+        assertEquals(2, mapper.clauseCache.size());
+    }
+
+    @Test
+    public void testClauseCacheStatsOfWarpDb() {
+        warpdb.setClauseCacheSize(10);
+        for (int i = 0; i < 20; i++) {
+            warpdb.from(TodoEntity.class).where("name = ?" + " ".repeat(i), "Bob").list();
+        }
+        warpdb.from(TodoEntity.class).where("name = ?" + " ".repeat(19), "Bob").list();
+        CacheStats stats = warpdb.getClauseCacheStats(TodoEntity.class);
+        assertEquals(1, stats.hits);
+        assertEquals(20, stats.misses);
+        assertEquals(10, stats.evictions);
+        assertEquals(10, stats.size);
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.setClauseCacheSize(0);
+        });
+    }
+
+    @Test
+    public void testCacheComputeWithoutLock() throws Exception {
+        LruCache<String> cache = new LruCache<>(10);
+        cache.computeIfAbsent("hit", key -> key);
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> cache.computeIfAbsent("slow", key -> {
+                computing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return key;
+            }));
+            assertTrue(computing.await(5, TimeUnit.SECONDS));
+            // hit and miss of other key are not blocked by slow compute:
+            assertEquals("hit", cache.computeIfAbsent("hit", key -> "x"));
+            assertEquals("other", cache.computeIfAbsent("other", key -> key));
+            release.countDown();
+            assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testCacheBounded() {
+        LruCache<Integer> cache = new LruCache<>(8);
+        for (int i = 0; i < 100; i++) {
+            cache.computeIfAbsent("hot", key -> 0);
+            cache.computeIfAbsent("k" + i, key -> 1);
+            assertTrue(cache.size() <= 8);
+        }
+        assertEquals(93, cache.stats().evictions);
+        // referenced entry gets second chance and is never evicted:
+        assertEquals(99, cache.stats().hits);
+        assertEquals(101, cache.stats().misses);
+    }
 }
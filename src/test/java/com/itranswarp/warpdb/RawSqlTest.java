@@ -0,0 +1,32 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class RawSqlTest {
+
+    @Test
+    public void testParseTable() {
+        assertEquals("User", RawSql.parseTable("SELECT * FROM User WHERE id = ?"));
+        assertEquals("user", RawSql.parseTable("select *\nfrom\tuser"));
+        assertEquals("user", RawSql.parseTable("SELECT * FROM `user` WHERE id = ?"));
+        assertEquals("test.user", RawSql.parseTable("SELECT * FROM `test`.`user`"));
+        assertEquals("test.user", RawSql.parseTable("SELECT * FROM \"test\".\"user\",other"));
+        assertEquals("user", RawSql.parseTable("SELECT `from`, 'from x' AS f FROM user"));
+        assertEquals("user", RawSql.parseTable("SELECT fromAt FROM user;"));
+        assertNull(RawSql.parseTable("SELECT 1"));
+    }
+
+    @Test
+    public void testHasLimit() {
+        assertTrue(RawSql.hasLimit("SELECT * FROM user LIMIT 1"));
+        assertTrue(RawSql.hasLimit("SELECT * FROM user\nlimit ?, ?"));
+        assertFalse(RawSql.hasLimit("SELECT * FROM user WHERE name = ' limit '"));
+        assertFalse(RawSql.hasLimit("SELECT `limit` FROM user WHERE limited = 1"));
+        assertEquals("SELECT * FROM user limit 2", new RawSql(null, "SELECT * FROM user", false).uniqueSql);
+    }
+}
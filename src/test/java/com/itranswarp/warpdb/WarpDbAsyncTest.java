@@ -0,0 +1,206 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.WarpDbPublisherTest.TestSubscriber;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbAsyncTest extends WarpDbTestBase {
+
+    ExecutorService executor;
+
+    @BeforeEach
+    public void prepareData() {
+        executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 10; i++) {
+            User user = new User();
+            user.id = String.format("U%02d", i);
+            user.name = "Mr " + i;
+            user.email = "u" + i + "@somewhere.org";
+            user.tag = "T" + (i % 2);
+            user.setAge(20 + i);
+            warpdb.insert(user);
+        }
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFacade() throws Exception {
+        AsyncWarpDb async = warpdb.async();
+        assertSame(async, warpdb.async());
+        assertEquals("Mr 3", async.get(User.class, "U03").get().name);
+        assertNull(async.fetch(User.class, "X").get());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> {
+            async.get(User.class, "X").get();
+        });
+        assertTrue(e.getCause() instanceof EntityNotFoundException);
+        List<User> list = async.list(User.class, "SELECT * FROM user WHERE age > ? ORDER BY id", 27).get();
+        assertEquals(List.of("U08", "U09"), list.stream().map(u -> u.id).collect(Collectors.toList()));
+
+        User user = new User();
+        user.id = "U99";
+        user.name = "Async";
+        user.email = "async@somewhere.org";
+        async.insert(user).get();
+        assertEquals("Async", warpdb.get(User.class, "U99").name);
+        async.remove(user).get();
+        assertNull(warpdb.fetch(User.class, "U99"));
+    }
+
+    @Test
+    public void testCriteriaAsync() throws Exception {
+        warpdb.setAsyncExecutor(executor);
+        CompletableFuture<List<User>> f1 = warpdb.from(User.class).where("tag = ?", "T0").orderBy("id").listAsync();
+        CompletableFuture<Integer> f2 = warpdb.from(User.class).where("tag = ?", "T1").countAsync();
+        CompletableFuture<User> f3 = warpdb.from(User.class).orderBy("age").desc().firstAsync();
+        CompletableFuture<User> f4 = warpdb.from(User.class).where("age = ?", 25).uniqueAsync();
+        CompletableFuture<List<User>> f5 = warpdb.from(User.class).orderBy("id").limit(2, 3).listAsync();
+        CompletableFuture.allOf(f1, f2, f3, f4, f5).get();
+        assertEquals(List.of("U00", "U02", "U04", "U06", "U08"), f1.get().stream().map(u -> u.id).collect(Collectors.toList()));
+        assertEquals(5, f2.get());
+        assertEquals("U09", f3.get().id);
+        assertEquals("U05", f4.get().id);
+        assertEquals(List.of("U02", "U03", "U04"), f5.get().stream().map(u -> u.id).collect(Collectors.toList()));
+        assertNull(warpdb.from(User.class).where("age > ?", 100).firstAsync().get());
+        assertThrows(ExecutionException.class, () -> {
+            warpdb.from(User.class).where("tag = ?", "T0").uniqueAsync().get();
+        });
+    }
+
+    @Test
+    public void testMaxConcurrency() throws Exception {
+        warpdb.setAsyncExecutor(executor);
+        warpdb.setAsyncMaxConcurrency(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(warpdb.async().supply(() -> {
+                int n = running.incrementAndGet();
+                maxRunning.accumulateAndGet(n, Math::max);
+                try {
+                    latch.await(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                running.decrementAndGet();
+                return warpdb.from(User.class).count();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get();
+        assertEquals(2, maxRunning.get());
+        for (CompletableFuture<Integer> f : futures) {
+            assertEquals(10, f.get());
+        }
+    }
+
+    @Test
+    public void testQueuedOperationsHoldNoThread() throws Exception {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService cached = Executors.newCachedThreadPool(r -> {
+            threads.incrementAndGet();
+            return new Thread(r);
+        });
+        try {
+            warpdb.setAsyncExecutor(cached);
+            warpdb.setAsyncMaxConcurrency(2);
+            CountDownLatch latch = new CountDownLatch(1);
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(warpdb.async().supply(() -> {
+                    try {
+                        latch.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return warpdb.from(User.class).count();
+                }));
+            }
+            // only operations holding permits are submitted to executor:
+            assertEquals(48, warpdb.async().pending.size());
+            latch.countDown();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            assertTrue(threads.get() <= 2);
+            assertEquals(2, warpdb.async().semaphore.availablePermits());
+        } finally {
+            cached.shutdown();
+        }
+    }
+
+    @Test
+    public void testPublisherHoldsPermit() throws Exception {
+        warpdb.setAsyncMaxConcurrency(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        CompletableFuture<Integer> blocked = warpdb.async().supply(() -> {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return 0;
+        });
+        TestSubscriber<User> subscriber = new TestSubscriber<>(Long.MAX_VALUE);
+        warpdb.from(User.class).orderBy("id").publish().subscribe(subscriber);
+        // rows are pulled only after a permit is released:
+        assertEquals(1, warpdb.async().pending.size());
+        assertTrue(subscriber.items.isEmpty());
+        latch.countDown();
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, blocked.get(5, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertEquals(warpdb.from(User.class).count(), subscriber.items.size());
+        // permit is released after onComplete():
+        assertTrue(warpdb.async().semaphore.tryAcquire(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejectedOperation() {
+        ExecutorService closed = Executors.newSingleThreadExecutor();
+        closed.shutdown();
+        warpdb.setAsyncExecutor(closed);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> {
+            warpdb.async().get(User.class, "U01").get(5, TimeUnit.SECONDS);
+        });
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void testInvalidMaxConcurrency() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.setAsyncMaxConcurrency(0);
+        });
+    }
+
+    @Test
+    public void testDetectPoolSize() {
+        assertEquals(AsyncWarpDb.DEFAULT_MAX_CONCURRENCY, AsyncWarpDb.detectPoolSize(null));
+        assertEquals(AsyncWarpDb.DEFAULT_MAX_CONCURRENCY, AsyncWarpDb.detectPoolSize(warpdb.jdbcTemplate.getDataSource()));
+    }
+}
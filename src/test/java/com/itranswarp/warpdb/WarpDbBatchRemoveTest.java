@@ -0,0 +1,86 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PreRemove;
+
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.CompositeIdEntity;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbBatchRemoveTest extends WarpDbTestBase {
+
+    @Test
+    public void testBatchRemoveMixedEntities() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            User user = new User();
+            user.name = "Name-" + i;
+            user.email = "name" + i + "@somewhere.org";
+            users.add(user);
+        }
+        warpdb.insert(users);
+        List<CompositeIdEntity> cs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CompositeIdEntity c = new CompositeIdEntity();
+            c.uid = "u" + i;
+            c.sid = "s" + i;
+            c.name = "Mr " + i;
+            cs.add(c);
+        }
+        warpdb.insert(cs);
+        // force multiple chunks:
+        warpdb.setMaxInListSize(4);
+        List<Object> toRemove = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            toRemove.add(users.get(i));
+            if (i < 4) {
+                toRemove.add(cs.get(i));
+            }
+        }
+        warpdb.remove(toRemove);
+        for (int i = 0; i < 10; i++) {
+            User user = users.get(i);
+            assertEquals(List.of(PreRemove.class, PostRemove.class), user.callbacks.subList(user.callbacks.size() - 2, user.callbacks.size()));
+            assertNull(warpdb.fetch(User.class, user.id));
+        }
+        assertNotNull(warpdb.fetch(User.class, users.get(10).id));
+        assertEquals(1, warpdb.from(User.class).count());
+        assertEquals(1, warpdb.from(CompositeIdEntity.class).count());
+        assertNotNull(warpdb.fetch(CompositeIdEntity.class, "s4", "u4"));
+    }
+
+    @Test
+    public void testBatchRemoveKeepsListOrder() throws Exception {
+        List<Class<?>> callbacks = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.name = "Name-" + i;
+            user.email = "name" + i + "@somewhere.org";
+            users.add(user);
+        }
+        warpdb.insert(users);
+        CompositeIdEntity c = new CompositeIdEntity();
+        c.uid = "u0";
+        c.sid = "s0";
+        c.name = "Mr 0";
+        warpdb.insert(c);
+        // share callback list to record order across beans:
+        for (User user : users) {
+            user.callbacks = callbacks;
+        }
+        warpdb.remove(List.of(users.get(0), c, users.get(1)));
+        // second user is not grouped with first one:
+        assertEquals(List.of(PreRemove.class, PostRemove.class, PreRemove.class, PostRemove.class), callbacks);
+        assertEquals(0, warpdb.from(User.class).count());
+        assertEquals(0, warpdb.from(CompositeIdEntity.class).count());
+    }
+}
@@ -2,11 +2,21 @@ package com.itranswarp.warpdb;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 
 import com.itranswarp.warpdb.test.User;
 
@@ -56,4 +66,73 @@ public class WarpDbBatchUpdateTest extends WarpDbTestBase {
         }
     }
 
+    @Test
+    public void testBatchUpdateWithoutUpdateCounts() throws Exception {
+        warpdb.setJdbcTemplate(new JdbcTemplate(new NoInfoDataSource(warpdb.jdbcTemplate)));
+        User[] users = new User[3];
+        for (int i = 0; i < users.length; i++) {
+            User user = new User();
+            user.name = "Name-" + i;
+            user.email = "name" + i + "@somewhere.org";
+            users[i] = user;
+        }
+        warpdb.insert(Arrays.asList(users));
+        // versions cannot be checked by batch, so updated row by row:
+        for (User user : users) {
+            user.name = "Batch-" + user.name;
+        }
+        warpdb.update(Arrays.asList(users));
+        assertEquals(Boolean.FALSE, warpdb.batchUpdateCounts);
+        List<User> us = warpdb.from(User.class).orderBy("id").list();
+        for (int i = 0; i < users.length; i++) {
+            assertEquals("Batch-Name-" + i, us.get(i).name);
+            assertEquals(users[i].version, us.get(i).version);
+        }
+        us.get(0).name = "Updated-0";
+        warpdb.update(us);
+        assertEquals("Updated-0", warpdb.get(User.class, us.get(0).id).name);
+        warpdb.updateSql("UPDATE user SET version = version + 1 WHERE id = ?", us.get(1).id);
+        VersionConflictException e = assertThrows(VersionConflictException.class, () -> {
+            warpdb.update(us);
+        });
+        assertEquals(List.of(us.get(1)), e.getEntities());
+    }
+
+    /**
+     * DataSource of which batch update reports SUCCESS_NO_INFO like some drivers.
+     */
+    static class NoInfoDataSource extends DelegatingDataSource {
+
+        NoInfoDataSource(JdbcTemplate template) {
+            super(template.getDataSource());
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection conn = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                Object result = invoke(method, conn, args);
+                if (result instanceof PreparedStatement) {
+                    PreparedStatement ps = (PreparedStatement) result;
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class }, (p, m, a) -> {
+                        Object r = invoke(m, ps, a);
+                        if (m.getName().equals("executeBatch")) {
+                            int[] counts = (int[]) r;
+                            Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                        }
+                        return r;
+                    });
+                }
+                return result;
+            });
+        }
+
+        static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
 }
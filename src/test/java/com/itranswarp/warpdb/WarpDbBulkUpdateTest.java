@@ -0,0 +1,73 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.EnumEntity;
+import com.itranswarp.warpdb.test.Role;
+
+public class WarpDbBulkUpdateTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        for (int i = 0; i < 10; i++) {
+            EnumEntity ee = new EnumEntity();
+            ee.id = EnumEntity.nextId();
+            ee.name = "Name-" + i;
+            ee.roleName = i < 4 ? Role.ADMIN : Role.USER;
+            warpdb.insert(ee);
+        }
+    }
+
+    @Test
+    public void testBulkUpdate() {
+        int n = warpdb.from(EnumEntity.class).where("roleName = ?", Role.ADMIN).set("roleName", Role.VIP).set("name", "Updated").update();
+        assertEquals(4, n);
+        assertEquals(4, warpdb.from(EnumEntity.class).where("roleName = ?", Role.VIP).count());
+        assertEquals(0, warpdb.from(EnumEntity.class).where("roleName = ?", Role.ADMIN).count());
+        EnumEntity ee = warpdb.get(EnumEntity.class, "0001");
+        assertEquals(Role.VIP, ee.roleName);
+        assertEquals("Updated", ee.name);
+        // set null:
+        assertEquals(1, warpdb.from(EnumEntity.class).where("id = ?", "0010").set("roleName", null).update());
+        assertNull(warpdb.get(EnumEntity.class, "0010").roleName);
+        // no rows matched:
+        assertEquals(0, warpdb.from(EnumEntity.class).where("name = ?", "none").set("name", "x").update());
+    }
+
+    @Test
+    public void testBulkUpdateInvalidProperty() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.from(EnumEntity.class).where("roleName = ?", Role.ADMIN).set("createdAt", 0L).update();
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.from(EnumEntity.class).where("roleName = ?", Role.ADMIN).set("notExist", 0).update();
+        });
+    }
+
+    @Test
+    public void testBulkUpdateTypedWhereParams() {
+        // long property accepts int param:
+        assertEquals(10, warpdb.from(EnumEntity.class).where("version >= ?", 0).set("name", "Updated").update());
+        // null param is bound by type of property:
+        assertEquals(0, warpdb.from(EnumEntity.class).where("name = ?", (Object) null).set("name", "x").update());
+        assertEquals(0, warpdb.from(EnumEntity.class).where("version = ?", (Object) null).delete());
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.from(EnumEntity.class).where("name = ?", "Updated").and("version = ?", "0").delete();
+        });
+        assertEquals("Argument at index 1 of type java.lang.String does not match property version of type long.", e.getMessage());
+        assertEquals(10, warpdb.from(EnumEntity.class).count());
+    }
+
+    @Test
+    public void testBulkDelete() {
+        assertEquals(6, warpdb.from(EnumEntity.class).where("roleName = ?", Role.USER).delete());
+        assertEquals(4, warpdb.from(EnumEntity.class).count());
+        assertEquals(2, warpdb.from(EnumEntity.class).where("name = ?", "Name-0").or("name = ?", "Name-1").delete());
+        assertEquals(2, warpdb.from(EnumEntity.class).count());
+    }
+}
@@ -11,6 +11,7 @@ import com.itranswarp.warpdb.invalid.dupprop.DupPropNameEntity;
 import com.itranswarp.warpdb.invalid.duptable.DupTableNameEntity;
 import com.itranswarp.warpdb.invalid.missingid.MissingIdEntity;
 import com.itranswarp.warpdb.invalid.multiid.MultiIdEntity;
+import com.itranswarp.warpdb.invalid.multishardkey.MultiShardKeyEntity;
 import com.itranswarp.warpdb.invalid.multiupdate.MultiPreUpdateEntity;
 import com.itranswarp.warpdb.invalid.multiversion.MultiVersionEntity;
 
@@ -78,4 +79,13 @@ public class WarpDbConfigTest {
             warpdb.init();
         });
     }
+
+    @Test
+    public void testInvalidForMultiShardKey() {
+        WarpDb warpdb = new WarpDb();
+        warpdb.basePackages = Arrays.asList(MultiShardKeyEntity.class.getPackage().getName());
+        assertThrows(ConfigurationException.class, () -> {
+            warpdb.init();
+        });
+    }
 }
@@ -0,0 +1,154 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import jakarta.persistence.PostUpdate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.itranswarp.warpdb.test.EnumEntity;
+import com.itranswarp.warpdb.test.Role;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbDirtyTrackingTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        warpdb.setDirtyTracking(true);
+        EnumEntity ee = new EnumEntity();
+        ee.id = "E1";
+        ee.name = "Bob";
+        ee.roleName = Role.USER;
+        warpdb.insert(ee);
+        User user = new User();
+        user.id = "U1";
+        user.name = "Alice";
+        user.email = "alice@somewhere.org";
+        user.tag = "T1";
+        warpdb.insert(user);
+    }
+
+    @Test
+    public void testUpdateChangedColumnsOnly() {
+        EnumEntity ee = warpdb.get(EnumEntity.class, "E1");
+        assertNotNull(warpdb.getMapper(EnumEntity.class).rowMapper.dirtyTracker.snapshotOf(ee));
+        // changed by others:
+        warpdb.updateSql("UPDATE EnumEntity SET name = ? WHERE id = ?", "Other", "E1");
+        ee.roleName = Role.VIP;
+        warpdb.update(ee);
+        EnumEntity bak = warpdb.get(EnumEntity.class, "E1");
+        assertEquals(Role.VIP, bak.roleName);
+        // name is not overwritten:
+        assertEquals("Other", bak.name);
+    }
+
+    @Test
+    public void testSkipUpdateIfNothingChanged() {
+        EnumEntity ee = warpdb.get(EnumEntity.class, "E1");
+        warpdb.updateSql("UPDATE EnumEntity SET name = ? WHERE id = ?", "Other", "E1");
+        warpdb.update(ee);
+        assertEquals("Other", warpdb.get(EnumEntity.class, "E1").name);
+        // changed to null then back:
+        ee.roleName = null;
+        warpdb.update(ee);
+        assertNull(warpdb.get(EnumEntity.class, "E1").roleName);
+        ee.roleName = Role.USER;
+        warpdb.update(ee);
+        assertEquals(Role.USER, warpdb.get(EnumEntity.class, "E1").roleName);
+        // one statement shape per changed columns:
+        assertEquals(1, warpdb.getMapper(EnumEntity.class).rowMapper.dirtyTracker.statements.size());
+    }
+
+    @Test
+    public void testListenersStillInvoked() {
+        User user = warpdb.get(User.class, "U1");
+        warpdb.updateSql("UPDATE User SET the_tag = ? WHERE id = ?", "T2", "U1");
+        user.name = "Alice Wang";
+        warpdb.update(user);
+        assertTrue(user.callbacks.contains(PostUpdate.class));
+        User bak = warpdb.get(User.class, "U1");
+        assertEquals("Alice Wang", bak.name);
+        assertEquals("T2", bak.tag);
+        assertEquals(user.updatedAt, bak.updatedAt);
+    }
+
+    @Test
+    public void testUpdatePropertiesAndBatchRefreshSnapshot() {
+        EnumEntity ee = warpdb.get(EnumEntity.class, "E1");
+        ee.name = "Bob 2";
+        warpdb.updateProperties(ee, "name");
+        // others change name back:
+        warpdb.updateSql("UPDATE EnumEntity SET name = ? WHERE id = ?", "Bob", "E1");
+        warpdb.update(ee);
+        // snapshot was refreshed so nothing changed:
+        assertEquals("Bob", warpdb.get(EnumEntity.class, "E1").name);
+        ee.roleName = Role.GUEST;
+        warpdb.update(Arrays.asList(ee));
+        warpdb.updateSql("UPDATE EnumEntity SET roleName = ? WHERE id = ?", "ADMIN", "E1");
+        warpdb.update(ee);
+        assertEquals(Role.ADMIN, warpdb.get(EnumEntity.class, "E1").roleName);
+    }
+
+    @Test
+    public void testUntrackedBeanUpdateAllColumns() {
+        EnumEntity ee = new EnumEntity();
+        ee.id = "E1";
+        ee.name = "New";
+        warpdb.update(ee);
+        EnumEntity bak = warpdb.get(EnumEntity.class, "E1");
+        assertEquals("New", bak.name);
+        assertNull(bak.roleName);
+    }
+
+    @Test
+    public void testDisableDirtyTracking() {
+        warpdb.setDirtyTracking(false);
+        EnumEntity ee = warpdb.get(EnumEntity.class, "E1");
+        warpdb.updateSql("UPDATE EnumEntity SET name = ? WHERE id = ?", "Other", "E1");
+        warpdb.update(ee);
+        assertEquals("Bob", warpdb.get(EnumEntity.class, "E1").name);
+    }
+
+    @Test
+    public void testSnapshotRefreshedAfterCommit() {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(warpdb.jdbcTemplate.getDataSource()));
+        EnumEntity ee = warpdb.get(EnumEntity.class, "E1");
+        ee.roleName = Role.VIP;
+        tx.executeWithoutResult(status -> {
+            warpdb.update(ee);
+            status.setRollbackOnly();
+        });
+        assertEquals(Role.USER, warpdb.get(EnumEntity.class, "E1").roleName);
+        // retry after rollback writes changed column again:
+        tx.executeWithoutResult(status -> {
+            warpdb.update(ee);
+        });
+        assertEquals(Role.VIP, warpdb.get(EnumEntity.class, "E1").roleName);
+        // snapshot was refreshed after commit so nothing changed:
+        warpdb.updateSql("UPDATE EnumEntity SET roleName = ? WHERE id = ?", "ADMIN", "E1");
+        warpdb.update(ee);
+        assertEquals(Role.ADMIN, warpdb.get(EnumEntity.class, "E1").roleName);
+    }
+
+    @Test
+    public void testUpdatePropertiesRolledBack() {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(warpdb.jdbcTemplate.getDataSource()));
+        EnumEntity ee = warpdb.get(EnumEntity.class, "E1");
+        ee.name = "Bob 2";
+        tx.executeWithoutResult(status -> {
+            warpdb.updateProperties(ee, "name");
+            status.setRollbackOnly();
+        });
+        assertEquals("Bob", warpdb.get(EnumEntity.class, "E1").name);
+        warpdb.update(ee);
+        assertEquals("Bob 2", warpdb.get(EnumEntity.class, "E1").name);
+    }
+}
@@ -0,0 +1,98 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.itranswarp.warpdb.invalid.duptable.DupTableNameEntity;
+import com.itranswarp.warpdb.invalid.duptable.DupTableNameEntity2;
+import com.itranswarp.warpdb.test.EnumEntity;
+import com.itranswarp.warpdb.test.Role;
+import com.itranswarp.warpdb.test.User;
+import com.itranswarp.warpdb.util.ClassUtils;
+
+public class WarpDbEntityRegistrationTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRegisterEntities() {
+        WarpDb warpdb = new WarpDb();
+        warpdb.setJdbcTemplate(JdbcTemplateHsqldbFactory.createJdbcTemplate());
+        warpdb.setEntityClasses(List.of(User.class));
+        warpdb.registerEntity(EnumEntity.class);
+        warpdb.registerEntity(User.class);
+        // base packages are ignored:
+        warpdb.setBasePackages(Arrays.asList("com.itranswarp.warpdb.test"));
+        warpdb.init();
+        assertEquals(List.of(User.class, EnumEntity.class), List.copyOf(warpdb.entityClasses));
+        assertEquals(2, warpdb.getEntities().size());
+        assertEquals(0, warpdb.from(User.class).count());
+        assertThrows(IllegalStateException.class, () -> {
+            warpdb.registerEntity(Role.class);
+        });
+    }
+
+    @Test
+    public void testRegisterInvalidEntities() {
+        WarpDb warpdb = new WarpDb();
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.registerEntity(Role.class);
+        });
+        warpdb.setEntityClasses(List.of(DupTableNameEntity.class, DupTableNameEntity2.class));
+        assertThrows(ConfigurationException.class, () -> {
+            warpdb.init();
+        });
+    }
+
+    @Test
+    public void testLoadEntitiesFromIndex() throws Exception {
+        Path index = dir.resolve(ClassUtils.ENTITY_INDEX);
+        Files.createDirectories(index.getParent());
+        Files.writeString(index, "# generated\n" + User.class.getName() + "\n" + EnumEntity.class.getName() + "\ncom.other.Entity\n");
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, original)) {
+            thread.setContextClassLoader(loader);
+            WarpDb warpdb = new WarpDb();
+            warpdb.setBasePackages(Arrays.asList("com.itranswarp.warpdb.test"));
+            warpdb.setUseEntityIndex(true);
+            warpdb.init();
+            // only indexed entities in base packages, without scanning:
+            assertEquals(2, warpdb.getEntities().size());
+            assertEquals("user", warpdb.getTable(User.class));
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    public void testEntityIndexNotUsedByDefault() throws Exception {
+        Path index = dir.resolve(ClassUtils.ENTITY_INDEX);
+        Files.createDirectories(index.getParent());
+        // incomplete index from other jar or stale build:
+        Files.writeString(index, User.class.getName() + "\n");
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, original)) {
+            thread.setContextClassLoader(loader);
+            WarpDb warpdb = new WarpDb();
+            warpdb.setBasePackages(Arrays.asList("com.itranswarp.warpdb.test"));
+            warpdb.init();
+            assertEquals(ClassUtils.scanEntities("com.itranswarp.warpdb.test").size(), warpdb.getEntities().size());
+            assertEquals("enumEntity", warpdb.getTable(EnumEntity.class));
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+}
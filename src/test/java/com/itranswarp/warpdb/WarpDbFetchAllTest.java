@@ -0,0 +1,89 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import jakarta.persistence.PostLoad;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.CompositeIdEntity;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbFetchAllTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            User u = new User();
+            u.id = String.format("U%02d", i);
+            u.name = "Mr " + i;
+            u.email = "u" + i + "@somewhere.org";
+            users.add(u);
+        }
+        warpdb.insert(users);
+        for (int i = 0; i < 10; i++) {
+            CompositeIdEntity c = new CompositeIdEntity();
+            c.uid = "u" + i;
+            c.sid = "s" + i;
+            c.name = "Mr " + i;
+            c.balance = 1000 + i;
+            warpdb.insert(c);
+        }
+        // force multiple chunks:
+        warpdb.setMaxInListSize(4);
+    }
+
+    @Test
+    public void testFetchAllInRequestOrder() {
+        List<String> ids = List.of("U09", "U01", "X00", "U25", "U17", "U03", "U01", "U29");
+        List<User> users = warpdb.fetchAll(User.class, ids);
+        assertEquals(List.of("U09", "U01", "U25", "U17", "U03", "U01", "U29"), users.stream().map(u -> u.id).collect(Collectors.toList()));
+        // duplicate id returns same instance:
+        assertSame(users.get(1), users.get(5));
+        for (User u : users) {
+            assertTrue(u.callbacks.contains(PostLoad.class));
+        }
+        assertTrue(warpdb.fetchAll(User.class, List.of()).isEmpty());
+    }
+
+    @Test
+    public void testFetchMap() {
+        Map<String, User> map = warpdb.fetchMap(User.class, List.of("U20", "U10", "X00", "U00"));
+        assertEquals(List.of("U20", "U10", "U00"), new ArrayList<>(map.keySet()));
+        assertEquals("Mr 10", map.get("U10").name);
+    }
+
+    @Test
+    public void testFetchAllByCompositeIds() {
+        List<Object[]> ids = new ArrayList<>();
+        for (int i = 9; i >= 0; i--) {
+            // ids sorted by column name: sid, uid
+            ids.add(new Object[] { "s" + i, "u" + i });
+        }
+        ids.add(new Object[] { "s1", "u2" });
+        List<CompositeIdEntity> list = warpdb.fetchAll(CompositeIdEntity.class, ids);
+        assertEquals(10, list.size());
+        assertEquals("Mr 9", list.get(0).name);
+        assertEquals("Mr 0", list.get(9).name);
+        Map<Object[], CompositeIdEntity> map = warpdb.fetchMap(CompositeIdEntity.class, ids);
+        assertEquals(10, map.size());
+        assertEquals(1005, map.get(ids.get(4)).balance);
+    }
+
+    @Test
+    public void testFetchAllByInvalidCompositeIds() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.fetchAll(CompositeIdEntity.class, List.of("s1"));
+        });
+    }
+}
@@ -0,0 +1,216 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbHedgedReadTest extends WarpDbTestBase {
+
+    ExecutorService executor;
+    SlowDataSource slowDataSource;
+
+    @BeforeEach
+    public void setUpReplicas() {
+        JdbcTemplate replica0 = JdbcTemplateHsqldbFactory.createJdbcTemplate();
+        JdbcTemplate replica1 = JdbcTemplateHsqldbFactory.createJdbcTemplate();
+        insertUser(replica0, "replica0");
+        insertUser(replica1, "replica1");
+        slowDataSource = new SlowDataSource(replica0);
+        executor = Executors.newCachedThreadPool();
+        warpdb.setHedgeExecutor(executor);
+        warpdb.setReplicaJdbcTemplates(List.of(new JdbcTemplate(slowDataSource), replica1));
+        warpdb.setReadYourWritesWindow(0);
+        warpdb.setHedgeMinDelay(50);
+        warpdb.setHedgedReads(true);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    void insertUser(JdbcTemplate template, String name) {
+        WarpDb db = new WarpDb();
+        db.setBasePackages(List.of("com.itranswarp.warpdb.test"));
+        db.setJdbcTemplate(template);
+        db.init();
+        User user = new User();
+        user.id = "U0";
+        user.name = name;
+        user.email = "u0@somewhere.org";
+        db.insert(user);
+    }
+
+    @Test
+    public void testNoHedgeBeforeWarmUp() {
+        AtomicInteger submitted = new AtomicInteger();
+        warpdb.setHedgeExecutor(r -> {
+            submitted.incrementAndGet();
+            executor.execute(r);
+        });
+        slowDataSource.slow = true;
+        long start = System.currentTimeMillis();
+        // first read goes to slow replica0 without hedging:
+        assertEquals("replica0", warpdb.get(User.class, "U0").name);
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertEquals(0, warpdb.getHedgeStats().hedged);
+        assertEquals(-1, warpdb.getHedgeStats().delayMillis);
+        // read on caller thread:
+        assertEquals(0, submitted.get());
+        assertEquals(1, warpdb.hedgedReader.samples);
+    }
+
+    @Test
+    public void testHedgeSlowReplica() throws Exception {
+        for (int i = 0; i < 64; i++) {
+            assertEquals(i % 2 == 0 ? "replica0" : "replica1", warpdb.get(User.class, "U0").name);
+        }
+        HedgeStats stats = warpdb.getHedgeStats();
+        assertEquals(64, stats.reads);
+        assertEquals(0, stats.hedged);
+        // delay is floored by min delay:
+        assertEquals(50.0, stats.delayMillis);
+
+        slowDataSource.slow = true;
+        for (int i = 0; i < 10; i++) {
+            long start = System.currentTimeMillis();
+            assertEquals("replica1", warpdb.get(User.class, "U0").name);
+            assertTrue(System.currentTimeMillis() - start < 200);
+        }
+        stats = warpdb.getHedgeStats();
+        assertEquals(74, stats.reads);
+        // reads sent to replica0 first were hedged and won by replica1:
+        assertEquals(5, stats.hedged);
+        assertEquals(5, stats.hedgeWins);
+        // hedged reads are sampled as at least the delay:
+        int slowSamples = 0;
+        for (int i = 64; i < 74; i++) {
+            if (warpdb.hedgedReader.latencies[i] >= 50_000_000L) {
+                slowSamples++;
+            }
+        }
+        assertEquals(5, slowSamples);
+        assertEquals(74, warpdb.hedgedReader.samples);
+        // loser statements were cancelled:
+        assertTrue(slowDataSource.cancelled.await(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 50 && slowDataSource.cancels.get() < 5; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, slowDataSource.cancels.get());
+        // cancelled statements are released:
+        for (int i = 0; i < 50 && warpdb.replicaRouter.outstanding[0].get() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, warpdb.replicaRouter.outstanding[0].get() + warpdb.replicaRouter.outstanding[1].get());
+    }
+
+    @Test
+    public void testHedgeInAsyncOperation() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            warpdb.setAsyncExecutor(single);
+            warpdb.setAsyncMaxConcurrency(1);
+            for (int i = 0; i < 64; i++) {
+                warpdb.get(User.class, "U0");
+            }
+            slowDataSource.slow = true;
+            // attempts do not wait for the thread held by async operation:
+            assertEquals("replica1", warpdb.async().get(User.class, "U0").get(5, TimeUnit.SECONDS).name);
+            assertEquals(1, warpdb.getHedgeStats().hedged);
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueryError() {
+        assertThrows(DataAccessException.class, () -> {
+            warpdb.list(User.class, "SELECT * FROM user WHERE no_such_column = ?", 1);
+        });
+        assertEquals(0, warpdb.replicaRouter.outstanding[0].get() + warpdb.replicaRouter.outstanding[1].get());
+    }
+
+    @Test
+    public void testInvalidPercentile() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.setHedgeDelayPercentile(0);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.setHedgeDelayPercentile(101);
+        });
+    }
+
+    /**
+     * DataSource which blocks queries until cancelled or timeout when slow.
+     */
+    static class SlowDataSource extends DelegatingDataSource {
+
+        volatile boolean slow = false;
+        final AtomicInteger cancels = new AtomicInteger();
+        final CountDownLatch cancelled = new CountDownLatch(1);
+
+        SlowDataSource(JdbcTemplate template) {
+            super(template.getDataSource());
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection conn = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                Object result = invoke(method, conn, args);
+                if (result instanceof PreparedStatement) {
+                    return slowStatement((PreparedStatement) result);
+                }
+                return result;
+            });
+        }
+
+        PreparedStatement slowStatement(PreparedStatement ps) {
+            CountDownLatch latch = new CountDownLatch(1);
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("cancel")) {
+                            cancels.incrementAndGet();
+                            cancelled.countDown();
+                            latch.countDown();
+                        }
+                        if (method.getName().equals("executeQuery") && slow) {
+                            if (latch.await(300, TimeUnit.MILLISECONDS)) {
+                                throw new SQLException("Statement cancelled.");
+                            }
+                        }
+                        return invoke(method, ps, args);
+                    });
+        }
+
+        static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
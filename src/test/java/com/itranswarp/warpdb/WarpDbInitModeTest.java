@@ -0,0 +1,121 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.invalid.duptable.DupTableNameEntity;
+import com.itranswarp.warpdb.invalid.missingid.MissingIdEntity;
+import com.itranswarp.warpdb.test.User;
+
+/**
+ * Test init modes. The benchmark is tagged "benchmark" and excluded from default
+ * test run, run it by:
+ *
+ * mvn test -Dtest=WarpDbInitModeTest -Dsurefire.excludedGroups=
+ */
+public class WarpDbInitModeTest {
+
+    static final int ROUNDS = 5;
+
+    WarpDb createWarpDb(InitMode mode, String basePackage) {
+        WarpDb warpdb = new WarpDb();
+        warpdb.setInitMode(mode);
+        warpdb.setBasePackages(Arrays.asList(basePackage));
+        return warpdb;
+    }
+
+    @Test
+    public void testLazyBuildOnFirstUse() throws Exception {
+        WarpDb warpdb = createWarpDb(InitMode.LAZY, "com.itranswarp.warpdb.test");
+        warpdb.setJdbcTemplate(JdbcTemplateHsqldbFactory.createJdbcTemplate());
+        warpdb.setDirtyTracking(true);
+        warpdb.init();
+        assertTrue(warpdb.builtMappers().isEmpty());
+        assertNull(warpdb.classMapping.get(User.class).getIfBuilt());
+        // build concurrently:
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Mapper<User>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit((Callable<Mapper<User>>) () -> warpdb.getMapper(User.class)));
+            }
+            Mapper<User> mapper = futures.get(0).get();
+            for (Future<Mapper<User>> future : futures) {
+                assertSame(mapper, future.get());
+            }
+            // settings applied when built:
+            assertNotNull(mapper.rowMapper.dirtyTracker);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, warpdb.builtMappers().size());
+        // resolved by table name:
+        assertEquals(0, warpdb.from(User.class).count());
+        assertEquals(0, warpdb.list("SELECT * FROM EnumEntity").size());
+        assertEquals(2, warpdb.builtMappers().size());
+    }
+
+    @Test
+    public void testParallelInit() {
+        WarpDb warpdb = createWarpDb(InitMode.PARALLEL, "com.itranswarp.warpdb.test");
+        warpdb.init();
+        assertEquals(warpdb.getEntities().size(), warpdb.builtMappers().size());
+        assertEquals("user", warpdb.getTable(User.class));
+    }
+
+    @Test
+    public void testDuplicateTableNameInAllModes() {
+        for (InitMode mode : InitMode.values()) {
+            WarpDb warpdb = createWarpDb(mode, DupTableNameEntity.class.getPackage().getName());
+            assertThrows(ConfigurationException.class, () -> {
+                warpdb.init();
+            });
+        }
+    }
+
+    @Test
+    public void testLazyInvalidEntityFailsOnFirstUse() {
+        WarpDb warpdb = createWarpDb(InitMode.LAZY, MissingIdEntity.class.getPackage().getName());
+        warpdb.init();
+        assertThrows(ConfigurationException.class, () -> {
+            warpdb.getMapper(MissingIdEntity.class);
+        });
+        assertThrows(ConfigurationException.class, () -> {
+            createWarpDb(InitMode.PARALLEL, MissingIdEntity.class.getPackage().getName()).init();
+        });
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void benchmarkInitModes() {
+        int expected = createWarpDb(InitMode.EAGER, "com.itranswarp.warpdb.test").findEntities().size();
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean report = round == ROUNDS - 1;
+            for (InitMode mode : InitMode.values()) {
+                long start = System.nanoTime();
+                WarpDb warpdb = createWarpDb(mode, "com.itranswarp.warpdb.test");
+                warpdb.init();
+                if (report) {
+                    System.out.printf("init/%s: %.2f ms%n", mode, (System.nanoTime() - start) / 1_000_000.0);
+                }
+                assertEquals(expected, warpdb.getEntities().size());
+                assertEquals(mode == InitMode.LAZY ? 0 : expected, warpdb.builtMappers().size());
+            }
+        }
+    }
+}
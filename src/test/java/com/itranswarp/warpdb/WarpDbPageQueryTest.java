@@ -1,10 +1,19 @@
 package com.itranswarp.warpdb;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 
 import com.itranswarp.warpdb.test.User;
 
@@ -79,4 +88,124 @@ public class WarpDbPageQueryTest extends WarpDbTestBase {
             warpdb.from(User.class).list(1, 1001);
         });
     }
+
+    @Test
+    public void testPageQueryWithoutCount() {
+        PagedResults<User> pr1 = warpdb.from(User.class).orderBy("id").list(1, 10, CountMode.NONE);
+        assertEquals(CountMode.NONE, pr1.page.countMode);
+        assertEquals(-1, pr1.page.totalItems);
+        assertEquals(-1, pr1.page.totalPages);
+        assertTrue(pr1.page.hasNext);
+        assertFalse(pr1.page.isEmpty);
+        assertEquals(10, pr1.results.size());
+        assertEquals("A-09", pr1.results.get(9).id);
+        PagedResults<User> pr10 = warpdb.from(User.class).orderBy("id").list(10, 10, CountMode.NONE);
+        assertFalse(pr10.page.hasNext);
+        assertEquals(9, pr10.results.size());
+        PagedResults<User> pr11 = warpdb.from(User.class).where("id > ?", "Z").list(1, 10, CountMode.NONE);
+        assertFalse(pr11.page.hasNext);
+        assertTrue(pr11.page.isEmpty);
+    }
+
+    @Test
+    public void testPageQueryWithCachedCount() {
+        PagedResults<User> pr1 = warpdb.from(User.class).where("id >= ?", "A-50").orderBy("id").list(1, 10, CountMode.CACHED);
+        assertEquals(CountMode.CACHED, pr1.page.countMode);
+        assertEquals(49, pr1.page.totalItems);
+        assertEquals(5, pr1.page.totalPages);
+        assertTrue(pr1.page.hasNext);
+        // insert more rows but cached count is used:
+        User u = new User();
+        u.id = "A-99";
+        u.name = "Mr 99";
+        u.email = "A99@somewhere.org";
+        warpdb.insert(u);
+        PagedResults<User> pr5 = warpdb.from(User.class).where("id >= ?", "A-50").orderBy("id").list(5, 10, CountMode.CACHED);
+        assertEquals(49, pr5.page.totalItems);
+        assertEquals(10, pr5.results.size());
+        assertFalse(pr5.page.hasNext);
+        // different params are cached separately:
+        assertEquals(51, warpdb.from(User.class).where("id >= ?", "A-49").list(1, 10, CountMode.CACHED).page.totalItems);
+        warpdb.clearCountCache();
+        assertEquals(50, warpdb.from(User.class).where("id >= ?", "A-50").list(1, 10, CountMode.CACHED).page.totalItems);
+    }
+
+    @Test
+    public void testPageQueryWithEstimatedCount() {
+        // estimation is not supported by HSQLDB, fall back to exact:
+        PagedResults<User> pr1 = warpdb.from(User.class).orderBy("id").list(1, 10, CountMode.ESTIMATED);
+        assertEquals(CountMode.EXACT, pr1.page.countMode);
+        assertEquals(99, pr1.page.totalItems);
+        assertTrue(warpdb.estimateDisabled);
+        assertNull(warpdb.estimatedCountSql);
+        warpdb.setEstimatedCountSql("SELECT 120 FROM INFORMATION_SCHEMA.TABLES WHERE UPPER(TABLE_NAME) = UPPER(?)");
+        PagedResults<User> pr2 = warpdb.from(User.class).orderBy("id").list(10, 10, CountMode.ESTIMATED);
+        assertEquals(CountMode.ESTIMATED, pr2.page.countMode);
+        assertEquals(120, pr2.page.totalItems);
+        assertEquals(12, pr2.page.totalPages);
+        assertEquals(9, pr2.results.size());
+        assertFalse(pr2.page.hasNext);
+        // where clause is not estimated:
+        PagedResults<User> pr3 = warpdb.from(User.class).where("id >= ?", "A-90").list(1, 10, CountMode.ESTIMATED);
+        assertEquals(CountMode.EXACT, pr3.page.countMode);
+        assertEquals(9, pr3.page.totalItems);
+    }
+
+    @Test
+    public void testEstimatedCountFailedOnce() {
+        AtomicInteger queries = new AtomicInteger();
+        warpdb.setEstimatedCountSql("SELECT TABLE_ROWS FROM NO_SUCH_TABLE WHERE TABLE_NAME = ?");
+        JdbcTemplate template = warpdb.jdbcTemplate;
+        warpdb.jdbcTemplate = new JdbcTemplate(template.getDataSource()) {
+            @Override
+            public <T> T query(String sql, ResultSetExtractor<T> rse, Object... args) {
+                if (sql.contains("NO_SUCH_TABLE")) {
+                    queries.incrementAndGet();
+                }
+                return super.query(sql, rse, args);
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            assertEquals(CountMode.EXACT, warpdb.from(User.class).list(1, 10, CountMode.ESTIMATED).page.countMode);
+        }
+        // failed SQL is not retried:
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void testEstimatedCountSqlOfProduct() {
+        assertTrue(WarpDb.estimatedCountSqlOf("MySQL").contains("INFORMATION_SCHEMA.TABLES"));
+        assertTrue(WarpDb.estimatedCountSqlOf("MariaDB").contains("INFORMATION_SCHEMA.TABLES"));
+        assertTrue(WarpDb.estimatedCountSqlOf("PostgreSQL").contains("pg_class"));
+        assertNull(WarpDb.estimatedCountSqlOf("HSQL Database Engine"));
+        assertNull(WarpDb.estimatedCountSqlOf(null));
+    }
+
+    @Test
+    public void testPageQueryConcurrently() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicInteger submitted = new AtomicInteger();
+        try {
+            warpdb.setPagingExecutor(task -> {
+                submitted.incrementAndGet();
+                executor.execute(task);
+            });
+            PagedResults<User> pr2 = warpdb.from(User.class).orderBy("id").list(2, 10);
+            assertEquals(1, submitted.get());
+            assertEquals(99, pr2.page.totalItems);
+            assertEquals(10, pr2.page.totalPages);
+            assertEquals(10, pr2.results.size());
+            assertEquals("A-10", pr2.results.get(0).id);
+            // out of range:
+            PagedResults<User> pr11 = warpdb.from(User.class).orderBy("id").list(11, 10);
+            assertEquals(2, submitted.get());
+            assertEquals(99, pr11.page.totalItems);
+            assertEquals(0, pr11.results.size());
+            // other count mode is not concurrent:
+            warpdb.from(User.class).orderBy("id").list(2, 10, CountMode.NONE);
+            assertEquals(2, submitted.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
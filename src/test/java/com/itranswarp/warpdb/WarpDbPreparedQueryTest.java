@@ -0,0 +1,119 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.NonUniqueResultException;
+import jakarta.persistence.PostLoad;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.EnumEntity;
+import com.itranswarp.warpdb.test.Role;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbPreparedQueryTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        for (int i = 0; i < 10; i++) {
+            User user = new User();
+            user.id = String.format("U%02d", i);
+            user.name = "Mr " + i;
+            user.email = "u" + i + "@somewhere.org";
+            user.tag = "T" + (i % 2);
+            user.setAge(20 + i);
+            warpdb.insert(user);
+            EnumEntity ee = new EnumEntity();
+            ee.id = String.format("E%02d", i);
+            ee.name = "Name-" + i;
+            ee.roleName = i < 3 ? Role.ADMIN : Role.USER;
+            warpdb.insert(ee);
+        }
+    }
+
+    @Test
+    public void testExecuteManyTimes() {
+        PreparedQuery<User> query = warpdb.from(User.class).where("tag = ? AND age >= ?", null, 0).orderBy("id").prepare();
+        assertEquals("SELECT * FROM user WHERE the_tag = ? AND age >= ? ORDER BY id", query.getSql());
+        List<User> list = query.list("T0", 24);
+        assertEquals(List.of("U04", "U06", "U08"), list.stream().map(u -> u.id).collect(Collectors.toList()));
+        assertTrue(list.get(0).callbacks.contains(PostLoad.class));
+        assertEquals(List.of("U01", "U03", "U05", "U07", "U09"), query.list("T1", 0).stream().map(u -> u.id).collect(Collectors.toList()));
+        assertEquals(3, query.count("T0", 24));
+        assertEquals("U04", query.first("T0", 24).id);
+        assertNull(query.first("T9", 0));
+        assertEquals("U09", query.unique("T1", 28).id);
+        assertThrows(NoResultException.class, () -> {
+            query.unique("T1", 30);
+        });
+        assertThrows(NonUniqueResultException.class, () -> {
+            query.unique("T1", 0);
+        });
+        try (Stream<User> stream = query.stream("T0", 0)) {
+            assertEquals(5, stream.count());
+        }
+        List<String> ids = new ArrayList<>();
+        query.forEach(u -> ids.add(u.id), "T1", 27);
+        assertEquals(List.of("U07", "U09"), ids);
+    }
+
+    @Test
+    public void testPrepareWithLimitAndConverter() {
+        PreparedQuery<EnumEntity> query = warpdb.from(EnumEntity.class).where("roleName = ?", Role.GUEST).orderBy("id").desc().limit(2, 3)
+                .prepare();
+        assertEquals(List.of("E07", "E06", "E05"), query.list(Role.USER).stream().map(e -> e.id).collect(Collectors.toList()));
+        assertEquals(List.of("E00"), query.list(Role.ADMIN).stream().map(e -> e.id).collect(Collectors.toList()));
+        assertEquals(7, query.count(Role.USER));
+        assertEquals("E09", query.first(Role.USER).id);
+    }
+
+    @Test
+    public void testPrepareWithoutWhere() {
+        PreparedQuery<User> query = warpdb.from(User.class).orderBy("age").desc().prepare();
+        assertEquals(10, query.list().size());
+        assertEquals("U09", query.first().id);
+        assertEquals(10, query.count());
+    }
+
+    @Test
+    public void testArgumentsNotMatch() {
+        PreparedQuery<User> query = warpdb.from(User.class).where("tag = ?", "").prepare();
+        assertThrows(IllegalArgumentException.class, () -> {
+            query.list();
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            query.count("T0", "T1");
+        });
+    }
+
+    @Test
+    public void testArgumentTypesNotMatch() {
+        PreparedQuery<User> query = warpdb.from(User.class).where("tag = ?", "").and("age > ?", 0).prepare();
+        // widening is allowed:
+        assertEquals(4, query.count("T0", (short) 20));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> {
+            query.list("T0", 20L);
+        });
+        assertTrue(e.getMessage().contains("index 1"));
+        e = assertThrows(IllegalArgumentException.class, () -> {
+            query.first(123, 20);
+        });
+        assertTrue(e.getMessage().contains("index 0"));
+        PreparedQuery<EnumEntity> byRole = warpdb.from(EnumEntity.class).where("roleName = ?", Role.USER).prepare();
+        assertEquals(3, byRole.count(Role.ADMIN));
+        e = assertThrows(IllegalArgumentException.class, () -> {
+            byRole.count("ADMIN");
+        });
+        assertTrue(e.getMessage().contains("index 0"));
+    }
+}
@@ -0,0 +1,187 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbPublisherTest extends WarpDbTestBase {
+
+    ExecutorService executor;
+    List<Connection> connections = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void prepareData() {
+        // track connections to check if closed:
+        DataSource dataSource = new DelegatingDataSource(warpdb.jdbcTemplate.getDataSource()) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection conn = super.getConnection();
+                connections.add(conn);
+                return conn;
+            }
+        };
+        warpdb.jdbcTemplate = new JdbcTemplate(dataSource);
+        executor = Executors.newFixedThreadPool(2);
+        warpdb.setAsyncExecutor(executor);
+        for (int i = 0; i < 20; i++) {
+            User user = new User();
+            user.id = String.format("U%02d", i);
+            user.name = "Mr " + i;
+            user.email = "u" + i + "@somewhere.org";
+            user.tag = "T" + (i % 2);
+            user.setAge(20 + i);
+            warpdb.insert(user);
+        }
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testPublishAll() throws Exception {
+        TestSubscriber<User> subscriber = new TestSubscriber<>(Long.MAX_VALUE);
+        warpdb.from(User.class).where("tag = ?", "T1").orderBy("id").publish().subscribe(subscriber);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertEquals(10, subscriber.items.size());
+        assertEquals("U01", subscriber.items.get(0).id);
+        assertEquals(0, openConnections());
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        TestSubscriber<User> subscriber = new TestSubscriber<>(0);
+        warpdb.publish(User.class, "SELECT * FROM user ORDER BY id").subscribe(subscriber);
+        subscriber.subscription.request(3);
+        waitFor(() -> subscriber.items.size() == 3);
+        Thread.sleep(50);
+        // no more rows than requested:
+        assertEquals(3, subscriber.items.size());
+        assertEquals(1, openConnections());
+        subscriber.subscription.request(17);
+        waitFor(() -> subscriber.items.size() == 20);
+        assertEquals(1, subscriber.done.getCount());
+        // completion is signaled on next request:
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, openConnections());
+        assertEquals(List.of("U00", "U01", "U02"), subscriber.items.subList(0, 3).stream().map(u -> u.id).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCancelClosesCursor() throws Exception {
+        TestSubscriber<User> subscriber = new TestSubscriber<>(2);
+        warpdb.<User>publish("SELECT * FROM user ORDER BY id").subscribe(subscriber);
+        waitFor(() -> subscriber.items.size() == 2);
+        assertEquals(1, openConnections());
+        subscriber.subscription.cancel();
+        waitFor(() -> openConnections() == 0);
+        subscriber.subscription.request(5);
+        Thread.sleep(50);
+        assertEquals(2, subscriber.items.size());
+        assertEquals(1, subscriber.done.getCount());
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        TestSubscriber<User> subscriber = new TestSubscriber<>(0);
+        warpdb.from(User.class).publish().subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertEquals(0, openConnections());
+    }
+
+    @Test
+    public void testQueryError() throws Exception {
+        TestSubscriber<User> subscriber = new TestSubscriber<>(1);
+        warpdb.publish(User.class, "SELECT * FROM user WHERE no_such_column = ?", 1).subscribe(subscriber);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof RuntimeException);
+        assertEquals(0, openConnections());
+    }
+
+    int openConnections() {
+        int n = 0;
+        for (Connection conn : connections) {
+            try {
+                if (!conn.isClosed()) {
+                    n++;
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return n;
+    }
+
+    void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > end) {
+                throw new AssertionError("Timeout.");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    static class TestSubscriber<T> implements Flow.Subscriber<T> {
+
+        final long initialRequest;
+        final List<T> items = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.initialRequest > 0) {
+                subscription.request(this.initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            this.items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+            this.done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.done.countDown();
+        }
+    }
+}
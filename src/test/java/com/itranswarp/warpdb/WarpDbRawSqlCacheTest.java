@@ -0,0 +1,61 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import jakarta.persistence.NonUniqueResultException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbRawSqlCacheTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.id = "U" + i;
+            user.name = "Mr " + i;
+            user.email = "u" + i + "@somewhere.org";
+            warpdb.insert(user);
+        }
+    }
+
+    @Test
+    public void testResolveMapperOnce() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(3, warpdb.list("SELECT * FROM user ORDER BY id").size());
+        }
+        CacheStats stats = warpdb.getSqlCacheStats();
+        assertEquals(4, stats.hits);
+        assertEquals(1, stats.misses);
+        assertSame(warpdb.getMapper(User.class), warpdb.getMapper("SELECT * FROM user ORDER BY id"));
+    }
+
+    @Test
+    public void testUniqueAndFetch() {
+        User user = warpdb.unique("SELECT * FROM user WHERE id = ?", "U1");
+        assertEquals("Mr 1", user.name);
+        assertNull(warpdb.fetch("SELECT * FROM user WHERE id = ?", "X"));
+        assertThrows(NonUniqueResultException.class, () -> {
+            warpdb.fetch("SELECT * FROM user WHERE id > ?", "U0");
+        });
+        // existing limit is kept:
+        assertEquals("U2", ((User) warpdb.unique("SELECT * FROM user ORDER BY id DESC LIMIT 1")).id);
+    }
+
+    @Test
+    public void testUnknownTableNotCached() {
+        assertThrows(RuntimeException.class, () -> {
+            warpdb.list("SELECT * FROM unknown");
+        });
+        assertThrows(RuntimeException.class, () -> {
+            warpdb.list("SELECT 1");
+        });
+        assertEquals(0, warpdb.getSqlCacheStats().size);
+    }
+}
@@ -0,0 +1,253 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.itranswarp.warpdb.WarpDbPublisherTest.TestSubscriber;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbReplicaTest extends WarpDbTestBase {
+
+    JdbcTemplate replica0;
+    JdbcTemplate replica1;
+
+    @BeforeEach
+    public void setUpReplicas() {
+        replica0 = JdbcTemplateHsqldbFactory.createJdbcTemplate();
+        replica1 = JdbcTemplateHsqldbFactory.createJdbcTemplate();
+        // same rows with different names to tell where a read goes:
+        insertUser(warpdb.jdbcTemplate, "primary");
+        insertUser(replica0, "replica0");
+        insertUser(replica1, "replica1");
+        warpdb.setReplicaJdbcTemplates(List.of(replica0, replica1));
+    }
+
+    void insertUser(JdbcTemplate template, String name) {
+        WarpDb db = new WarpDb();
+        db.setBasePackages(List.of("com.itranswarp.warpdb.test"));
+        db.setJdbcTemplate(template);
+        db.init();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.id = "U" + i;
+            user.name = name;
+            user.email = "u" + i + "@somewhere.org";
+            user.setAge(20 + i);
+            db.insert(user);
+        }
+    }
+
+    @Test
+    public void testRoundRobin() {
+        assertEquals("replica0", warpdb.get(User.class, "U0").name);
+        assertEquals("replica1", warpdb.get(User.class, "U0").name);
+        assertEquals("replica0", warpdb.from(User.class).where("age = ?", 21).unique().name);
+        assertEquals("replica1", warpdb.<User>list("SELECT * FROM user ORDER BY id").get(0).name);
+        assertEquals(3, warpdb.from(User.class).count());
+        try (Stream<User> stream = warpdb.from(User.class).orderBy("id").stream()) {
+            assertEquals(List.of("replica1", "replica1", "replica1"), stream.map(u -> u.name).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testLeastOutstanding() {
+        warpdb.setLoadBalance(LoadBalance.LEAST_OUTSTANDING);
+        // open cursor keeps replica0 busy:
+        try (Stream<User> stream = warpdb.from(User.class).orderBy("id").stream()) {
+            assertEquals("replica0", stream.findFirst().get().name);
+            for (int i = 0; i < 5; i++) {
+                assertEquals("replica1", warpdb.get(User.class, "U1").name);
+            }
+        }
+        assertEquals(0, warpdb.replicaRouter.outstanding[0].get());
+        assertEquals(0, warpdb.replicaRouter.outstanding[1].get());
+    }
+
+    @Test
+    public void testWritesGoToPrimary() {
+        warpdb.setReadYourWritesWindow(0);
+        User user = new User();
+        user.id = "U9";
+        user.name = "primary";
+        user.email = "u9@somewhere.org";
+        warpdb.insert(user);
+        assertEquals("primary", warpdb.jdbcTemplate.queryForObject("SELECT name FROM user WHERE id = 'U9'", String.class));
+        assertEquals(0, replica0.queryForObject("SELECT count(*) FROM user WHERE id = 'U9'", Integer.class));
+        assertEquals(0, replica1.queryForObject("SELECT count(*) FROM user WHERE id = 'U9'", Integer.class));
+        // not replicated yet:
+        assertThrows(jakarta.persistence.EntityNotFoundException.class, () -> {
+            warpdb.get(User.class, "U9");
+        });
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception {
+        warpdb.setReadYourWritesWindow(200);
+        User user = warpdb.get(User.class, "U2");
+        assertEquals("replica0", user.name);
+        user.tag = "X";
+        warpdb.update(user);
+        // reads of this thread stay on primary within window:
+        assertEquals("X", warpdb.get(User.class, "U2").tag);
+        assertEquals("X", warpdb.get(User.class, "U2").tag);
+        // other thread reads from replica:
+        String[] tag = new String[] { "X" };
+        Thread t = new Thread(() -> {
+            tag[0] = warpdb.get(User.class, "U2").tag;
+        });
+        t.start();
+        t.join();
+        assertNull(tag[0]);
+        Thread.sleep(300);
+        assertNull(warpdb.get(User.class, "U2").tag);
+    }
+
+    @Test
+    public void testAsyncReadYourWrites() throws Exception {
+        warpdb.setReadYourWritesWindow(200);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        // delay async writes until released:
+        warpdb.setAsyncExecutor(r -> pool.execute(() -> {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            r.run();
+        }));
+        try {
+            User user = warpdb.get(User.class, "U2");
+            user.tag = "X";
+            CompletableFuture<Void> future = warpdb.async().update(user);
+            // reads of submitting thread go to primary while write is running:
+            assertEquals("primary", warpdb.get(User.class, "U2").name);
+            Thread.sleep(300);
+            assertEquals("primary", warpdb.get(User.class, "U2").name);
+            latch.countDown();
+            future.get(5, TimeUnit.SECONDS);
+            // and within window after write completes:
+            assertEquals("X", warpdb.get(User.class, "U2").tag);
+            Thread.sleep(300);
+            assertNull(warpdb.get(User.class, "U2").tag);
+            // async updateSql:
+            warpdb.async().updateSql("UPDATE user SET the_tag = ? WHERE id = ?", "Y", "U1").get(5, TimeUnit.SECONDS);
+            assertEquals("Y", warpdb.get(User.class, "U1").tag);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncReadAfterWrite() throws Exception {
+        warpdb.setReadYourWritesWindow(5000);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        warpdb.setAsyncExecutor(pool);
+        try {
+            User user = warpdb.get(User.class, "U2");
+            user.tag = "X";
+            warpdb.update(user);
+            // async reads use the window of submitting thread:
+            assertEquals("X", warpdb.async().get(User.class, "U2").get(5, TimeUnit.SECONDS).tag);
+            assertEquals("X", warpdb.from(User.class).where("id = ?", "U2").firstAsync().get(5, TimeUnit.SECONDS).tag);
+            TestSubscriber<User> subscriber = new TestSubscriber<>(Long.MAX_VALUE);
+            warpdb.from(User.class).where("id = ?", "U2").publish().subscribe(subscriber);
+            assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+            assertEquals("X", subscriber.items.get(0).tag);
+            // and withPrimary() scope:
+            warpdb.setReadYourWritesWindow(0);
+            assertEquals("primary", warpdb.withPrimary(() -> warpdb.async().get(User.class, "U0")).get(5, TimeUnit.SECONDS).name);
+            // async write does not keep the worker thread on primary:
+            warpdb.setReadYourWritesWindow(5000);
+            warpdb.async().updateSql("UPDATE user SET the_tag = ? WHERE id = ?", "Y", "U1").get(5, TimeUnit.SECONDS);
+            CompletableFuture<User>[] other = new CompletableFuture[1];
+            Thread t = new Thread(() -> {
+                other[0] = warpdb.async().get(User.class, "U1");
+            });
+            t.start();
+            t.join();
+            assertTrue(other[0].get(5, TimeUnit.SECONDS).name.startsWith("replica"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentPageWithPrimary() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        warpdb.setPagingExecutor(pool);
+        warpdb.setReadYourWritesWindow(200);
+        try {
+            warpdb.updateSql("DELETE FROM user WHERE id = ?", "U0");
+            // count and page are both read from primary:
+            PagedResults<User> results = warpdb.from(User.class).orderBy("id").list(1, 10);
+            assertEquals(2, results.page.totalItems);
+            assertEquals(List.of("U1", "U2"), results.results.stream().map(u -> u.id).collect(Collectors.toList()));
+            Thread.sleep(300);
+            results = warpdb.withPrimary(() -> warpdb.from(User.class).orderBy("id").list(1, 10));
+            assertEquals(2, results.page.totalItems);
+            assertEquals(List.of("primary", "primary"), results.results.stream().map(u -> u.name).collect(Collectors.toList()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testWithPrimary() {
+        assertEquals("primary", warpdb.withPrimary(() -> warpdb.get(User.class, "U0").name));
+        warpdb.withPrimary(() -> {
+            assertEquals("primary", warpdb.from(User.class).where("id = ?", "U1").first().name);
+            assertEquals("primary", warpdb.withPrimary(() -> warpdb.get(User.class, "U1").name));
+            assertEquals("primary", warpdb.get(User.class, "U1").name);
+        });
+        assertTrue(warpdb.get(User.class, "U0").name.startsWith("replica"));
+    }
+
+    @Test
+    public void testTransactionReadsFromPrimary() {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(warpdb.jdbcTemplate.getDataSource()));
+        String name = tx.execute(status -> {
+            return warpdb.get(User.class, "U0").name;
+        });
+        assertEquals("primary", name);
+        // read-your-writes window starts after commit:
+        tx.executeWithoutResult(status -> {
+            warpdb.updateSql("UPDATE user SET the_tag = ? WHERE id = ?", "Y", "U0");
+        });
+        assertEquals("Y", warpdb.get(User.class, "U0").tag);
+    }
+
+    @Test
+    public void testLockingReadFromPrimary() {
+        assertTrue(ReplicaRouter.isLockingRead("SELECT * FROM user WHERE id = ? FOR UPDATE"));
+        assertTrue(ReplicaRouter.isLockingRead("select * from user for share  "));
+        assertTrue(ReplicaRouter.isLockingRead("SELECT * FROM user LOCK IN SHARE MODE"));
+        assertFalse(ReplicaRouter.isLockingRead("SELECT * FROM user ORDER BY id"));
+        assertTrue(warpdb.readFromPrimary(warpdb.selectForUpdate().from(User.class).where("id = ?", "U0").sql()));
+        assertFalse(warpdb.readFromPrimary(warpdb.from(User.class).where("id = ?", "U0").sql()));
+    }
+
+    @Test
+    public void testNoReplica() {
+        warpdb.setReplicaJdbcTemplates(List.of());
+        assertEquals("primary", warpdb.get(User.class, "U0").name);
+    }
+}
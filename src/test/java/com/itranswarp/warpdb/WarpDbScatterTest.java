@@ -0,0 +1,218 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.itranswarp.warpdb.WarpDbPublisherTest.TestSubscriber;
+import com.itranswarp.warpdb.test.OrderEntity;
+import com.itranswarp.warpdb.test.PaymentEntity;
+
+public class WarpDbScatterTest extends WarpDbTestBase {
+
+    ExecutorService executor;
+    List<JdbcTemplate> shards;
+
+    @BeforeEach
+    public void setUpShards() {
+        shards = List.of(JdbcTemplateHsqldbFactory.createJdbcTemplate(), JdbcTemplateHsqldbFactory.createJdbcTemplate(),
+                JdbcTemplateHsqldbFactory.createJdbcTemplate());
+        executor = Executors.newCachedThreadPool();
+        warpdb.setAsyncExecutor(executor);
+        warpdb.setShardJdbcTemplates(shards);
+        List<OrderEntity> orders = new ArrayList<>();
+        for (long id = 0; id < 30; id++) {
+            OrderEntity order = new OrderEntity();
+            order.id = id;
+            order.userId = id % 10;
+            order.amount = id * 100;
+            order.discount = id % 4 == 0 ? null : id;
+            orders.add(order);
+        }
+        warpdb.insert(orders);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    List<Long> ids(List<OrderEntity> orders) {
+        return orders.stream().map(o -> o.id).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testMergeOrderBy() {
+        assertEquals(List.of(29L, 28L, 27L, 26L, 25L), ids(warpdb.from(OrderEntity.class).orderBy("amount").desc().limit(5).list()));
+        // ties are broken by id:
+        assertEquals(List.of(0L, 10L, 20L, 1L), ids(warpdb.from(OrderEntity.class).orderBy("userId").limit(4).list()));
+        assertEquals(List.of(23L, 13L, 3L), ids(warpdb.from(OrderEntity.class).where("userId = ?", 3).orderBy("id").desc().list()));
+        // default order by id:
+        List<OrderEntity> all = warpdb.from(OrderEntity.class).list();
+        assertEquals(30, all.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i, all.get(i).id);
+        }
+    }
+
+    @Test
+    public void testMergeNullOrder() {
+        // shards sort null as the largest value by default:
+        for (JdbcTemplate shard : shards) {
+            shard.execute("SET DATABASE SQL NULLS FIRST FALSE");
+        }
+        // null is the smallest value on all shards:
+        for (Keyset.NullOrdering nulls : List.of(Keyset.NullOrdering.NULLS_CLAUSE, Keyset.NullOrdering.CASE_EXPRESSION)) {
+            warpdb.nullOrdering = nulls;
+            assertEquals(List.of(0L, 4L, 8L, 12L, 16L, 20L, 24L, 28L, 1L, 2L, 3L, 5L, 6L),
+                    ids(warpdb.from(OrderEntity.class).orderBy("discount").limit(13).list()));
+            assertEquals(List.of(29L, 27L, 26L), ids(warpdb.from(OrderEntity.class).orderBy("discount").desc().limit(3).list()));
+            assertEquals(List.of(2L, 1L), ids(warpdb.from(OrderEntity.class).orderBy("discount").desc().limit(20, 2).list()));
+            assertEquals(List.of(28L, 24L), ids(warpdb.from(OrderEntity.class).orderBy("discount").desc().limit(22, 2).list()));
+        }
+    }
+
+    @Test
+    public void testMergeOrderByOfNullable() {
+        Keyset keyset = Keyset.of(warpdb.getMapper(OrderEntity.class), List.of("amount", "discount DESC"));
+        // null ordering is only added to nullable columns:
+        assertEquals(List.of("amount", "discount DESC NULLS LAST", "id DESC"), keyset.orderBy(Keyset.NullOrdering.NULLS_CLAUSE));
+        assertEquals(List.of("amount", "CASE WHEN discount IS NULL THEN 0 ELSE 1 END DESC", "discount DESC", "id DESC"),
+                keyset.orderBy(Keyset.NullOrdering.CASE_EXPRESSION));
+        assertEquals(List.of("amount", "discount DESC", "id DESC"), keyset.orderBy(Keyset.NullOrdering.NATIVE));
+    }
+
+    @Test
+    public void testMergeStringOrder() {
+        PaymentEntity payment = new PaymentEntity();
+        payment.id = "b";
+        payment.userId = 1;
+        warpdb.insert(payment);
+        payment.id = "A";
+        payment.userId = 2;
+        warpdb.insert(payment);
+        // string order depends on database collation:
+        assertThrows(UnsupportedOperationException.class, () -> {
+            warpdb.from(PaymentEntity.class).list();
+        });
+        warpdb.setShardStringComparator(Comparator.naturalOrder());
+        assertEquals(List.of("A", "b"), warpdb.from(PaymentEntity.class).list().stream().map(p -> p.id).collect(Collectors.toList()));
+        assertEquals(2, warpdb.from(PaymentEntity.class).count());
+    }
+
+    @Test
+    public void testLimitPushDown() {
+        // each shard returns offset + max rows, offset is skipped after merge:
+        assertEquals(List.of(4L, 5L, 6L), ids(warpdb.from(OrderEntity.class).orderBy("amount").limit(4, 3).list()));
+        assertEquals(List.of(), ids(warpdb.from(OrderEntity.class).orderBy("amount").limit(30, 3).list()));
+        assertEquals(29, warpdb.from(OrderEntity.class).orderBy("amount").desc().first().id);
+        assertEquals(7, warpdb.from(OrderEntity.class).where("amount = ?", 700).unique().id);
+        assertNull(warpdb.from(OrderEntity.class).where("amount < ?", 0).first());
+    }
+
+    @Test
+    public void testCount() {
+        assertEquals(30, warpdb.from(OrderEntity.class).count());
+        assertEquals(3, warpdb.from(OrderEntity.class).where("userId = ?", 5).count());
+        assertEquals(0, warpdb.from(OrderEntity.class).where("userId > ?", 100).count());
+    }
+
+    @Test
+    public void testStream() {
+        try (Stream<OrderEntity> stream = warpdb.from(OrderEntity.class).orderBy("amount").desc().stream()) {
+            Iterator<OrderEntity> it = stream.iterator();
+            for (long id = 29; id >= 0; id--) {
+                assertEquals(id, it.next().id);
+            }
+            assertTrue(!it.hasNext());
+        }
+        List<Long> ids = new ArrayList<>();
+        warpdb.from(OrderEntity.class).where("userId = ?", 9).orderBy("amount").forEach(o -> ids.add(o.id));
+        assertEquals(List.of(9L, 19L, 29L), ids);
+    }
+
+    @Test
+    public void testMergeIterator() {
+        ShardMergeIterator<Integer> it = new ShardMergeIterator<>(
+                List.of(List.of(1, 4, 7).iterator(), List.<Integer>of().iterator(), List.of(2, 3, 9).iterator(), List.of(4, 5).iterator()),
+                Integer::compare);
+        List<Integer> list = new ArrayList<>();
+        it.forEachRemaining(list::add);
+        assertEquals(List.of(1, 2, 3, 4, 4, 5, 7, 9), list);
+    }
+
+    @Test
+    public void testPage() {
+        PagedResults<OrderEntity> results = warpdb.from(OrderEntity.class).orderBy("id").list(2, 10);
+        assertEquals(30, results.page.totalItems);
+        assertEquals(3, results.page.totalPages);
+        assertEquals(10, results.results.get(0).id);
+        assertEquals(19, results.results.get(9).id);
+        results = warpdb.from(OrderEntity.class).orderBy("id").list(3, 10, CountMode.NONE);
+        assertEquals(10, results.results.size());
+        assertTrue(!results.page.hasNext);
+    }
+
+    @Test
+    public void testSeek() {
+        SeekResults<OrderEntity> results = warpdb.from(OrderEntity.class).orderBy("userId").seek(4);
+        assertEquals(List.of(0L, 10L, 20L, 1L), ids(results.results));
+        results = warpdb.from(OrderEntity.class).orderBy("userId").seek(results.nextToken, 4);
+        assertEquals(List.of(11L, 21L, 2L, 12L), ids(results.results));
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        assertEquals(30, warpdb.from(OrderEntity.class).countAsync().get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(29L, 28L), ids(warpdb.from(OrderEntity.class).orderBy("id").desc().limit(2).listAsync().get(5, TimeUnit.SECONDS)));
+        assertEquals(29, warpdb.from(OrderEntity.class).orderBy("id").desc().firstAsync().get(5, TimeUnit.SECONDS).id);
+        assertEquals(5, warpdb.from(OrderEntity.class).where("amount = ?", 500).uniqueAsync().get(5, TimeUnit.SECONDS).id);
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        TestSubscriber<OrderEntity> subscriber = new TestSubscriber<>(Long.MAX_VALUE);
+        warpdb.from(OrderEntity.class).where("userId < ?", 2).orderBy("amount").desc().publish().subscribe(subscriber);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertEquals(List.of(21L, 20L, 11L, 10L, 1L, 0L), ids(subscriber.items));
+    }
+
+    @Test
+    public void testUpdateAndDelete() {
+        assertEquals(3, warpdb.from(OrderEntity.class).where("userId = ?", 1).set("amount", 0).update());
+        assertEquals(4, warpdb.from(OrderEntity.class).where("amount = ?", 0).count());
+        assertEquals(4, warpdb.from(OrderEntity.class).where("amount = ?", 0).delete());
+        assertEquals(26, warpdb.from(OrderEntity.class).count());
+    }
+
+    @Test
+    public void testPrepareNotSupported() {
+        assertThrows(UnsupportedOperationException.class, () -> {
+            warpdb.from(OrderEntity.class).where("userId = ?", 1).prepare();
+        });
+    }
+
+    @Test
+    public void testQueryError() {
+        assertThrows(RuntimeException.class, () -> {
+            warpdb.from(OrderEntity.class).where("userId = ?", "not-a-number").list();
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.TypesEntity;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbSeekQueryTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            User u = new User();
+            u.id = String.format("U%03d", i);
+            u.name = "Mr " + i;
+            u.email = "u" + i + "@somewhere.org";
+            u.tag = "T" + (i % 3);
+            // duplicate createdAt to test tiebreaker:
+            u.createdAt = 1000 + i / 4;
+            users.add(u);
+        }
+        warpdb.insert(users);
+    }
+
+    @Test
+    public void testSeekByToken() {
+        List<String> expected = warpdb.from(User.class).orderBy("createdAt").desc().orderBy("id").desc().list().stream().map(u -> u.id)
+                .collect(Collectors.toList());
+        List<String> actual = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            SeekResults<User> sr = warpdb.from(User.class).orderBy("createdAt").desc().seek(token, 7);
+            sr.results.forEach(u -> actual.add(u.id));
+            token = sr.getNextToken();
+            pages++;
+        } while (token != null);
+        assertEquals(4, pages);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSeekAfterRow() {
+        SeekResults<User> first = warpdb.from(User.class).where("tag=?", "T1").orderBy("createdAt").seek(3);
+        assertEquals(List.of("U001", "U004", "U007"), first.results.stream().map(u -> u.id).collect(Collectors.toList()));
+        assertTrue(first.hasNext());
+        SeekResults<User> next = warpdb.from(User.class).where("tag=?", "T1").orderBy("createdAt").seekAfter(first.results.get(2), 10);
+        assertEquals(List.of("U010", "U013", "U016", "U019", "U022"), next.results.stream().map(u -> u.id).collect(Collectors.toList()));
+        assertFalse(next.hasNext());
+        assertNull(next.nextToken);
+    }
+
+    @Test
+    public void testSeekMixedDirections() {
+        List<String> expected = warpdb.from(User.class).orderBy("tag").orderBy("createdAt").desc().orderBy("id").desc().list().stream()
+                .map(u -> u.id).collect(Collectors.toList());
+        List<String> actual = new ArrayList<>();
+        SeekResults<User> sr = warpdb.from(User.class).orderBy("tag").orderBy("createdAt").desc().seek(4);
+        sr.results.forEach(u -> actual.add(u.id));
+        while (sr.hasNext()) {
+            sr = warpdb.from(User.class).orderBy("tag").orderBy("createdAt").desc().seek(sr.nextToken, 4);
+            sr.results.forEach(u -> actual.add(u.id));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testSeekNullValues() {
+        warpdb.updateSql("UPDATE user SET the_tag = NULL WHERE createdAt < ?", 1002);
+        // null is the smallest value:
+        Comparator<User> byTag = Comparator.comparing((User u) -> u.tag, Comparator.nullsFirst(Comparator.naturalOrder()));
+        List<String> asc = warpdb.from(User.class).list().stream().sorted(byTag.thenComparing(u -> u.id)).map(u -> u.id)
+                .collect(Collectors.toList());
+        List<String> desc = new ArrayList<>(asc);
+        Collections.reverse(desc);
+        for (Keyset.NullOrdering nulls : Keyset.NullOrdering.values()) {
+            warpdb.nullOrdering = nulls;
+            assertEquals(asc, seekByTag(false));
+            assertEquals(desc, seekByTag(true));
+        }
+        // order of null does not depend on database default:
+        warpdb.jdbcTemplate.execute("SET DATABASE SQL NULLS FIRST FALSE");
+        for (Keyset.NullOrdering nulls : List.of(Keyset.NullOrdering.NULLS_CLAUSE, Keyset.NullOrdering.CASE_EXPRESSION)) {
+            warpdb.nullOrdering = nulls;
+            assertEquals(asc, seekByTag(false));
+            assertEquals(desc, seekByTag(true));
+        }
+    }
+
+    List<String> seekByTag(boolean desc) {
+        List<String> ids = new ArrayList<>();
+        String token = null;
+        do {
+            OrderBy<User> orderBy = warpdb.from(User.class).orderBy("tag");
+            SeekResults<User> sr = (desc ? orderBy.desc() : orderBy).seek(token, 3);
+            sr.results.forEach(u -> ids.add(u.id));
+            token = sr.nextToken;
+        } while (token != null);
+        return ids;
+    }
+
+    @Test
+    public void testNullOrdering() {
+        assertEquals(Keyset.NullOrdering.NATIVE, Keyset.NullOrdering.of("MySQL"));
+        assertEquals(Keyset.NullOrdering.NATIVE, Keyset.NullOrdering.of("Microsoft SQL Server"));
+        assertEquals(Keyset.NullOrdering.NULLS_CLAUSE, Keyset.NullOrdering.of("PostgreSQL"));
+        assertEquals(Keyset.NullOrdering.NULLS_CLAUSE, Keyset.NullOrdering.of("HSQL Database Engine"));
+        assertEquals(Keyset.NullOrdering.CASE_EXPRESSION, Keyset.NullOrdering.of(null));
+        assertEquals(Keyset.NullOrdering.NULLS_CLAUSE, warpdb.nullOrdering());
+    }
+
+    @Test
+    public void testSeekByMismatchedToken() {
+        SeekResults<User> sr = warpdb.from(User.class).orderBy("createdAt").seek(5);
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.from(User.class).orderBy("name").seek(sr.nextToken, 5);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.from(User.class).orderBy("createdAt").seek("not-a-token", 5);
+        });
+    }
+
+    @Test
+    public void testSeekByDate() {
+        long base = 1577836800000L;
+        for (int i = 0; i < 10; i++) {
+            TypesEntity t = new TypesEntity();
+            t.id = String.format("T%02d", i);
+            // duplicate dates with millisecond part:
+            t.dateTime = new java.util.Date(base + (i / 2) * 1001);
+            warpdb.insert(t);
+        }
+        List<String> actual = new ArrayList<>();
+        SeekResults<TypesEntity> sr = warpdb.from(TypesEntity.class).orderBy("dateTime").desc().seek(3);
+        sr.results.forEach(t -> actual.add(t.id));
+        while (sr.hasNext()) {
+            sr = warpdb.from(TypesEntity.class).orderBy("dateTime").desc().seek(sr.nextToken, 3);
+            sr.results.forEach(t -> actual.add(t.id));
+        }
+        assertEquals(List.of("T09", "T08", "T07", "T06", "T05", "T04", "T03", "T02", "T01", "T00"), actual);
+    }
+
+    @Test
+    public void testDateTokenValues() {
+        java.sql.Timestamp ts = java.sql.Timestamp.valueOf("2020-01-01 00:00:00.123456789");
+        assertEquals(ts, Keyset.fromString(java.util.Date.class, Keyset.toString(ts)));
+        assertEquals(ts, Keyset.fromString(java.sql.Timestamp.class, Keyset.toString(ts)));
+        java.util.Date date = new java.util.Date(1577836800123L);
+        assertEquals(date.getTime(), ((java.util.Date) Keyset.fromString(java.util.Date.class, Keyset.toString(date))).getTime());
+        java.sql.Date sqlDate = java.sql.Date.valueOf("2020-01-01");
+        assertEquals(sqlDate, Keyset.fromString(java.sql.Date.class, Keyset.toString(sqlDate)));
+    }
+}
@@ -0,0 +1,253 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.itranswarp.warpdb.test.OrderEntity;
+import com.itranswarp.warpdb.test.PaymentEntity;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbShardTest extends WarpDbTestBase {
+
+    ExecutorService executor;
+    List<JdbcTemplate> shards;
+
+    @BeforeEach
+    public void setUpShards() {
+        shards = List.of(JdbcTemplateHsqldbFactory.createJdbcTemplate(), JdbcTemplateHsqldbFactory.createJdbcTemplate(),
+                JdbcTemplateHsqldbFactory.createJdbcTemplate());
+        executor = Executors.newFixedThreadPool(3);
+        warpdb.setAsyncExecutor(executor);
+        warpdb.setShardJdbcTemplates(shards);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    OrderEntity newOrder(long id) {
+        OrderEntity order = new OrderEntity();
+        order.id = id;
+        order.userId = id % 10;
+        order.amount = id * 100;
+        return order;
+    }
+
+    int countOrders(JdbcTemplate template) {
+        return template.queryForObject("SELECT count(*) FROM orders", Integer.class);
+    }
+
+    @Test
+    public void testHashShard() {
+        for (long id = 0; id < 6; id++) {
+            warpdb.insert(newOrder(id));
+        }
+        // id % 3 selects shard:
+        for (int i = 0; i < 3; i++) {
+            assertEquals(2, countOrders(shards.get(i)));
+            assertEquals(List.of((long) i, (long) i + 3), shards.get(i).queryForList("SELECT id FROM orders ORDER BY id", Long.class));
+        }
+        assertEquals(0, countOrders(warpdb.jdbcTemplate));
+        assertEquals(400, warpdb.get(OrderEntity.class, 4L).amount);
+        assertNull(warpdb.fetch(OrderEntity.class, 9L));
+    }
+
+    @Test
+    public void testRangeShard() {
+        warpdb.setShardStrategy(ShardStrategy.range(100L, 200L));
+        warpdb.insert(newOrder(1));
+        warpdb.insert(newOrder(100));
+        warpdb.insert(newOrder(150));
+        warpdb.insert(newOrder(999));
+        assertEquals(1, countOrders(shards.get(0)));
+        assertEquals(2, countOrders(shards.get(1)));
+        assertEquals(1, countOrders(shards.get(2)));
+        assertEquals(99900, warpdb.get(OrderEntity.class, 999L).amount);
+    }
+
+    @Test
+    public void testUnshardedEntityOnPrimary() {
+        User user = new User();
+        user.id = "U0";
+        user.name = "Bob";
+        user.email = "bob@somewhere.org";
+        warpdb.insert(user);
+        assertEquals(1, warpdb.jdbcTemplate.queryForObject("SELECT count(*) FROM user", Integer.class));
+        assertEquals("Bob", warpdb.get(User.class, "U0").name);
+        // mixed batch:
+        warpdb.remove(List.of(user, newOrder(0)));
+        assertEquals(0, warpdb.jdbcTemplate.queryForObject("SELECT count(*) FROM user", Integer.class));
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        OrderEntity order = newOrder(5);
+        warpdb.insert(order);
+        order.amount = 1;
+        warpdb.update(order);
+        assertEquals(1, shards.get(2).queryForObject("SELECT amount FROM orders WHERE id = 5", Long.class));
+        order.amount = 2;
+        warpdb.updateProperties(order, "amount");
+        assertEquals(2, warpdb.get(OrderEntity.class, 5L).amount);
+        warpdb.remove(order);
+        assertEquals(0, countOrders(shards.get(2)));
+    }
+
+    @Test
+    public void testBatchAcrossShards() {
+        List<OrderEntity> orders = new ArrayList<>();
+        for (long id = 0; id < 30; id++) {
+            orders.add(newOrder(id));
+        }
+        warpdb.insert(orders);
+        for (JdbcTemplate shard : shards) {
+            assertEquals(10, countOrders(shard));
+        }
+        List<OrderEntity> found = warpdb.fetchAll(OrderEntity.class, List.of(29L, 0L, 99L, 13L));
+        // missing id is skipped:
+        assertEquals(3, found.size());
+        assertEquals(29, found.get(0).id);
+        assertEquals(0, found.get(1).id);
+        assertEquals(13, found.get(2).id);
+
+        for (OrderEntity order : orders) {
+            order.amount = -1;
+        }
+        warpdb.update(orders);
+        for (JdbcTemplate shard : shards) {
+            assertEquals(10, shard.queryForObject("SELECT count(*) FROM orders WHERE amount = -1", Integer.class));
+        }
+        warpdb.remove(orders.subList(0, 15));
+        assertEquals(15, countOrders(shards.get(0)) + countOrders(shards.get(1)) + countOrders(shards.get(2)));
+    }
+
+    @Test
+    public void testVersionConflictAcrossShards() {
+        List<OrderEntity> orders = new ArrayList<>();
+        for (long id = 0; id < 6; id++) {
+            orders.add(newOrder(id));
+        }
+        warpdb.insert(orders);
+        // stale version of orders 1 and 2 on different shards:
+        shards.get(1).update("UPDATE orders SET version = version + 1 WHERE id = 1");
+        shards.get(2).update("UPDATE orders SET version = version + 1 WHERE id = 2");
+        VersionConflictException e = assertThrows(VersionConflictException.class, () -> {
+            warpdb.update(orders);
+        });
+        assertEquals(2, e.getEntities().size());
+    }
+
+    @Test
+    public void testBatchInTransactionOnCallerThread() {
+        // transaction of shard 0:
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(shards.get(0).getDataSource()));
+        List<OrderEntity> orders = new ArrayList<>();
+        for (long id = 0; id < 6; id++) {
+            orders.add(newOrder(id));
+        }
+        tx.executeWithoutResult(status -> {
+            warpdb.insert(orders);
+            assertEquals(3, warpdb.from(OrderEntity.class).where("userId < ?", 3).count());
+            status.setRollbackOnly();
+        });
+        // writes of shard 0 joined the transaction and were rolled back:
+        assertEquals(0, countOrders(shards.get(0)));
+        assertEquals(2, countOrders(shards.get(1)));
+        assertEquals(2, countOrders(shards.get(2)));
+        assertNull(warpdb.defaultShardExecutor);
+    }
+
+    @Test
+    public void testFixedSizeExecutors() throws Exception {
+        ExecutorService single = Executors.newFixedThreadPool(1);
+        ExecutorService singleShard = Executors.newFixedThreadPool(1);
+        try {
+            warpdb.setAsyncExecutor(single);
+            warpdb.setShardExecutor(singleShard);
+            List<OrderEntity> orders = new ArrayList<>();
+            for (long id = 0; id < 30; id++) {
+                orders.add(newOrder(id));
+            }
+            // async tasks which fan out to shards do not wait for their own executor:
+            warpdb.async().insert(orders).get(5, TimeUnit.SECONDS);
+            assertEquals(30, warpdb.from(OrderEntity.class).countAsync().get(5, TimeUnit.SECONDS));
+            assertEquals(29, warpdb.from(OrderEntity.class).orderBy("id").desc().firstAsync().get(5, TimeUnit.SECONDS).id);
+            // nested fan-out within a shard task runs on the shard thread:
+            CompletableFuture<Void> nested = CompletableFuture.runAsync(() -> {
+                warpdb.forEachShard(Map.of(0, List.of(100L, 101L, 102L), 1, List.of(103L, 104L, 105L)), (ids) -> {
+                    warpdb.insert(ids.stream().map(id -> newOrder(id)).collect(Collectors.toList()));
+                });
+            }, single);
+            nested.get(5, TimeUnit.SECONDS);
+            assertEquals(36, warpdb.from(OrderEntity.class).count());
+            assertEquals(12, countOrders(shards.get(0)));
+        } finally {
+            single.shutdown();
+            singleShard.shutdown();
+        }
+    }
+
+    @Test
+    public void testShardKeyNotId() {
+        PaymentEntity p = new PaymentEntity();
+        p.id = "P1";
+        p.userId = 4;
+        p.amount = 100;
+        warpdb.insert(p);
+        assertEquals(1, shards.get(1).queryForObject("SELECT count(*) FROM payments", Integer.class));
+        // fetch by id looks up each shard:
+        assertEquals(4, warpdb.get(PaymentEntity.class, "P1").userId);
+        Map<Object, PaymentEntity> map = warpdb.fetchMap(PaymentEntity.class, List.of("P1", "P2"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testHashStrategy() {
+        ShardStrategy hash = ShardStrategy.hash();
+        assertEquals(2, hash.shardOf(5L, 3));
+        assertEquals(1, hash.shardOf(-5L, 3));
+        assertEquals(Math.floorMod("abc".hashCode(), 4), hash.shardOf("abc", 4));
+    }
+
+    @Test
+    public void testRangeStrategy() {
+        ShardStrategy range = ShardStrategy.range("g", "p");
+        assertEquals(0, range.shardOf("apple", 3));
+        assertEquals(1, range.shardOf("g", 3));
+        assertEquals(2, range.shardOf("zoo", 3));
+        assertThrows(IllegalStateException.class, () -> {
+            range.shardOf("a", 2);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            ShardStrategy.range(200L, 100L);
+        });
+    }
+
+    @Test
+    public void testShardOfKey() {
+        PaymentEntity p = new PaymentEntity();
+        p.id = "P1";
+        assertEquals(0, warpdb.shardOf(p));
+        assertThrows(IllegalArgumentException.class, () -> {
+            warpdb.shardRouter.shardOfKey(null);
+        });
+    }
+}
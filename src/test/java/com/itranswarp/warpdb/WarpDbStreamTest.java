@@ -0,0 +1,91 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.persistence.PostLoad;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbStreamTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            User u = new User();
+            u.id = String.format("U%03d", i);
+            u.name = "Mr " + i;
+            u.email = "u" + i + "@somewhere.org";
+            u.tag = i % 2 == 0 ? "EVEN" : "ODD";
+            users.add(u);
+        }
+        warpdb.insert(users);
+        warpdb.setFetchSize(7);
+    }
+
+    @Test
+    public void testStreamByCriteria() {
+        try (Stream<User> stream = warpdb.from(User.class).where("tag=?", "ODD").orderBy("id").stream()) {
+            List<User> users = stream.collect(Collectors.toList());
+            assertEquals(50, users.size());
+            assertEquals("U001", users.get(0).id);
+            assertEquals("U099", users.get(49).id);
+            for (User u : users) {
+                assertTrue(u.callbacks.contains(PostLoad.class));
+            }
+        }
+    }
+
+    @Test
+    public void testStreamWithLimit() {
+        try (Stream<User> stream = warpdb.from(User.class).orderBy("id").desc().limit(10, 5).stream()) {
+            List<String> ids = stream.map(u -> u.id).collect(Collectors.toList());
+            assertEquals(List.of("U089", "U088", "U087", "U086", "U085"), ids);
+        }
+    }
+
+    @Test
+    public void testStreamPartiallyConsumed() {
+        try (Stream<User> stream = warpdb.from(User.class).stream()) {
+            assertEquals(3, stream.limit(3).count());
+        }
+        // connection is released and next query works:
+        assertEquals(100, warpdb.from(User.class).count());
+    }
+
+    @Test
+    public void testForEachByCriteria() {
+        List<String> names = new ArrayList<>();
+        warpdb.from(User.class).where("tag=?", "EVEN").orderBy("id").forEach(u -> {
+            assertTrue(u.callbacks.contains(PostLoad.class));
+            names.add(u.name);
+        });
+        assertEquals(50, names.size());
+        assertEquals("Mr 0", names.get(0));
+    }
+
+    @Test
+    public void testStreamBySql() {
+        try (Stream<User> stream = warpdb.stream("SELECT * FROM User WHERE id >= ? ORDER BY id", "U090")) {
+            assertEquals(10, stream.count());
+        }
+        try (Stream<User> stream = warpdb.stream(User.class, "SELECT id, name FROM User ORDER BY id")) {
+            User first = stream.findFirst().get();
+            assertEquals("U000", first.id);
+            assertEquals("Mr 0", first.name);
+            assertTrue(first.callbacks.contains(PostLoad.class));
+        }
+        List<String> ids = new ArrayList<>();
+        warpdb.forEach(User.class, u -> ids.add(u.id), "SELECT * FROM User WHERE the_tag = ?", "ODD");
+        assertEquals(50, ids.size());
+    }
+}
@@ -0,0 +1,112 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.TypesEntity;
+
+public class WarpDbTypedColumnTest extends WarpDbTestBase {
+
+    @Test
+    public void testPrimitiveSetterBound() throws Exception {
+        assertTrue(Accessors.accessor(TypesEntity.class.getField("primitiveLong")).primitiveSetter instanceof ObjLongConsumer);
+        assertTrue(Accessors.accessor(TypesEntity.class.getField("primitiveInt")).primitiveSetter instanceof ObjIntConsumer);
+        assertTrue(Accessors.accessor(TypesEntity.class.getField("primitiveDouble")).primitiveSetter instanceof ObjDoubleConsumer);
+        assertNull(Accessors.accessor(TypesEntity.class.getField("wrapperLong")).primitiveSetter);
+        assertTrue(Accessors.accessor(TypesEntity.class.getMethod("getCount"),
+                TypesEntity.class.getMethod("setCount", long.class)).primitiveSetter instanceof ObjLongConsumer);
+    }
+
+    @Test
+    public void testReadValues() {
+        TypesEntity t = new TypesEntity();
+        t.id = "t1";
+        t.primitiveLong = 123456789012L;
+        t.primitiveInt = 123;
+        t.primitiveDouble = 1.5;
+        t.primitiveBoolean = true;
+        t.wrapperLong = 98765432109L;
+        t.wrapperInt = 321;
+        t.wrapperDouble = 2.5;
+        t.wrapperBoolean = Boolean.TRUE;
+        t.decimal = new BigDecimal("12.34");
+        t.localDate = LocalDate.of(2020, 2, 29);
+        t.setCount(99);
+        warpdb.insert(t);
+        TypesEntity r = warpdb.get(TypesEntity.class, "t1");
+        assertEquals(123456789012L, r.primitiveLong);
+        assertEquals(123, r.primitiveInt);
+        assertEquals(1.5, r.primitiveDouble);
+        assertTrue(r.primitiveBoolean);
+        assertEquals(98765432109L, r.wrapperLong);
+        assertEquals(321, r.wrapperInt);
+        assertEquals(2.5, r.wrapperDouble);
+        assertEquals(Boolean.TRUE, r.wrapperBoolean);
+        assertEquals(new BigDecimal("12.34"), r.decimal);
+        assertEquals(LocalDate.of(2020, 2, 29), r.localDate);
+        assertEquals(99, r.getCount());
+    }
+
+    @Test
+    public void testReadNulls() {
+        TypesEntity t = new TypesEntity();
+        t.id = "t2";
+        warpdb.insert(t);
+        TypesEntity r = warpdb.get(TypesEntity.class, "t2");
+        assertEquals(0, r.primitiveLong);
+        assertEquals(0, r.primitiveInt);
+        assertFalse(r.primitiveBoolean);
+        assertNull(r.wrapperLong);
+        assertNull(r.wrapperInt);
+        assertNull(r.wrapperDouble);
+        assertNull(r.wrapperBoolean);
+        assertNull(r.decimal);
+        assertNull(r.localDate);
+    }
+
+    @Test
+    public void testBindNullsOnUpdate() {
+        TypesEntity t = new TypesEntity();
+        t.id = "t3";
+        t.wrapperLong = 1L;
+        t.wrapperInt = 2;
+        t.wrapperDouble = 3.0;
+        t.wrapperBoolean = Boolean.FALSE;
+        t.decimal = new BigDecimal("1.00");
+        t.localDate = LocalDate.of(2021, 1, 1);
+        warpdb.insert(Arrays.asList(t));
+        t.wrapperLong = null;
+        t.wrapperInt = null;
+        t.decimal = null;
+        warpdb.update(t);
+        t.wrapperDouble = null;
+        t.localDate = null;
+        warpdb.updateProperties(t, "wrapperDouble", "localDate");
+        TypesEntity r = warpdb.get(TypesEntity.class, "t3");
+        assertNull(r.wrapperLong);
+        assertNull(r.wrapperInt);
+        assertNull(r.decimal);
+        assertNull(r.wrapperDouble);
+        assertNull(r.localDate);
+        assertEquals(Boolean.FALSE, r.wrapperBoolean);
+        r.wrapperBoolean = null;
+        r.primitiveLong = 7;
+        warpdb.update(Arrays.asList(r));
+        TypesEntity r2 = warpdb.get(TypesEntity.class, "t3");
+        assertNull(r2.wrapperBoolean);
+        assertEquals(7, r2.primitiveLong);
+        warpdb.remove(r2);
+        assertNull(warpdb.fetch(TypesEntity.class, "t3"));
+    }
+}
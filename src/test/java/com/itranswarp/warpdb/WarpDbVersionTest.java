@@ -0,0 +1,132 @@
+package com.itranswarp.warpdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.OptimisticLockException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.itranswarp.warpdb.test.EnumEntity;
+import com.itranswarp.warpdb.test.Role;
+import com.itranswarp.warpdb.test.User;
+
+public class WarpDbVersionTest extends WarpDbTestBase {
+
+    @BeforeEach
+    public void prepareData() {
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.id = "U" + i;
+            user.name = "Mr " + i;
+            user.email = "u" + i + "@somewhere.org";
+            warpdb.insert(user);
+        }
+    }
+
+    @Test
+    public void testUpdateIncreaseVersion() {
+        User user = warpdb.get(User.class, "U0");
+        assertEquals(0, user.version);
+        user.name = "Bob";
+        warpdb.update(user);
+        assertEquals(1, user.version);
+        warpdb.update(user);
+        assertEquals(2, user.version);
+        assertEquals(2, warpdb.get(User.class, "U0").version);
+    }
+
+    @Test
+    public void testUpdateConflict() {
+        User user1 = warpdb.get(User.class, "U0");
+        User user2 = warpdb.get(User.class, "U0");
+        user1.name = "Bob";
+        warpdb.update(user1);
+        user2.name = "Alice";
+        VersionConflictException e = assertThrows(VersionConflictException.class, () -> {
+            warpdb.update(user2);
+        });
+        assertSame(user2, e.getEntity());
+        // version of stale bean is unchanged:
+        assertEquals(0, user2.version);
+        assertEquals("Bob", warpdb.get(User.class, "U0").name);
+        // deleted by others:
+        warpdb.remove(warpdb.get(User.class, "U0"));
+        assertThrows(OptimisticLockException.class, () -> {
+            warpdb.update(user1);
+        });
+    }
+
+    @Test
+    public void testUpdatePropertiesConflict() {
+        User user1 = warpdb.get(User.class, "U1");
+        User user2 = warpdb.get(User.class, "U1");
+        user1.name = "Bob";
+        warpdb.updateProperties(user1, "name");
+        assertEquals(1, user1.version);
+        user2.tag = "T9";
+        assertThrows(VersionConflictException.class, () -> {
+            warpdb.updateProperties(user2, "tag");
+        });
+        // version specified explicitly is written without check:
+        user2.version = 10;
+        warpdb.updateProperties(user2, "tag", "version");
+        User bak = warpdb.get(User.class, "U1");
+        assertEquals(10, bak.version);
+        assertEquals("T9", bak.tag);
+    }
+
+    @Test
+    public void testBatchUpdateConflict() {
+        List<User> users = warpdb.from(User.class).orderBy("id").list();
+        // U1 and U3 are updated by others:
+        warpdb.updateSql("UPDATE User SET version = version + 1 WHERE id = ? OR id = ?", "U1", "U3");
+        for (User user : users) {
+            user.name = user.name + " (updated)";
+        }
+        VersionConflictException e = assertThrows(VersionConflictException.class, () -> {
+            warpdb.update(users);
+        });
+        assertEquals(List.of(users.get(1), users.get(3)), e.getEntities());
+        List<Long> versions = new ArrayList<>();
+        users.forEach(u -> versions.add(u.version));
+        assertEquals(List.of(1L, 0L, 1L, 0L, 1L), versions);
+        assertEquals("Mr 0 (updated)", warpdb.get(User.class, "U0").name);
+        assertEquals("Mr 1", warpdb.get(User.class, "U1").name);
+    }
+
+    @Test
+    public void testDirtyTrackingWithVersion() {
+        warpdb.setDirtyTracking(true);
+        User user = warpdb.get(User.class, "U2");
+        User stale = warpdb.get(User.class, "U2");
+        user.tag = "T1";
+        warpdb.update(user);
+        assertEquals(1, user.version);
+        stale.tag = "T2";
+        assertThrows(VersionConflictException.class, () -> {
+            warpdb.update(stale);
+        });
+        assertEquals("T1", warpdb.get(User.class, "U2").tag);
+    }
+
+    @Test
+    public void testBulkUpdateIncreaseVersion() {
+        EnumEntity ee = new EnumEntity();
+        ee.id = "E1";
+        ee.name = "Bob";
+        warpdb.insert(ee);
+        EnumEntity loaded = warpdb.get(EnumEntity.class, "E1");
+        assertEquals(1, warpdb.from(EnumEntity.class).where("id = ?", "E1").set("roleName", Role.VIP).update());
+        assertEquals(1, warpdb.get(EnumEntity.class, "E1").version);
+        loaded.name = "Alice";
+        assertThrows(VersionConflictException.class, () -> {
+            warpdb.update(loaded);
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package com.itranswarp.warpdb.invalid.multishardkey;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import com.itranswarp.warpdb.ShardKey;
+
+@Entity
+public class MultiShardKeyEntity {
+
+	@Id
+	@ShardKey
+	public long id;
+
+	@ShardKey
+	@Column(nullable = false)
+	public long userId;
+
+}
@@ -0,0 +1,101 @@
+package com.itranswarp.warpdb.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import jakarta.persistence.Entity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.itranswarp.warpdb.util.ClassUtils;
+
+public class EntityIndexProcessorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testGenerateAndLoadIndex() throws Exception {
+        Path src = dir.resolve("src/com/example/model");
+        Files.createDirectories(src);
+        Files.writeString(src.resolve("Order.java"),
+                "package com.example.model;\n@jakarta.persistence.Entity public class Order { @jakarta.persistence.Id public String id;\n"
+                        + "  @jakarta.persistence.Entity public static class Item { @jakarta.persistence.Id public String id; } }\n");
+        Files.writeString(src.resolve("Helper.java"), "package com.example.model;\npublic class Helper {}\n");
+        Path out = dir.resolve("classes");
+        Files.createDirectories(out);
+        String classpath = location(Entity.class) + File.pathSeparator + location(EntityIndexProcessor.class);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null, "-classpath", classpath, "-processor", EntityIndexProcessor.class.getName(), "-d",
+                out.toString(), src.resolve("Order.java").toString(), src.resolve("Helper.java").toString());
+        assertEquals(0, result);
+        Path index = out.resolve(ClassUtils.ENTITY_INDEX);
+        assertTrue(Files.exists(index));
+        assertEquals(List.of("com.example.model.Order", "com.example.model.Order$Item"), Files.readAllLines(index, StandardCharsets.UTF_8));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { out.toUri().toURL() }, getClass().getClassLoader())) {
+            List<Class<?>> classes = ClassUtils.loadIndexedEntities(loader, "com.example");
+            assertEquals(List.of("com.example.model.Order", "com.example.model.Order$Item"),
+                    classes.stream().map(Class::getName).collect(Collectors.toList()));
+            assertTrue(ClassUtils.loadIndexedEntities(loader, "com.other").isEmpty());
+        }
+        try (URLClassLoader loader = new URLClassLoader(new URL[0], null)) {
+            assertNull(ClassUtils.loadIndexedEntities(loader, "com.example"));
+        }
+    }
+
+    @Test
+    public void testMergeIndexOfIncrementalBuild() throws Exception {
+        Path src = dir.resolve("src/com/example/model");
+        Files.createDirectories(src);
+        Files.writeString(src.resolve("Order.java"),
+                "package com.example.model;\n@jakarta.persistence.Entity public class Order { @jakarta.persistence.Id public String id;\n"
+                        + "  @jakarta.persistence.Entity public static class Item { @jakarta.persistence.Id public String id; } }\n");
+        Files.writeString(src.resolve("Customer.java"),
+                "package com.example.model;\n@jakarta.persistence.Entity public class Customer { @jakarta.persistence.Id public String id; }\n");
+        Path out = dir.resolve("classes");
+        Files.createDirectories(out);
+        Path index = out.resolve(ClassUtils.ENTITY_INDEX);
+        assertEquals(0, compile(out, src.resolve("Order.java")));
+        assertEquals(List.of("com.example.model.Order", "com.example.model.Order$Item"), Files.readAllLines(index, StandardCharsets.UTF_8));
+        // compile Customer only, entities of Order are kept:
+        assertEquals(0, compile(out, src.resolve("Customer.java")));
+        assertEquals(List.of("com.example.model.Customer", "com.example.model.Order", "com.example.model.Order$Item"),
+                Files.readAllLines(index, StandardCharsets.UTF_8));
+        // Item is no longer an entity:
+        Files.writeString(src.resolve("Order.java"), "package com.example.model;\n@jakarta.persistence.Entity public class Order { @jakarta.persistence.Id public String id;\n"
+                + "  public static class Item { } }\n");
+        assertEquals(0, compile(out, src.resolve("Order.java")));
+        assertEquals(List.of("com.example.model.Customer", "com.example.model.Order"), Files.readAllLines(index, StandardCharsets.UTF_8));
+        // Customer is deleted:
+        Files.delete(src.resolve("Customer.java"));
+        Files.delete(out.resolve("com/example/model/Customer.class"));
+        assertEquals(0, compile(out, src.resolve("Order.java")));
+        assertEquals(List.of("com.example.model.Order"), Files.readAllLines(index, StandardCharsets.UTF_8));
+    }
+
+    int compile(Path out, Path source) throws Exception {
+        String classpath = out + File.pathSeparator + location(Entity.class) + File.pathSeparator + location(EntityIndexProcessor.class);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        return compiler.run(null, null, null, "-classpath", classpath, "-processor", EntityIndexProcessor.class.getName(), "-d", out.toString(),
+                source.toString());
+    }
+
+    static String location(Class<?> clazz) throws Exception {
+        return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+}
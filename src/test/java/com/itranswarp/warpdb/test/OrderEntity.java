@@ -0,0 +1,31 @@
+package com.itranswarp.warpdb.test;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import com.itranswarp.warpdb.ShardKey;
+
+@Entity
+@Table(name = "orders")
+public class OrderEntity {
+
+	@Id
+	@ShardKey
+	public long id;
+
+	@Column(nullable = false)
+	public long userId;
+
+	@Column(nullable = false)
+	public long amount;
+
+	public Long discount;
+
+	@Version
+	@Column(nullable = false)
+	public long version;
+
+}
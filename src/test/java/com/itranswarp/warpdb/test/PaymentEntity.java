@@ -0,0 +1,25 @@
+package com.itranswarp.warpdb.test;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import com.itranswarp.warpdb.ShardKey;
+
+@Entity
+@Table(name = "payments")
+public class PaymentEntity {
+
+	@Id
+	@Column(length = 50, nullable = false, updatable = false)
+	public String id;
+
+	@ShardKey
+	@Column(nullable = false)
+	public long userId;
+
+	@Column(nullable = false)
+	public long amount;
+
+}
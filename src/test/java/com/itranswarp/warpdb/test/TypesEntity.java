@@ -0,0 +1,49 @@
+package com.itranswarp.warpdb.test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+@Entity
+public class TypesEntity {
+
+	@Id
+	@Column(length = 50, nullable = false, updatable = false)
+	public String id;
+
+	public long primitiveLong;
+
+	public int primitiveInt;
+
+	public double primitiveDouble;
+
+	public boolean primitiveBoolean;
+
+	public Long wrapperLong;
+
+	public Integer wrapperInt;
+
+	public Double wrapperDouble;
+
+	public Boolean wrapperBoolean;
+
+	@Column(scale = 2)
+	public BigDecimal decimal;
+
+	public LocalDate localDate;
+
+	public java.util.Date dateTime;
+
+	private long count;
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+}